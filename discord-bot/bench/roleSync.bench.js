@@ -0,0 +1,113 @@
+/**
+ * Benchmark for resolving a player's Discord roles from their Minecraft groups
+ * Compares the per-group queries syncRoles used to make with the in-memory rank mapping index
+ * Run with: npm run bench
+ */
+
+const path = require('path');
+const fs = require('fs');
+const { performance } = require('perf_hooks');
+
+const benchDbPath = path.join(__dirname, '../test-data/bench-mcranksync.db');
+process.env.DATABASE_PATH = benchDbPath;
+process.env.LOG_LEVEL = process.env.LOG_LEVEL || 'warn';
+
+const database = require('../src/database/database');
+const roleManager = require('../src/api/roleManager');
+
+const RANKS = 1000;
+const ROLES_PER_RANK = 5;
+const GROUPS_PER_PLAYER = 8;
+const MEMBER_ROLES = 20;
+const ITERATIONS = 20000;
+
+/**
+ * Deterministic pseudo-random generator so every run uses the same inputs
+ */
+function createRandom(seed) {
+    let state = seed >>> 0;
+    return () => {
+        state = (state * 1664525 + 1013904223) >>> 0;
+        return state / 0x100000000;
+    };
+}
+
+function setup() {
+    if (fs.existsSync(benchDbPath)) {
+        fs.unlinkSync(benchDbPath);
+    }
+    fs.mkdirSync(path.dirname(benchDbPath), { recursive: true });
+    database.initialize();
+
+    for (let rank = 0; rank < RANKS; rank++) {
+        for (let role = 0; role < ROLES_PER_RANK; role++) {
+            database.createRankMapping(`rank-${rank}`, `role-${rank}-${role}`);
+        }
+    }
+
+    const random = createRandom(0x4d525353);
+    const players = [];
+    for (let i = 0; i < 256; i++) {
+        const groups = [];
+        for (let g = 0; g < GROUPS_PER_PLAYER; g++) {
+            groups.push(`rank-${Math.floor(random() * RANKS)}`);
+        }
+        const memberRoles = [];
+        for (let r = 0; r < MEMBER_ROLES; r++) {
+            memberRoles.push(`role-${Math.floor(random() * RANKS)}-${Math.floor(random() * ROLES_PER_RANK)}`);
+        }
+        players.push({ groups, memberRoles });
+    }
+    return players;
+}
+
+/**
+ * The lookups syncRoles performed before the index existed
+ */
+function resolveWithQueries(memberRoles, groups) {
+    const allMappedRoleIds = new Set(database.getAllRankMappings().map(m => m.discord_role_id));
+    const targetRoleIds = new Set();
+    for (const group of groups) {
+        database.getRolesByRank(group).forEach(id => targetRoleIds.add(id));
+    }
+    const current = new Set(memberRoles.filter(id => allMappedRoleIds.has(id)));
+    return {
+        rolesToAdd: [...targetRoleIds].filter(id => !current.has(id)),
+        rolesToRemove: [...current].filter(id => !targetRoleIds.has(id))
+    };
+}
+
+function run(name, iterations, fn) {
+    // Warm up before measuring
+    for (let i = 0; i < Math.min(iterations, 200); i++) {
+        fn(i);
+    }
+
+    const start = performance.now();
+    for (let i = 0; i < iterations; i++) {
+        fn(i);
+    }
+    const elapsed = performance.now() - start;
+    console.log(`${name.padEnd(28)} ${(elapsed * 1000 / iterations).toFixed(2).padStart(10)} µs/op  (${iterations} ops)`);
+}
+
+const players = setup();
+console.log(`${RANKS * ROLES_PER_RANK} mappings, ${GROUPS_PER_PLAYER} groups and ${MEMBER_ROLES} roles per player\n`);
+
+run('per-group queries', ITERATIONS / 20, i => {
+    const player = players[i % players.length];
+    resolveWithQueries(player.memberRoles, player.groups);
+});
+
+run('mapping index', ITERATIONS, i => {
+    const player = players[i % players.length];
+    roleManager.computeRoleChanges(player.memberRoles, player.groups);
+});
+
+run('index rebuild after change', 50, i => {
+    database.createRankMapping('bench-rebuild', `bench-role-${i}`);
+    database.getRankMappingIndex();
+});
+
+database.close();
+fs.unlinkSync(benchDbPath);
@@ -0,0 +1,193 @@
+/**
+ * Compact binary encoding of rank update batches, an alternative to JSON.
+ * Must stay in sync with RankUpdateCodec in the Paper plugin. Layout (integers are
+ * unsigned LEB128 varints unless noted):
+ *
+ *   magic "MRSB" (4 bytes), version (1 byte)
+ *   string count, then each string as byte length + UTF-8 bytes
+ *   base timestamp, update count, then per update:
+ *     UUID (16 bytes)
+ *     player name as byte length + UTF-8 bytes
+ *     event type string index
+ *     primary group string index + 1 (0 = none)
+ *     group count, then a string index per group
+ *     timestamp - base timestamp
+ *     server ID string index + 1 (0 = none), version
+ */
+
+const CONTENT_TYPE = 'application/x-mcranksync-batch';
+const MAGIC = Buffer.from('MRSB', 'latin1');
+const VERSION = 2;
+
+/**
+ * Decode a binary batch into the same update objects the JSON endpoint receives
+ * @param {Buffer} buffer - Encoded batch
+ * @returns {Object[]} Updates with uuid, playerName, eventType, primaryGroup, groups, timestamp,
+ *     serverId and version
+ * @throws {Error} If the buffer is not a valid encoded batch
+ */
+function decodeBatch(buffer) {
+    let offset = 0;
+
+    function ensureAvailable(bytes) {
+        if (offset + bytes > buffer.length) {
+            throw new Error('Unexpected end of batch');
+        }
+    }
+
+    function readVarint() {
+        let value = 0;
+        let multiplier = 1;
+        for (let i = 0; i < 10; i++) {
+            ensureAvailable(1);
+            const byte = buffer[offset++];
+            value += (byte & 0x7f) * multiplier;
+            if ((byte & 0x80) === 0) {
+                return value;
+            }
+            multiplier *= 128;
+        }
+        throw new Error('Malformed varint');
+    }
+
+    function readCount() {
+        const count = readVarint();
+        if (count > buffer.length - offset) {
+            throw new Error(`Invalid length ${count}`);
+        }
+        return count;
+    }
+
+    function readString() {
+        const length = readCount();
+        const value = buffer.toString('utf8', offset, offset + length);
+        offset += length;
+        return value;
+    }
+
+    function lookup(strings, index) {
+        if (index >= strings.length) {
+            throw new Error(`String index ${index} out of range`);
+        }
+        return strings[index];
+    }
+
+    ensureAvailable(MAGIC.length + 1);
+    if (!buffer.subarray(0, MAGIC.length).equals(MAGIC)) {
+        throw new Error('Not a rank update batch');
+    }
+    offset = MAGIC.length;
+    const version = buffer[offset++];
+    if (version !== VERSION) {
+        throw new Error(`Unsupported batch version ${version}`);
+    }
+
+    const strings = new Array(readCount());
+    for (let i = 0; i < strings.length; i++) {
+        strings[i] = readString();
+    }
+
+    const baseTimestamp = readVarint();
+    const count = readCount();
+    const updates = new Array(count);
+    for (let i = 0; i < count; i++) {
+        ensureAvailable(16);
+        const hex = buffer.toString('hex', offset, offset + 16);
+        offset += 16;
+        const uuid = `${hex.slice(0, 8)}-${hex.slice(8, 12)}-${hex.slice(12, 16)}-${hex.slice(16, 20)}-${hex.slice(20)}`;
+
+        const playerName = readString();
+        const eventType = lookup(strings, readVarint());
+        const primaryIndex = readVarint();
+        const primaryGroup = primaryIndex === 0 ? null : lookup(strings, primaryIndex - 1);
+
+        const groups = new Array(readCount());
+        for (let g = 0; g < groups.length; g++) {
+            groups[g] = lookup(strings, readVarint());
+        }
+
+        const timestamp = baseTimestamp + readVarint();
+        const serverIndex = readVarint();
+        updates[i] = {
+            uuid,
+            playerName,
+            primaryGroup,
+            groups,
+            eventType,
+            timestamp,
+            serverId: serverIndex === 0 ? null : lookup(strings, serverIndex - 1),
+            version: readVarint()
+        };
+    }
+
+    return updates;
+}
+
+/**
+ * Encode updates in the binary batch format (used by tests and benchmarks)
+ * @param {Object[]} updates - Updates as sent to the JSON endpoint
+ * @returns {Buffer} Encoded batch
+ */
+function encodeBatch(updates) {
+    const indexes = new Map();
+    const strings = [];
+    const intern = value => {
+        if (!indexes.has(value)) {
+            indexes.set(value, strings.length);
+            strings.push(value);
+        }
+        return indexes.get(value);
+    };
+
+    let baseTimestamp = updates.length > 0 ? Infinity : 0;
+    for (const update of updates) {
+        intern(update.eventType || '');
+        if (update.primaryGroup != null) {
+            intern(update.primaryGroup);
+        }
+        (update.groups || []).forEach(intern);
+        if (update.serverId != null) {
+            intern(update.serverId);
+        }
+        baseTimestamp = Math.min(baseTimestamp, update.timestamp || 0);
+    }
+
+    const bytes = [...MAGIC, VERSION];
+    const writeVarint = value => {
+        while (value >= 0x80) {
+            bytes.push((value % 0x80) | 0x80);
+            value = Math.floor(value / 0x80);
+        }
+        bytes.push(value);
+    };
+    const writeString = value => {
+        const encoded = Buffer.from(value, 'utf8');
+        writeVarint(encoded.length);
+        bytes.push(...encoded);
+    };
+
+    writeVarint(strings.length);
+    strings.forEach(writeString);
+    writeVarint(baseTimestamp);
+    writeVarint(updates.length);
+    for (const update of updates) {
+        bytes.push(...Buffer.from(update.uuid.replace(/-/g, ''), 'hex'));
+        writeString(update.playerName || '');
+        writeVarint(indexes.get(update.eventType || ''));
+        writeVarint(update.primaryGroup == null ? 0 : indexes.get(update.primaryGroup) + 1);
+        const groups = update.groups || [];
+        writeVarint(groups.length);
+        groups.forEach(group => writeVarint(indexes.get(group)));
+        writeVarint((update.timestamp || 0) - baseTimestamp);
+        writeVarint(update.serverId == null ? 0 : indexes.get(update.serverId) + 1);
+        writeVarint(update.version || 0);
+    }
+
+    return Buffer.from(bytes);
+}
+
+module.exports = {
+    CONTENT_TYPE,
+    decodeBatch,
+    encodeBatch
+};
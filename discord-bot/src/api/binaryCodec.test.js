@@ -0,0 +1,71 @@
+/**
+ * Tests for the binary batch codec
+ * Run with: node --test src/api/binaryCodec.test.js
+ */
+
+const { describe, it } = require('node:test');
+const assert = require('node:assert');
+
+const binaryCodec = require('./binaryCodec');
+
+const updates = [
+    {
+        uuid: '069a79f4-44e9-4726-a5be-fca90e38aaf5',
+        playerName: 'Notch',
+        primaryGroup: 'vip',
+        groups: ['vip', 'default'],
+        eventType: 'PLAYER_JOIN',
+        timestamp: 1700000000000,
+        serverId: 'lobby-1',
+        version: 1700000000000123
+    },
+    {
+        uuid: 'ffffffff-0000-4000-8000-000000000001',
+        playerName: 'Jöhn',
+        primaryGroup: null,
+        groups: ['default'],
+        eventType: 'GROUP_REMOVE',
+        timestamp: 1700000012345,
+        serverId: null,
+        version: 0
+    }
+];
+
+describe('Binary Codec', () => {
+    it('should round trip a batch', () => {
+        const decoded = binaryCodec.decodeBatch(binaryCodec.encodeBatch(updates));
+        assert.deepStrictEqual(decoded, updates);
+    });
+
+    it('should be smaller than JSON', () => {
+        const encoded = binaryCodec.encodeBatch(updates);
+        assert.ok(encoded.length < Buffer.byteLength(JSON.stringify({ updates })));
+    });
+
+    it('should decode an empty batch', () => {
+        assert.deepStrictEqual(binaryCodec.decodeBatch(binaryCodec.encodeBatch([])), []);
+    });
+
+    it('should reject batches of other versions', () => {
+        const encoded = Buffer.from(binaryCodec.encodeBatch(updates));
+        encoded[4] = 1;
+        assert.throws(() => binaryCodec.decodeBatch(encoded), /Unsupported batch version 1/);
+    });
+
+    it('should reject data without the magic header', () => {
+        assert.throws(() => binaryCodec.decodeBatch(Buffer.from('{"updates":[]}')), /Not a rank update batch/);
+    });
+
+    it('should reject a truncated batch', () => {
+        const encoded = binaryCodec.encodeBatch(updates);
+        assert.throws(() => binaryCodec.decodeBatch(encoded.subarray(0, encoded.length - 5)));
+    });
+
+    it('should reject out of range string indexes', () => {
+        const encoded = Buffer.from(binaryCodec.encodeBatch([updates[1]]));
+        // Point the event type index past the end of the string table
+        const nameEnd = encoded.indexOf(Buffer.from('Jöhn')) + Buffer.byteLength('Jöhn');
+        encoded[nameEnd] = 0x7f;
+        assert.throws(() => binaryCodec.decodeBatch(encoded), /out of range/);
+    });
+});
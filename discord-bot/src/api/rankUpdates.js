@@ -0,0 +1,118 @@
+const logger = require('../utils/logger');
+const database = require('../database/database');
+const roleManager = require('./roleManager');
+const ordering = require('./updateOrdering');
+
+// Tail of the pending work per player, so concurrent updates for one player apply in turn
+const playerQueues = new Map();
+
+/**
+ * Run a task after all earlier tasks queued for the same player have finished
+ */
+function runExclusive(uuid, task) {
+    const previous = playerQueues.get(uuid) || Promise.resolve();
+    const current = previous.then(task);
+    const tail = current.catch(() => {});
+    playerQueues.set(uuid, tail);
+    tail.then(() => {
+        if (playerQueues.get(uuid) === tail) {
+            playerQueues.delete(uuid);
+        }
+    });
+    return current;
+}
+
+/**
+ * Apply a single rank update or player join payload
+ * @param {Client} client - Discord client
+ * @param {Object} update - Payload sent by the Minecraft plugin
+ * @returns {Object} Result describing the role changes for this player
+ */
+async function processRankUpdate(client, update) {
+    const { uuid, playerName, primaryGroup, groups, eventType } = update || {};
+
+    if (!uuid || !playerName) {
+        return { uuid, success: false, error: 'Missing required fields: uuid, playerName' };
+    }
+
+    const isJoin = eventType === 'PLAYER_JOIN';
+    if (isJoin) {
+        logger.info(`Player join received for ${playerName} (${uuid})`);
+    } else {
+        logger.info(`Rank update received for ${playerName} (${uuid}): ${eventType}`);
+    }
+    logger.debug(`Groups: ${JSON.stringify(groups)}, Primary: ${primaryGroup}`);
+
+    // Check if player is linked
+    const link = database.getLinkByMcUuid(uuid);
+
+    if (!link) {
+        logger.debug(`Player ${playerName} is not linked to a Discord account.`);
+        return {
+            uuid,
+            success: true,
+            message: 'Player not linked to Discord',
+            linked: false,
+            applied: false,
+            mappingRevision: database.getRankMappingRevision()
+        };
+    }
+
+    return runExclusive(uuid, () => applyRankUpdate(client, link, update));
+}
+
+/**
+ * Sync a linked player's roles unless the update is a duplicate of the last applied one
+ */
+async function applyRankUpdate(client, link, update) {
+    const { uuid, playerName, groups, eventType, serverId, version } = update;
+    const isJoin = eventType === 'PLAYER_JOIN';
+    const fingerprint = ordering.groupsFingerprint(groups);
+    const state = database.getSyncState(uuid);
+    const decision = ordering.classifyUpdate(state, update, fingerprint);
+
+    if (decision !== ordering.DECISIONS.APPLY) {
+        // Remember the newer version so a redelivery of an older update is not applied again
+        if (version > state.version) {
+            database.saveSyncState(uuid, version, serverId || '', fingerprint, state.applied_at);
+        }
+        logger.debug(`Ignoring ${decision} update for ${playerName} from ${serverId || 'unknown server'} (version ${version})`);
+        return {
+            uuid,
+            success: true,
+            message: 'Duplicate update ignored',
+            linked: true,
+            ignored: decision,
+            // A duplicate carries the groups whose roles were already applied
+            applied: true,
+            mappingRevision: database.getRankMappingRevision()
+        };
+    }
+
+    // Update Discord roles, reporting the mappings they were resolved with
+    const mappingRevision = database.getRankMappingRevision();
+    const result = await roleManager.syncRoles(client, link.discord_id, groups || []);
+    if (result.success && ordering.isVersioned(update)) {
+        // An update behind the stored version is still applied, but the newest version is kept
+        const newest = state && ordering.isOlder(state, update) ? state : { version, server_id: serverId || '' };
+        database.saveSyncState(uuid, newest.version, newest.server_id, fingerprint, Date.now());
+    }
+
+    logger.info(`Role sync${isJoin ? ' on join' : ''} completed for ${playerName}: ${result.message}`);
+
+    return {
+        uuid,
+        success: true,
+        message: result.message,
+        linked: true,
+        // Whether the roles now match the groups; false when e.g. the member or guild was not found
+        applied: result.success,
+        rolesAdded: result.rolesAdded,
+        rolesRemoved: result.rolesRemoved,
+        mappingRevision
+    };
+}
+
+module.exports = {
+    processRankUpdate
+};
@@ -37,58 +37,21 @@ async function syncRoles(client, discordId, mcGroups) {
             return result;
         }
 
-        // Get all mapped Discord role IDs
-        const allMappings = database.getAllRankMappings();
-        const allMappedRoleIds = new Set(allMappings.map(m => m.discord_role_id));
-
-        // Get roles that should be assigned based on current MC groups
-        const targetRoleIds = new Set();
-        for (const group of mcGroups) {
-            const roleIds = database.getRolesByRank(group);
-            roleIds.forEach(id => targetRoleIds.add(id));
-        }
-
-        // Get current mapped roles the member has
-        const currentMappedRoleIds = new Set(
-            member.roles.cache
-                .filter(role => allMappedRoleIds.has(role.id))
-                .map(role => role.id)
-        );
+        const { rolesToAdd, rolesToRemove } = computeRoleChanges(member.roles.cache.keys(), mcGroups);
 
-        // Determine roles to add (in target but not current)
-        const rolesToAdd = [...targetRoleIds].filter(id => !currentMappedRoleIds.has(id));
-
-        // Determine roles to remove (in current but not target, and is a mapped role)
-        const rolesToRemove = [...currentMappedRoleIds].filter(id => !targetRoleIds.has(id));
-
-        // Add roles
+        // Only add roles that still exist in the guild
+        const addable = [];
         for (const roleId of rolesToAdd) {
-            try {
-                const role = guild.roles.cache.get(roleId);
-                if (role) {
-                    await member.roles.add(role);
-                    result.rolesAdded.push(role.name);
-                    logger.debug(`Added role ${role.name} to ${member.user.tag}`);
-                } else {
-                    logger.warn(`Role ${roleId} not found in guild`);
-                }
-            } catch (error) {
-                logger.error(`Failed to add role ${roleId} to ${member.user.tag}:`, error);
+            const role = guild.roles.cache.get(roleId);
+            if (role) {
+                addable.push(role);
+            } else {
+                logger.warn(`Role ${roleId} not found in guild`);
             }
         }
 
-        // Remove roles
-        for (const roleId of rolesToRemove) {
-            try {
-                const role = guild.roles.cache.get(roleId);
-                if (role) {
-                    await member.roles.remove(role);
-                    result.rolesRemoved.push(role.name);
-                    logger.debug(`Removed role ${role.name} from ${member.user.tag}`);
-                }
-            } catch (error) {
-                logger.error(`Failed to remove role ${roleId} from ${member.user.tag}:`, error);
-            }
+        if (addable.length > 0 || rolesToRemove.length > 0) {
+            await applyRoleChanges(guild, member, addable, rolesToRemove, result);
         }
 
         if (result.rolesAdded.length > 0 || result.rolesRemoved.length > 0) {
@@ -106,6 +69,93 @@ async function syncRoles(client, discordId, mcGroups) {
     }
 }
 
+/**
+ * Work out which mapped roles a member should gain and lose for their Minecraft groups
+ * @param {Iterable<string>} currentRoleIds - IDs of the roles the member has now
+ * @param {string[]} mcGroups - Array of Minecraft group names
+ * @returns {Object} rolesToAdd and rolesToRemove arrays of role IDs
+ */
+function computeRoleChanges(currentRoleIds, mcGroups) {
+    const { rolesByRank, mappedRoleIds } = database.getRankMappingIndex();
+
+    // Roles that should be assigned based on current MC groups
+    const targetRoleIds = new Set();
+    for (const group of mcGroups) {
+        const roleIds = rolesByRank.get(String(group).toLowerCase());
+        if (roleIds) {
+            roleIds.forEach(id => targetRoleIds.add(id));
+        }
+    }
+
+    // Mapped roles the member currently has
+    const currentMappedRoleIds = new Set();
+    for (const roleId of currentRoleIds) {
+        if (mappedRoleIds.has(roleId)) {
+            currentMappedRoleIds.add(roleId);
+        }
+    }
+
+    return {
+        rolesToAdd: [...targetRoleIds].filter(id => !currentMappedRoleIds.has(id)),
+        rolesToRemove: [...currentMappedRoleIds].filter(id => !targetRoleIds.has(id))
+    };
+}
+
+/**
+ * Apply role changes with a single member update, falling back to one request
+ * per role if the combined update is rejected (e.g. one role is above the bot's)
+ * @param {Guild} guild - Discord guild
+ * @param {GuildMember} member - Member to update
+ * @param {Role[]} rolesToAdd - Roles to add
+ * @param {string[]} rolesToRemove - IDs of roles to remove
+ * @param {Object} result - Sync result to record the changed role names in
+ */
+async function applyRoleChanges(guild, member, rolesToAdd, rolesToRemove, result) {
+    const removeIds = new Set(rolesToRemove);
+    const roleIds = member.roles.cache
+        .filter(role => role.id !== guild.id && !removeIds.has(role.id))
+        .map(role => role.id);
+    rolesToAdd.forEach(role => roleIds.push(role.id));
+
+    try {
+        await member.roles.set(roleIds, 'MCRankSync rank sync');
+        for (const role of rolesToAdd) {
+            result.rolesAdded.push(role.name);
+        }
+        for (const roleId of rolesToRemove) {
+            const role = guild.roles.cache.get(roleId);
+            result.rolesRemoved.push(role ? role.name : roleId);
+        }
+        logger.debug(`Updated roles of ${member.user.tag}: +${rolesToAdd.length} -${rolesToRemove.length}`);
+        return;
+    } catch (error) {
+        logger.warn(`Bulk role update failed for ${member.user.tag}, applying roles one by one: ${error.message}`);
+    }
+
+    for (const role of rolesToAdd) {
+        try {
+            await member.roles.add(role);
+            result.rolesAdded.push(role.name);
+            logger.debug(`Added role ${role.name} to ${member.user.tag}`);
+        } catch (error) {
+            logger.error(`Failed to add role ${role.id} to ${member.user.tag}:`, error);
+        }
+    }
+
+    for (const roleId of rolesToRemove) {
+        try {
+            const role = guild.roles.cache.get(roleId);
+            if (role) {
+                await member.roles.remove(role);
+                result.rolesRemoved.push(role.name);
+                logger.debug(`Removed role ${role.name} from ${member.user.tag}`);
+            }
+        } catch (error) {
+            logger.error(`Failed to remove role ${roleId} from ${member.user.tag}:`, error);
+        }
+    }
+}
+
 /**
  * Remove all synced roles from a Discord user
  * @param {Client} client - Discord client
@@ -127,20 +177,13 @@ async function removeAllSyncedRoles(client, discordId) {
             return;
         }
 
-        // Get all mapped role IDs
-        const allMappings = database.getAllRankMappings();
-        const mappedRoleIds = new Set(allMappings.map(m => m.discord_role_id));
-
-        // Remove all mapped roles from the member
-        for (const role of member.roles.cache.values()) {
-            if (mappedRoleIds.has(role.id)) {
-                try {
-                    await member.roles.remove(role);
-                    logger.debug(`Removed role ${role.name} from ${member.user.tag} during unlink`);
-                } catch (error) {
-                    logger.error(`Failed to remove role ${role.name} from ${member.user.tag}:`, error);
-                }
-            }
+        const { mappedRoleIds } = database.getRankMappingIndex();
+        const rolesToRemove = [...member.roles.cache.keys()].filter(id => mappedRoleIds.has(id));
+
+        if (rolesToRemove.length > 0) {
+            const result = { rolesAdded: [], rolesRemoved: [] };
+            await applyRoleChanges(guild, member, [], rolesToRemove, result);
+            logger.debug(`Removed roles ${result.rolesRemoved.join(', ')} from ${member.user.tag} during unlink`);
         }
 
         logger.info(`Removed all synced roles from ${member.user.tag}`);
@@ -150,6 +193,7 @@ async function removeAllSyncedRoles(client, discordId) {
 }
 
 module.exports = {
+    computeRoleChanges,
     syncRoles,
     removeAllSyncedRoles
 };
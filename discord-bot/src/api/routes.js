@@ -4,6 +4,9 @@ const router = express.Router();
 const logger = require('../utils/logger');
 const database = require('../database/database');
 const roleManager = require('./roleManager');
+const binaryCodec = require('./binaryCodec');
+const syncDigest = require('./syncDigest');
+const { processRankUpdate } = require('./rankUpdates');
 
 /**
  * Rate limiter - limits requests per IP
@@ -45,50 +48,93 @@ function authenticate(req, res, next) {
     next();
 }
 
+/**
+ * Maximum number of updates accepted in a single batch request
+ */
+const MAX_BATCH_SIZE = 500;
+
+/**
+ * Send the result of a single update, mapping validation failures to 400
+ */
+function sendUpdateResult(res, result) {
+    if (!result.success) {
+        return res.status(400).json({ error: result.error });
+    }
+
+    const { uuid, ...body } = result;
+    res.json(body);
+}
+
 /**
  * POST /api/rank-update
  * Handles rank change events from the Minecraft plugin
  */
 router.post('/rank-update', authenticate, async (req, res) => {
     try {
-        const { uuid, playerName, primaryGroup, groups, eventType, timestamp } = req.body;
+        // Get Discord client from Express app
+        const client = req.app.get('discordClient');
+
+        const result = await processRankUpdate(client, req.body);
+        sendUpdateResult(res, result);
+    } catch (error) {
+        logger.error('Error processing rank update:', error);
+        res.status(500).json({ error: 'Internal server error' });
+    }
+});
+
+/**
+ * POST /api/rank-update/batch
+ * Handles a batch of rank change and player join events from the Minecraft plugin.
+ * Accepts JSON ({ updates: [...] }) or the compact binary format (see binaryCodec).
+ * Results are returned in the same order as the submitted updates.
+ */
+router.post('/rank-update/batch', authenticate, express.raw({ type: binaryCodec.CONTENT_TYPE, limit: '5mb' }), async (req, res) => {
+    try {
+        let updates;
+        if (req.is(binaryCodec.CONTENT_TYPE)) {
+            try {
+                updates = binaryCodec.decodeBatch(req.body);
+            } catch (error) {
+                logger.warn(`Invalid binary rank update batch from ${req.ip}: ${error.message}`);
+                return res.status(400).json({ error: `Invalid batch: ${error.message}` });
+            }
+        } else if (req.is('application/json')) {
+            updates = req.body.updates;
+        } else {
+            return res.status(415).json({ error: `Unsupported content type, use application/json or ${binaryCodec.CONTENT_TYPE}` });
+        }
 
-        if (!uuid || !playerName) {
-            return res.status(400).json({ error: 'Missing required fields: uuid, playerName' });
+        if (!Array.isArray(updates)) {
+            return res.status(400).json({ error: 'Missing required field: updates' });
         }
 
-        logger.info(`Rank update received for ${playerName} (${uuid}): ${eventType}`);
-        logger.debug(`Groups: ${JSON.stringify(groups)}, Primary: ${primaryGroup}`);
+        if (updates.length > MAX_BATCH_SIZE) {
+            return res.status(413).json({ error: `Batch too large: at most ${MAX_BATCH_SIZE} updates per request` });
+        }
+
+        logger.info(`Rank update batch received with ${updates.length} update(s)`);
 
         // Get Discord client from Express app
         const client = req.app.get('discordClient');
-        
-        // Check if player is linked
-        const link = database.getLinkByMcUuid(uuid);
-        
-        if (!link) {
-            logger.debug(`Player ${playerName} is not linked to a Discord account.`);
-            return res.json({ 
-                success: true, 
-                message: 'Player not linked to Discord',
-                linked: false
-            });
+
+        // Process sequentially so a large batch doesn't flood the Discord API
+        const results = [];
+        for (const update of updates) {
+            try {
+                results.push(await processRankUpdate(client, update));
+            } catch (error) {
+                logger.error(`Error processing batched update for ${update && update.uuid}:`, error);
+                results.push({ uuid: update && update.uuid, success: false, error: 'Internal server error' });
+            }
         }
 
-        // Update Discord roles
-        const result = await roleManager.syncRoles(client, link.discord_id, groups || []);
-        
-        logger.info(`Role sync completed for ${playerName}: ${result.message}`);
-        
         res.json({
             success: true,
-            message: result.message,
-            linked: true,
-            rolesAdded: result.rolesAdded,
-            rolesRemoved: result.rolesRemoved
+            processed: results.length,
+            results
         });
     } catch (error) {
-        logger.error('Error processing rank update:', error);
+        logger.error('Error processing rank update batch:', error);
         res.status(500).json({ error: 'Internal server error' });
     }
 });
@@ -99,42 +145,11 @@ router.post('/rank-update', authenticate, async (req, res) => {
  */
 router.post('/player-join', authenticate, async (req, res) => {
     try {
-        const { uuid, playerName, primaryGroup, groups } = req.body;
-
-        if (!uuid || !playerName) {
-            return res.status(400).json({ error: 'Missing required fields: uuid, playerName' });
-        }
-
-        logger.info(`Player join received for ${playerName} (${uuid})`);
-        logger.debug(`Groups: ${JSON.stringify(groups)}, Primary: ${primaryGroup}`);
-
         // Get Discord client from Express app
         const client = req.app.get('discordClient');
-        
-        // Check if player is linked
-        const link = database.getLinkByMcUuid(uuid);
-        
-        if (!link) {
-            logger.debug(`Player ${playerName} is not linked to a Discord account.`);
-            return res.json({ 
-                success: true, 
-                message: 'Player not linked to Discord',
-                linked: false
-            });
-        }
 
-        // Update Discord roles on join
-        const result = await roleManager.syncRoles(client, link.discord_id, groups || []);
-        
-        logger.info(`Role sync on join completed for ${playerName}: ${result.message}`);
-        
-        res.json({
-            success: true,
-            message: result.message,
-            linked: true,
-            rolesAdded: result.rolesAdded,
-            rolesRemoved: result.rolesRemoved
-        });
+        const result = await processRankUpdate(client, { ...req.body, eventType: 'PLAYER_JOIN' });
+        sendUpdateResult(res, result);
     } catch (error) {
         logger.error('Error processing player join:', error);
         res.status(500).json({ error: 'Internal server error' });
@@ -249,10 +264,11 @@ router.get('/linked/:uuid', authenticate, (req, res) => {
             res.json({ 
                 linked: true, 
                 discordId: link.discord_id,
-                linkedAt: link.linked_at
+                linkedAt: link.linked_at,
+                mappingRevision: database.getRankMappingRevision()
             });
         } else {
-            res.json({ linked: false });
+            res.json({ linked: false, mappingRevision: database.getRankMappingRevision() });
         }
     } catch (error) {
         logger.error('Error checking link status:', error);
@@ -260,4 +276,46 @@ router.get('/linked/:uuid', authenticate, (req, res) => {
     }
 });
 
+/**
+ * GET /api/sync-state/digest?buckets=256
+ * Hashes of what was last applied for linked players, one per UUID range (see syncDigest)
+ */
+router.get('/sync-state/digest', authenticate, (req, res) => {
+    try {
+        const buckets = syncDigest.parseBuckets(req.query.buckets);
+        if (buckets === null) {
+            return res.status(400).json({ error: `buckets must be a power of two up to ${syncDigest.MAX_BUCKETS}` });
+        }
+
+        res.json({
+            success: true,
+            digest: syncDigest.digest(database.getLinkedSyncStates(), buckets),
+            mappingRevision: database.getRankMappingRevision()
+        });
+    } catch (error) {
+        logger.error('Error building sync state digest:', error);
+        res.status(500).json({ error: 'Internal server error' });
+    }
+});
+
+/**
+ * GET /api/sync-state/digest/:bucket?buckets=256
+ * Per-player hashes of one UUID range of the digest
+ */
+router.get('/sync-state/digest/:bucket', authenticate, (req, res) => {
+    try {
+        const buckets = syncDigest.parseBuckets(req.query.buckets);
+        const bucket = Number(req.params.bucket);
+        if (buckets === null || !Number.isInteger(bucket) || bucket < 0 || bucket >= buckets) {
+            return res.status(400).json({ error: 'Invalid bucket' });
+        }
+
+        const { lo, hi } = syncDigest.bucketBounds(bucket, buckets);
+        res.json({ success: true, entries: syncDigest.entries(database.getLinkedSyncStates(lo, hi)) });
+    } catch (error) {
+        logger.error('Error building sync state digest range:', error);
+        res.status(500).json({ error: 'Internal server error' });
+    }
+});
+
 module.exports = router;
@@ -0,0 +1,329 @@
+/**
+ * WebSocket endpoint for the plugin's event stream, an alternative to one REST request per event.
+ *
+ * Protocol, one JSON object per text message:
+ *
+ *   plugin -> bot  { type: 'hello', session, lastAck }   first message on every connection
+ *   bot -> plugin  { type: 'welcome', resumeFrom }       every event up to this sequence number is processed
+ *   plugin -> bot  { type: 'event', seq, update }        update is a rank update or player join payload
+ *   bot -> plugin  { type: 'ack', seq, result }          result is the same object the batch endpoint returns
+ *   bot -> plugin  { type: 'error', error }
+ *
+ * Events are handed to handleUpdate as they arrive and acknowledged as they complete, so updates for
+ * different players apply concurrently like they do over REST; handleUpdate keeps each player's updates
+ * in arrival order. The bot keeps the most recent results of each session, so acks lost in a disconnect
+ * are replayed when the plugin resumes, and events that were already processed or are still in progress
+ * are not applied twice.
+ */
+
+const logger = require('../utils/logger');
+const { OPCODES, acceptKey, encodeFrame, FrameParser } = require('./websocket');
+
+const STREAM_PATH = '/api/stream';
+
+/**
+ * How long a disconnected session is kept for resuming
+ */
+const SESSION_TTL_MS = 10 * 60 * 1000;
+
+/**
+ * Results kept per session for replaying acks after a reconnect
+ */
+const RESULT_CACHE_SIZE = 1024;
+
+/**
+ * Create the stream endpoint
+ * @param {Object} options
+ * @param {string} options.token - API token the plugin must present as a Bearer token
+ * @param {Function} options.handleUpdate - Async function applying one update and returning its result
+ * @param {number} [options.sessionTtlMs] - How long a disconnected session can be resumed
+ * @param {number} [options.resultCacheSize] - Results kept per session for replaying acks
+ * @returns {Object} handleUpgrade(req, socket, head) for the HTTP server's upgrade event, and close()
+ */
+function createStreamServer({ token, handleUpdate, sessionTtlMs = SESSION_TTL_MS, resultCacheSize = RESULT_CACHE_SIZE }) {
+    const sessions = new Map();
+    const connections = new Set();
+
+    const sweeper = setInterval(() => {
+        const cutoff = Date.now() - sessionTtlMs;
+        for (const [id, session] of sessions) {
+            if (!session.connection && session.lastSeen < cutoff) {
+                sessions.delete(id);
+            }
+        }
+    }, 60 * 1000);
+    sweeper.unref();
+
+    function handleUpgrade(req, socket, head) {
+        const path = new URL(req.url, 'http://localhost').pathname;
+        if (path !== STREAM_PATH) {
+            return rejectUpgrade(socket, 404, 'Not Found');
+        }
+
+        const key = req.headers['sec-websocket-key'];
+        if (req.method !== 'GET'
+            || (req.headers.upgrade || '').toLowerCase() !== 'websocket'
+            || req.headers['sec-websocket-version'] !== '13'
+            || !key) {
+            return rejectUpgrade(socket, 400, 'Bad Request');
+        }
+
+        const authHeader = req.headers.authorization;
+        if (!authHeader || !authHeader.startsWith('Bearer ') || authHeader.slice(7) !== token) {
+            logger.warn(`Unauthorized event stream connection from ${socket.remoteAddress}`);
+            return rejectUpgrade(socket, 401, 'Unauthorized');
+        }
+
+        socket.write([
+            'HTTP/1.1 101 Switching Protocols',
+            'Upgrade: websocket',
+            'Connection: Upgrade',
+            `Sec-WebSocket-Accept: ${acceptKey(key)}`,
+            '',
+            ''
+        ].join('\r\n'));
+        socket.setNoDelay(true);
+
+        const connection = new StreamConnection(socket, { sessions, handleUpdate, resultCacheSize });
+        connections.add(connection);
+        socket.on('close', () => connections.delete(connection));
+        if (head && head.length > 0) {
+            connection.receive(head);
+        }
+    }
+
+    function close() {
+        clearInterval(sweeper);
+        for (const connection of connections) {
+            connection.close(1001, 'Server shutting down');
+        }
+    }
+
+    return { handleUpgrade, close, sessions };
+}
+
+/**
+ * Serve the stream endpoint on an HTTP server
+ * @param {http.Server} server - Server returned by app.listen()
+ * @param {Object} options - See createStreamServer
+ */
+function attach(server, options) {
+    const streamServer = createStreamServer(options);
+    server.on('upgrade', streamServer.handleUpgrade);
+    return streamServer;
+}
+
+function rejectUpgrade(socket, status, reason) {
+    socket.end(`HTTP/1.1 ${status} ${reason}\r\nConnection: close\r\nContent-Length: 0\r\n\r\n`);
+}
+
+/**
+ * One plugin connection. Progress is tracked on the session rather than the connection, so events
+ * the previous connection still had in progress are acknowledged on the resumed one when they complete.
+ */
+class StreamConnection {
+    constructor(socket, { sessions, handleUpdate, resultCacheSize }) {
+        this.socket = socket;
+        this.sessions = sessions;
+        this.handleUpdate = handleUpdate;
+        this.resultCacheSize = resultCacheSize;
+        this.session = null;
+        this.closed = false;
+        this.parser = new FrameParser((opcode, payload) => this.onFrame(opcode, payload));
+
+        socket.on('data', chunk => this.receive(chunk));
+        socket.on('close', () => this.onClose());
+        socket.on('error', error => logger.debug(`Event stream socket error: ${error.message}`));
+    }
+
+    receive(chunk) {
+        try {
+            this.parser.push(chunk);
+        } catch (error) {
+            logger.warn(`Closing event stream from ${this.socket.remoteAddress}: ${error.message}`);
+            this.close(1002, 'Protocol error');
+        }
+    }
+
+    onFrame(opcode, payload) {
+        switch (opcode) {
+            case OPCODES.TEXT:
+                this.onMessage(payload.toString('utf8'));
+                break;
+            case OPCODES.BINARY:
+                this.close(1003, 'Binary messages are not supported');
+                break;
+            case OPCODES.PING:
+                this.write(OPCODES.PONG, payload);
+                break;
+            case OPCODES.CLOSE:
+                this.close(payload.length >= 2 ? payload.readUInt16BE(0) : 1000, '');
+                break;
+            default:
+                break;
+        }
+    }
+
+    onMessage(text) {
+        let message;
+        try {
+            message = JSON.parse(text);
+        } catch {
+            return this.send({ type: 'error', error: 'Invalid JSON' });
+        }
+
+        if (message && message.type === 'hello') {
+            this.hello(message);
+        } else if (message && message.type === 'event') {
+            if (!this.session) {
+                return this.send({ type: 'error', error: 'Send hello before events' });
+            }
+            this.processEvent(this.session, message);
+        } else {
+            this.send({ type: 'error', error: 'Unknown message type' });
+        }
+    }
+
+    hello({ session: id, lastAck }) {
+        if (this.session) {
+            return this.send({ type: 'error', error: 'Session already started' });
+        }
+        if (typeof id !== 'string' || id.length === 0 || id.length > 64) {
+            return this.close(1008, 'Invalid session');
+        }
+
+        let session = this.sessions.get(id);
+        if (!session) {
+            // completedThrough: every event up to it is processed; completed: processed events above it
+            session = {
+                id,
+                completedThrough: 0,
+                completed: new Set(),
+                inProgress: new Set(),
+                results: new Map(),
+                connection: null,
+                lastSeen: Date.now()
+            };
+            this.sessions.set(id, session);
+        }
+        if (session.connection && session.connection !== this) {
+            session.connection.close(4000, 'Session resumed on another connection');
+        }
+        session.connection = this;
+        this.session = session;
+
+        // The plugin will not send anything up to lastAck again, including events that fell back to REST
+        const acknowledged = Number.isSafeInteger(lastAck) ? lastAck : 0;
+        advanceCompleted(session, acknowledged);
+
+        // Replay acks the plugin may have missed while disconnected. Events still in progress
+        // are acknowledged on this connection once they complete.
+        for (const [seq, result] of session.results) {
+            if (seq > acknowledged) {
+                this.send({ type: 'ack', seq, result });
+            }
+        }
+        this.send({ type: 'welcome', resumeFrom: session.completedThrough });
+        logger.info(`Event stream connected from ${this.socket.remoteAddress} (resuming after event ${session.completedThrough})`);
+    }
+
+    async processEvent(session, { seq, update }) {
+        if (!Number.isSafeInteger(seq) || seq <= 0) {
+            return this.send({ type: 'error', error: 'Invalid sequence number' });
+        }
+
+        if (session.inProgress.has(seq)) {
+            // Re-sent after a reconnect while the first copy is still being applied
+            return;
+        }
+        if (seq <= session.completedThrough || session.completed.has(seq)) {
+            const cached = session.results.get(seq);
+            return sendToSession(session, { type: 'ack', seq, result: cached || { success: true, message: 'Already processed' } });
+        }
+
+        session.inProgress.add(seq);
+        let result;
+        try {
+            result = await this.handleUpdate(update);
+        } catch (error) {
+            logger.error(`Error processing streamed update for ${update && update.uuid}:`, error);
+            result = { uuid: update && update.uuid, success: false, error: 'Internal server error' };
+        }
+
+        session.inProgress.delete(seq);
+        if (seq > session.completedThrough) {
+            session.completed.add(seq);
+            advanceCompleted(session, session.completedThrough);
+        }
+        session.lastSeen = Date.now();
+        session.results.set(seq, result);
+        if (session.results.size > this.resultCacheSize) {
+            session.results.delete(session.results.keys().next().value);
+        }
+        sendToSession(session, { type: 'ack', seq, result });
+    }
+
+    send(message) {
+        this.write(OPCODES.TEXT, Buffer.from(JSON.stringify(message), 'utf8'));
+    }
+
+    write(opcode, payload) {
+        if (!this.closed) {
+            this.socket.write(encodeFrame(opcode, payload));
+        }
+    }
+
+    close(code, reason) {
+        if (this.closed) {
+            return;
+        }
+        const body = Buffer.alloc(2 + Buffer.byteLength(reason));
+        body.writeUInt16BE(code, 0);
+        body.write(reason, 2);
+        this.socket.end(encodeFrame(OPCODES.CLOSE, body));
+        this.closed = true;
+        this.onClose();
+    }
+
+    onClose() {
+        this.closed = true;
+        const session = this.session;
+        if (session && session.connection === this) {
+            session.connection = null;
+            session.lastSeen = Date.now();
+            logger.info(`Event stream from ${this.socket.remoteAddress} disconnected`);
+        }
+    }
+}
+
+/**
+ * Move completedThrough up to at least the given sequence number and over every completed event after it
+ */
+function advanceCompleted(session, seq) {
+    if (seq > session.completedThrough) {
+        session.completedThrough = seq;
+        for (const completed of session.completed) {
+            if (completed <= seq) {
+                session.completed.delete(completed);
+            }
+        }
+    }
+    while (session.completed.delete(session.completedThrough + 1)) {
+        session.completedThrough++;
+    }
+}
+
+/**
+ * Send to whichever connection currently owns the session, if any
+ */
+function sendToSession(session, message) {
+    if (session.connection) {
+        session.connection.send(message);
+    }
+}
+
+module.exports = {
+    STREAM_PATH,
+    attach,
+    createStreamServer
+};
@@ -0,0 +1,238 @@
+/**
+ * Tests for the event stream endpoint
+ * Run with: node --test src/api/streamServer.test.js
+ */
+
+const { describe, it, before, after } = require('node:test');
+const assert = require('node:assert');
+const http = require('http');
+const net = require('net');
+const crypto = require('crypto');
+
+const streamServer = require('./streamServer');
+const { OPCODES, encodeFrame, FrameParser } = require('./websocket');
+
+const TOKEN = 'test-token';
+
+/**
+ * Open a raw WebSocket connection and collect the JSON messages the server sends
+ */
+function connect(port, { token = TOKEN, path = streamServer.STREAM_PATH } = {}) {
+    return new Promise((resolve, reject) => {
+        const socket = net.connect(port, '127.0.0.1');
+        const messages = [];
+        const waiters = [];
+        let handshake = Buffer.alloc(0);
+        let parser = null;
+
+        const deliver = message => {
+            const waiter = waiters.shift();
+            if (waiter) {
+                waiter(message);
+            } else {
+                messages.push(message);
+            }
+        };
+
+        const client = {
+            send: message => socket.write(encodeFrame(OPCODES.TEXT, Buffer.from(JSON.stringify(message)), true)),
+            next: () => messages.length > 0
+                ? Promise.resolve(messages.shift())
+                : new Promise(resolveMessage => waiters.push(resolveMessage)),
+            close: () => new Promise(resolveClose => {
+                socket.once('close', resolveClose);
+                socket.end(encodeFrame(OPCODES.CLOSE, Buffer.from([0x03, 0xE8]), true));
+            })
+        };
+
+        socket.on('error', reject);
+        socket.on('data', chunk => {
+            if (parser) {
+                parser.push(chunk);
+                return;
+            }
+            handshake = Buffer.concat([handshake, chunk]);
+            const end = handshake.indexOf('\r\n\r\n');
+            if (end < 0) {
+                return;
+            }
+            const status = Number(handshake.toString('latin1', 0, end).split(' ')[1]);
+            if (status !== 101) {
+                socket.destroy();
+                return resolve({ status });
+            }
+            parser = new FrameParser((opcode, payload) => {
+                if (opcode === OPCODES.TEXT) {
+                    deliver(JSON.parse(payload.toString('utf8')));
+                }
+            }, false);
+            client.status = status;
+            resolve(client);
+            if (handshake.length > end + 4) {
+                parser.push(handshake.subarray(end + 4));
+            }
+        });
+
+        socket.write([
+            `GET ${path} HTTP/1.1`,
+            'Host: localhost',
+            'Upgrade: websocket',
+            'Connection: Upgrade',
+            `Sec-WebSocket-Key: ${crypto.randomBytes(16).toString('base64')}`,
+            'Sec-WebSocket-Version: 13',
+            `Authorization: Bearer ${token}`,
+            '',
+            ''
+        ].join('\r\n'));
+    });
+}
+
+function update(uuid) {
+    return { uuid, playerName: 'Player', primaryGroup: 'default', groups: ['default'], eventType: 'GROUP_ADD' };
+}
+
+describe('Event Stream', () => {
+    let server;
+    let stream;
+    let port;
+    const processed = [];
+    // Updates for these players wait until the test releases them
+    const gates = new Map();
+
+    function hold(uuid) {
+        let release;
+        gates.set(uuid, new Promise(resolve => { release = resolve; }));
+        return () => {
+            gates.delete(uuid);
+            release();
+        };
+    }
+
+    before(async () => {
+        server = http.createServer();
+        stream = streamServer.attach(server, {
+            token: TOKEN,
+            handleUpdate: async received => {
+                processed.push(received.uuid);
+                await gates.get(received.uuid);
+                return { uuid: received.uuid, success: true, message: 'Roles synced', linked: true };
+            }
+        });
+        await new Promise(resolve => server.listen(0, '127.0.0.1', resolve));
+        port = server.address().port;
+    });
+
+    after(() => {
+        stream.close();
+        server.close();
+    });
+
+    it('should reject connections with an invalid token', async () => {
+        const client = await connect(port, { token: 'wrong' });
+        assert.strictEqual(client.status, 401);
+    });
+
+    it('should reject upgrades on other paths', async () => {
+        const client = await connect(port, { path: '/api/other' });
+        assert.strictEqual(client.status, 404);
+    });
+
+    it('should acknowledge events in order with their results', async () => {
+        const client = await connect(port);
+        client.send({ type: 'hello', session: 'in-order', lastAck: 0 });
+        assert.deepStrictEqual(await client.next(), { type: 'welcome', resumeFrom: 0 });
+
+        client.send({ type: 'event', seq: 1, update: update('uuid-1') });
+        client.send({ type: 'event', seq: 2, update: update('uuid-2') });
+
+        const first = await client.next();
+        const second = await client.next();
+        assert.strictEqual(first.type, 'ack');
+        assert.strictEqual(first.seq, 1);
+        assert.strictEqual(first.result.uuid, 'uuid-1');
+        assert.strictEqual(first.result.success, true);
+        assert.strictEqual(second.seq, 2);
+
+        await client.close();
+    });
+
+    it('should require hello before events', async () => {
+        const client = await connect(port);
+        client.send({ type: 'event', seq: 1, update: update('uuid-x') });
+        const reply = await client.next();
+        assert.strictEqual(reply.type, 'error');
+        await client.close();
+    });
+
+    it('should replay missed acks and skip processed events on resume', async () => {
+        const first = await connect(port);
+        first.send({ type: 'hello', session: 'resume', lastAck: 0 });
+        await first.next();
+        first.send({ type: 'event', seq: 1, update: update('resume-1') });
+        first.send({ type: 'event', seq: 2, update: update('resume-2') });
+        await first.next();
+        await first.next();
+        await first.close();
+
+        // The plugin only saw the ack for event 1
+        const second = await connect(port);
+        second.send({ type: 'hello', session: 'resume', lastAck: 1 });
+        const replayed = await second.next();
+        assert.strictEqual(replayed.type, 'ack');
+        assert.strictEqual(replayed.seq, 2);
+        assert.deepStrictEqual(await second.next(), { type: 'welcome', resumeFrom: 2 });
+
+        // Re-sending an event that was already processed only acknowledges it again
+        second.send({ type: 'event', seq: 2, update: update('resume-2') });
+        second.send({ type: 'event', seq: 3, update: update('resume-3') });
+        assert.strictEqual((await second.next()).seq, 2);
+        assert.strictEqual((await second.next()).seq, 3);
+
+        assert.deepStrictEqual(processed.filter(uuid => uuid.startsWith('resume-')), ['resume-1', 'resume-2', 'resume-3']);
+        await second.close();
+    });
+
+    it('should not hold back other players behind a slow update', async () => {
+        const release = hold('slow-1');
+        const client = await connect(port);
+        client.send({ type: 'hello', session: 'concurrent', lastAck: 0 });
+        await client.next();
+
+        client.send({ type: 'event', seq: 1, update: update('slow-1') });
+        client.send({ type: 'event', seq: 2, update: update('fast-2') });
+
+        assert.strictEqual((await client.next()).seq, 2);
+        release();
+        assert.strictEqual((await client.next()).seq, 1);
+
+        await client.close();
+    });
+
+    it('should resume from the last contiguous event and not re-apply one still in progress', async () => {
+        const release = hold('pending-1');
+        const first = await connect(port);
+        first.send({ type: 'hello', session: 'gap', lastAck: 0 });
+        await first.next();
+        first.send({ type: 'event', seq: 1, update: update('pending-1') });
+        first.send({ type: 'event', seq: 2, update: update('pending-2') });
+        assert.strictEqual((await first.next()).seq, 2);
+        await first.close();
+
+        // Event 2 completed but event 1 did not, so the plugin has to send event 1 again
+        const second = await connect(port);
+        second.send({ type: 'hello', session: 'gap', lastAck: 0 });
+        assert.strictEqual((await second.next()).seq, 2);
+        assert.deepStrictEqual(await second.next(), { type: 'welcome', resumeFrom: 0 });
+
+        second.send({ type: 'event', seq: 1, update: update('pending-1') });
+        second.send({ type: 'event', seq: 2, update: update('pending-2') });
+        assert.strictEqual((await second.next()).seq, 2);
+
+        // The first copy of event 1 is acknowledged on the resumed connection once it completes
+        release();
+        assert.strictEqual((await second.next()).seq, 1);
+        assert.strictEqual(stream.sessions.get('gap').completedThrough, 2);
+        assert.deepStrictEqual(processed.filter(uuid => uuid.startsWith('pending-')), ['pending-1', 'pending-2']);
+        await second.close();
+    });
+});
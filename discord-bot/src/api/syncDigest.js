@@ -0,0 +1,99 @@
+/**
+ * Ranged digest of the sync state, used by the Minecraft plugin's drift auditor.
+ *
+ * Linked players are split into a power-of-two number of ranges by the leading bits of their
+ * UUID. Each player's entry is a 64-bit hash of their UUID and the groups last applied for them,
+ * and a range hashes to the XOR of its entries. The plugin computes the same hashes from
+ * LuckPerms, compares range by range and only fetches the entries of ranges that differ.
+ */
+
+const crypto = require('crypto');
+
+const DEFAULT_BUCKETS = 256;
+const MAX_BUCKETS = 4096;
+
+/**
+ * Parse the requested number of ranges
+ * @returns {number|null} The number of ranges, or null if it is not a power of two up to MAX_BUCKETS
+ */
+function parseBuckets(value) {
+    if (value === undefined) {
+        return DEFAULT_BUCKETS;
+    }
+    const buckets = Number(value);
+    if (!Number.isInteger(buckets) || buckets < 1 || buckets > MAX_BUCKETS || (buckets & (buckets - 1)) !== 0) {
+        return null;
+    }
+    return buckets;
+}
+
+function bucketBits(buckets) {
+    return Math.log2(buckets);
+}
+
+/**
+ * Range a UUID falls into, from the first 16 bits of the UUID
+ */
+function bucketOf(uuid, buckets) {
+    return parseInt(uuid.slice(0, 4), 16) >> (16 - bucketBits(buckets));
+}
+
+/**
+ * UUID bounds of a range, for querying it: lo inclusive, hi exclusive (null for the last range)
+ */
+function bucketBounds(bucket, buckets) {
+    const shift = 16 - bucketBits(buckets);
+    const prefix = (value) => value.toString(16).padStart(4, '0');
+    return {
+        lo: prefix(bucket << shift),
+        hi: bucket + 1 < buckets ? prefix((bucket + 1) << shift) : null
+    };
+}
+
+/**
+ * Hash of a player's sync state as 16 hex characters.
+ * Linked players that were never synced hash their UUID alone, so they never match LuckPerms.
+ * @param {string} uuid - Minecraft UUID
+ * @param {string|null} fingerprint - groups_fingerprint of the player's sync state, if any
+ */
+function entryHash(uuid, fingerprint) {
+    const input = fingerprint === null || fingerprint === undefined ? uuid : `${uuid}:${fingerprint}`;
+    return crypto.createHash('sha256').update(input, 'utf8').digest('hex').slice(0, 16);
+}
+
+/**
+ * Hashes of every range
+ * @param {Array<{mc_uuid: string, groups_fingerprint: string|null}>} rows - Linked players and their sync state
+ * @returns {string[]} One hash per range, an empty string for ranges without players
+ */
+function digest(rows, buckets) {
+    const hashes = new Array(buckets).fill(null);
+    for (const row of rows) {
+        const bucket = bucketOf(row.mc_uuid, buckets);
+        const hash = BigInt(`0x${entryHash(row.mc_uuid, row.groups_fingerprint)}`);
+        hashes[bucket] = hashes[bucket] === null ? hash : hashes[bucket] ^ hash;
+    }
+    return hashes.map(hash => hash === null ? '' : hash.toString(16).padStart(16, '0'));
+}
+
+/**
+ * Entry hashes of the players in one range, keyed by UUID
+ */
+function entries(rows) {
+    const result = {};
+    for (const row of rows) {
+        result[row.mc_uuid] = entryHash(row.mc_uuid, row.groups_fingerprint);
+    }
+    return result;
+}
+
+module.exports = {
+    DEFAULT_BUCKETS,
+    MAX_BUCKETS,
+    parseBuckets,
+    bucketOf,
+    bucketBounds,
+    entryHash,
+    digest,
+    entries
+};
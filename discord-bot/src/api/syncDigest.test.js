@@ -0,0 +1,83 @@
+/**
+ * Tests for the sync state digest
+ * Run with: node --test src/api/syncDigest.test.js
+ */
+
+const { describe, it } = require('node:test');
+const assert = require('node:assert');
+
+const { DEFAULT_BUCKETS, parseBuckets, bucketOf, bucketBounds, entryHash, digest, entries } = require('./syncDigest');
+const { groupsFingerprint } = require('./updateOrdering');
+
+function row(uuid, groups) {
+    return { mc_uuid: uuid, groups_fingerprint: groups ? groupsFingerprint(groups) : null };
+}
+
+const ALICE = '069a79f4-44e9-4726-a5be-fca90e38aaf5';
+const BOB = '853c80ef-3c37-49fd-aa49-938b674adae6';
+const CAROL = '85f1a2b3-1111-4222-8333-944455556666';
+
+describe('Sync Digest', () => {
+    it('should accept powers of two up to the maximum', () => {
+        assert.strictEqual(parseBuckets(undefined), DEFAULT_BUCKETS);
+        assert.strictEqual(parseBuckets('1'), 1);
+        assert.strictEqual(parseBuckets('64'), 64);
+        assert.strictEqual(parseBuckets('4096'), 4096);
+        assert.strictEqual(parseBuckets('0'), null);
+        assert.strictEqual(parseBuckets('100'), null);
+        assert.strictEqual(parseBuckets('8192'), null);
+        assert.strictEqual(parseBuckets('abc'), null);
+    });
+
+    it('should place UUIDs by their leading bits', () => {
+        assert.strictEqual(bucketOf(ALICE, 1), 0);
+        assert.strictEqual(bucketOf(ALICE, 256), 0x06);
+        assert.strictEqual(bucketOf(BOB, 256), 0x85);
+        assert.strictEqual(bucketOf(BOB, 64), 0x85 >> 2);
+    });
+
+    it('should bound ranges by UUID prefix', () => {
+        assert.deepStrictEqual(bucketBounds(0x85, 256), { lo: '8500', hi: '8600' });
+        assert.deepStrictEqual(bucketBounds(255, 256), { lo: 'ff00', hi: null });
+        assert.deepStrictEqual(bucketBounds(0, 1), { lo: '0000', hi: null });
+        assert.ok(BOB >= bucketBounds(0x85, 256).lo && BOB < bucketBounds(0x85, 256).hi);
+    });
+
+    it('should hash entries by UUID and groups', () => {
+        assert.match(entryHash(ALICE, 'default'), /^[0-9a-f]{16}$/);
+        assert.strictEqual(entryHash(ALICE, 'default'), entryHash(ALICE, 'default'));
+        assert.notStrictEqual(entryHash(ALICE, 'default'), entryHash(ALICE, 'default\nvip'));
+        assert.notStrictEqual(entryHash(ALICE, 'default'), entryHash(BOB, 'default'));
+    });
+
+    it('should never match LuckPerms for players that were not synced', () => {
+        assert.notStrictEqual(entryHash(ALICE, null), entryHash(ALICE, ''));
+        assert.notStrictEqual(entryHash(ALICE, null), entryHash(ALICE, 'default'));
+    });
+
+    it('should XOR the entries of each range', () => {
+        const rows = [row(ALICE, ['default']), row(BOB, ['vip', 'default']), row(CAROL, ['admin'])];
+        const hashes = digest(rows, 256);
+
+        assert.strictEqual(hashes.length, 256);
+        assert.strictEqual(hashes[0x06], entryHash(ALICE, 'default'));
+        const expected = BigInt(`0x${entryHash(BOB, 'default\nvip')}`) ^ BigInt(`0x${entryHash(CAROL, 'admin')}`);
+        assert.strictEqual(hashes[0x85], expected.toString(16).padStart(16, '0'));
+        assert.strictEqual(hashes[0x00], '');
+    });
+
+    it('should change only the range of a changed player', () => {
+        const before = digest([row(ALICE, ['default']), row(BOB, ['default'])], 256);
+        const after = digest([row(ALICE, ['default']), row(BOB, ['vip'])], 256);
+
+        assert.strictEqual(after[0x06], before[0x06]);
+        assert.notStrictEqual(after[0x85], before[0x85]);
+    });
+
+    it('should list entry hashes by UUID', () => {
+        assert.deepStrictEqual(entries([row(BOB, ['default']), row(CAROL, null)]), {
+            [BOB]: entryHash(BOB, 'default'),
+            [CAROL]: entryHash(CAROL, null)
+        });
+    });
+});
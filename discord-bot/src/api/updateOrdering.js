@@ -0,0 +1,78 @@
+/**
+ * Last-writer-wins ordering of rank updates when several Minecraft servers sync the same players.
+ *
+ * Each update carries the sending server's ID and a version: wall-clock microseconds on that
+ * server, never going backwards. Versions from different servers are only as comparable as their
+ * clocks, and a server never learns the versions of the others, so an older version is not proof of
+ * an older change. The bot therefore keeps the newest version per player but only drops updates
+ * that carry the groups it last applied (duplicate), so a network sync that fires the same change
+ * on every server reaches Discord once, and an update with different groups is never lost.
+ */
+
+// How long an update with unchanged groups counts as a duplicate of the last applied one
+const DUPLICATE_WINDOW_MS = 60 * 1000;
+
+const DECISIONS = Object.freeze({
+    APPLY: 'apply',
+    DUPLICATE: 'duplicate'
+});
+
+/**
+ * Whether an update carries a version; older plugins send none
+ */
+function isVersioned(update) {
+    return Number.isSafeInteger(update.version) && update.version > 0;
+}
+
+/**
+ * Whether an update's version is behind the last applied one; ties are broken by server ID so
+ * every server sees the same winner
+ */
+function isOlder(state, update) {
+    const serverId = update.serverId || '';
+    return update.version < state.version || (update.version === state.version && serverId < state.server_id);
+}
+
+/**
+ * Order-independent fingerprint of a player's groups, the only input to role syncing
+ */
+function groupsFingerprint(groups) {
+    return [...(groups || [])].sort().join('\n');
+}
+
+/**
+ * Decide whether an update should be applied
+ * @param {Object|undefined} state - Last applied update for the player (sync_state row)
+ * @param {Object} update - Payload sent by the Minecraft plugin
+ * @param {string} fingerprint - Fingerprint of the update's groups
+ * @param {number} now - Current time in milliseconds
+ * @returns {string} One of DECISIONS
+ */
+function classifyUpdate(state, update, fingerprint, now = Date.now()) {
+    if (!state || !isVersioned(update)) {
+        return DECISIONS.APPLY;
+    }
+
+    if (update.version === state.version && (update.serverId || '') === state.server_id) {
+        return DECISIONS.DUPLICATE;
+    }
+    if (fingerprint === state.groups_fingerprint && isOlder(state, update)) {
+        return DECISIONS.DUPLICATE;
+    }
+
+    // A resync is an explicit request to reconcile, so it always reaches Discord
+    if (fingerprint === state.groups_fingerprint && update.eventType !== 'RESYNC'
+            && now - state.applied_at < DUPLICATE_WINDOW_MS) {
+        return DECISIONS.DUPLICATE;
+    }
+    return DECISIONS.APPLY;
+}
+
+module.exports = {
+    DUPLICATE_WINDOW_MS,
+    DECISIONS,
+    isVersioned,
+    isOlder,
+    groupsFingerprint,
+    classifyUpdate
+};
@@ -0,0 +1,73 @@
+/**
+ * Tests for rank update ordering
+ * Run with: node --test src/api/updateOrdering.test.js
+ */
+
+const { describe, it } = require('node:test');
+const assert = require('node:assert');
+
+const { DECISIONS, DUPLICATE_WINDOW_MS, isOlder, groupsFingerprint, classifyUpdate } = require('./updateOrdering');
+
+const NOW = 1700000000000;
+
+function state(overrides = {}) {
+    return {
+        version: 1000,
+        server_id: 'lobby',
+        groups_fingerprint: groupsFingerprint(['default', 'vip']),
+        applied_at: NOW - 1000,
+        ...overrides
+    };
+}
+
+function update(overrides = {}) {
+    return { version: 2000, serverId: 'survival', groups: ['admin', 'default'], eventType: 'GROUP_ADD', ...overrides };
+}
+
+function classify(existing, received) {
+    return classifyUpdate(existing, received, groupsFingerprint(received.groups), NOW);
+}
+
+describe('Update Ordering', () => {
+    it('should fingerprint groups independently of their order', () => {
+        assert.strictEqual(groupsFingerprint(['vip', 'default']), groupsFingerprint(['default', 'vip']));
+        assert.notStrictEqual(groupsFingerprint(['default']), groupsFingerprint(['default', 'vip']));
+    });
+
+    it('should apply the first update for a player', () => {
+        assert.strictEqual(classify(undefined, update()), DECISIONS.APPLY);
+    });
+
+    it('should apply unversioned updates from older plugins', () => {
+        assert.strictEqual(classify(state(), update({ version: undefined })), DECISIONS.APPLY);
+    });
+
+    it('should drop older updates carrying the applied groups', () => {
+        const old = state({ applied_at: NOW - DUPLICATE_WINDOW_MS });
+        assert.strictEqual(classify(old, update({ version: 999, groups: ['vip', 'default'] })), DECISIONS.DUPLICATE);
+    });
+
+    it('should apply older updates whose groups differ from the applied ones', () => {
+        assert.strictEqual(classify(state(), update({ version: 999 })), DECISIONS.APPLY);
+    });
+
+    it('should break version ties by server ID', () => {
+        assert.strictEqual(isOlder(state(), update({ version: 1000, serverId: 'hub' })), true);
+        assert.strictEqual(isOlder(state(), update({ version: 1000, serverId: 'survival' })), false);
+        assert.strictEqual(isOlder(state(), update({ version: 999 })), true);
+    });
+
+    it('should drop a redelivered update', () => {
+        assert.strictEqual(classify(state(), update({ version: 1000, serverId: 'lobby' })), DECISIONS.DUPLICATE);
+    });
+
+    it('should drop newer updates with unchanged groups inside the window', () => {
+        assert.strictEqual(classify(state(), update({ groups: ['vip', 'default'] })), DECISIONS.DUPLICATE);
+    });
+
+    it('should apply unchanged groups after the window or on resync', () => {
+        const old = state({ applied_at: NOW - DUPLICATE_WINDOW_MS });
+        assert.strictEqual(classify(old, update({ groups: ['vip', 'default'] })), DECISIONS.APPLY);
+        assert.strictEqual(classify(state(), update({ groups: ['vip', 'default'], eventType: 'RESYNC' })), DECISIONS.APPLY);
+    });
+});
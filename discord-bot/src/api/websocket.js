@@ -0,0 +1,199 @@
+/**
+ * Minimal WebSocket (RFC 6455) framing for the plugin event stream.
+ * Supports what the stream needs: text messages, fragmentation, ping/pong and close.
+ * Extensions such as permessage-deflate are not negotiated.
+ */
+
+const crypto = require('crypto');
+
+const HANDSHAKE_GUID = '258EAFA5-E914-47DA-95CA-C5AB0DC85B11';
+
+const OPCODES = {
+    CONTINUATION: 0x0,
+    TEXT: 0x1,
+    BINARY: 0x2,
+    CLOSE: 0x8,
+    PING: 0x9,
+    PONG: 0xA
+};
+
+/**
+ * Largest message accepted from a peer, in bytes
+ */
+const MAX_MESSAGE_SIZE = 5 * 1024 * 1024;
+
+/**
+ * Compute the Sec-WebSocket-Accept header for a client's Sec-WebSocket-Key
+ * @param {string} key - Sec-WebSocket-Key sent by the client
+ * @returns {string} Value for the Sec-WebSocket-Accept response header
+ */
+function acceptKey(key) {
+    return crypto.createHash('sha1').update(key + HANDSHAKE_GUID).digest('base64');
+}
+
+/**
+ * Encode a single, unfragmented frame
+ * @param {number} opcode - One of OPCODES
+ * @param {Buffer} payload - Frame payload
+ * @param {boolean} mask - Mask the payload, required for frames sent by clients
+ * @returns {Buffer} Encoded frame
+ */
+function encodeFrame(opcode, payload, mask = false) {
+    const length = payload.length;
+    const lengthBytes = length < 126 ? 0 : length < 65536 ? 2 : 8;
+    const frame = Buffer.alloc(2 + lengthBytes + (mask ? 4 : 0) + length);
+
+    frame[0] = 0x80 | opcode;
+    let offset = 2;
+    if (lengthBytes === 0) {
+        frame[1] = length;
+    } else if (lengthBytes === 2) {
+        frame[1] = 126;
+        frame.writeUInt16BE(length, 2);
+        offset += 2;
+    } else {
+        frame[1] = 127;
+        frame.writeBigUInt64BE(BigInt(length), 2);
+        offset += 8;
+    }
+
+    if (mask) {
+        frame[1] |= 0x80;
+        const key = crypto.randomBytes(4);
+        key.copy(frame, offset);
+        offset += 4;
+        for (let i = 0; i < length; i++) {
+            frame[offset + i] = payload[i] ^ key[i & 3];
+        }
+    } else {
+        payload.copy(frame, offset);
+    }
+    return frame;
+}
+
+/**
+ * Incremental frame decoder. Feed it socket data with push(); complete messages are passed to
+ * onMessage(opcode, payload) with fragments already joined, control frames as they arrive.
+ */
+class FrameParser {
+    /**
+     * @param {Function} onMessage - Called with (opcode, payload) for every complete message
+     * @param {boolean} requireMask - Reject unmasked frames, as a server must
+     */
+    constructor(onMessage, requireMask = true) {
+        this.onMessage = onMessage;
+        this.requireMask = requireMask;
+        this.buffer = Buffer.alloc(0);
+        this.fragments = [];
+        this.fragmentsLength = 0;
+        this.fragmentOpcode = null;
+    }
+
+    /**
+     * @param {Buffer} chunk - Data read from the socket
+     * @throws {Error} On a protocol violation; the connection should be closed
+     */
+    push(chunk) {
+        this.buffer = this.buffer.length === 0 ? chunk : Buffer.concat([this.buffer, chunk]);
+
+        while (this.buffer.length >= 2) {
+            const first = this.buffer[0];
+            const second = this.buffer[1];
+            const fin = (first & 0x80) !== 0;
+            const opcode = first & 0x0F;
+            const masked = (second & 0x80) !== 0;
+
+            if ((first & 0x70) !== 0) {
+                throw new Error('Unsupported extension bits set');
+            }
+            if (this.requireMask && !masked) {
+                throw new Error('Client frames must be masked');
+            }
+
+            let length = second & 0x7F;
+            let offset = 2;
+            if (length === 126) {
+                if (this.buffer.length < 4) return;
+                length = this.buffer.readUInt16BE(2);
+                offset = 4;
+            } else if (length === 127) {
+                if (this.buffer.length < 10) return;
+                const longLength = this.buffer.readBigUInt64BE(2);
+                if (longLength > BigInt(MAX_MESSAGE_SIZE)) {
+                    throw new Error('Frame too large');
+                }
+                length = Number(longLength);
+                offset = 10;
+            }
+            if (length > MAX_MESSAGE_SIZE) {
+                throw new Error('Frame too large');
+            }
+
+            const maskOffset = offset;
+            if (masked) {
+                offset += 4;
+            }
+            if (this.buffer.length < offset + length) {
+                return;
+            }
+
+            const payload = Buffer.from(this.buffer.subarray(offset, offset + length));
+            if (masked) {
+                for (let i = 0; i < length; i++) {
+                    payload[i] ^= this.buffer[maskOffset + (i & 3)];
+                }
+            }
+            this.buffer = this.buffer.subarray(offset + length);
+
+            this.handleFrame(fin, opcode, payload);
+        }
+    }
+
+    handleFrame(fin, opcode, payload) {
+        if (opcode >= OPCODES.CLOSE) {
+            if (!fin || payload.length > 125) {
+                throw new Error('Invalid control frame');
+            }
+            this.onMessage(opcode, payload);
+            return;
+        }
+
+        if (opcode === OPCODES.CONTINUATION) {
+            if (this.fragmentOpcode === null) {
+                throw new Error('Unexpected continuation frame');
+            }
+        } else if (this.fragmentOpcode !== null) {
+            throw new Error('Expected continuation frame');
+        } else if (opcode !== OPCODES.TEXT && opcode !== OPCODES.BINARY) {
+            throw new Error(`Unknown opcode ${opcode}`);
+        } else if (fin) {
+            this.onMessage(opcode, payload);
+            return;
+        } else {
+            this.fragmentOpcode = opcode;
+        }
+
+        this.fragmentsLength += payload.length;
+        if (this.fragmentsLength > MAX_MESSAGE_SIZE) {
+            throw new Error('Message too large');
+        }
+        this.fragments.push(payload);
+
+        if (fin) {
+            const message = Buffer.concat(this.fragments, this.fragmentsLength);
+            const messageOpcode = this.fragmentOpcode;
+            this.fragments = [];
+            this.fragmentsLength = 0;
+            this.fragmentOpcode = null;
+            this.onMessage(messageOpcode, message);
+        }
+    }
+}
+
+module.exports = {
+    OPCODES,
+    MAX_MESSAGE_SIZE,
+    acceptKey,
+    encodeFrame,
+    FrameParser
+};
@@ -1,4 +1,5 @@
 const Database = require('better-sqlite3');
+const crypto = require('crypto');
 const path = require('path');
 const logger = require('../utils/logger');
 
@@ -6,6 +7,11 @@ const dbPath = process.env.DATABASE_PATH || path.join(__dirname, '../../data/mcr
 
 let db = null;
 
+/**
+ * In-memory index of the rank_mappings table, rebuilt lazily after mappings change
+ */
+let rankMappingIndex = null;
+
 /**
  * Initialize the database and create tables if they don't exist
  */
@@ -52,6 +58,15 @@ function initialize() {
             expires_at DATETIME NOT NULL
         );
 
+        -- Sync state table: the last update applied per player, for ordering updates from several servers
+        CREATE TABLE IF NOT EXISTS sync_state (
+            mc_uuid TEXT PRIMARY KEY,
+            version INTEGER NOT NULL,
+            server_id TEXT NOT NULL,
+            groups_fingerprint TEXT NOT NULL,
+            applied_at INTEGER NOT NULL
+        );
+
         -- Create indexes for frequently queried columns
         CREATE INDEX IF NOT EXISTS idx_player_links_mc_uuid ON player_links(mc_uuid);
         CREATE INDEX IF NOT EXISTS idx_player_links_discord_id ON player_links(discord_id);
@@ -59,6 +74,8 @@ function initialize() {
         CREATE INDEX IF NOT EXISTS idx_link_codes_code ON link_codes(code);
     `);
 
+    rankMappingIndex = null;
+
     logger.info(`Database initialized at ${dbPath}`);
 }
 
@@ -66,6 +83,7 @@ function initialize() {
  * Close the database connection
  */
 function close() {
+    rankMappingIndex = null;
     if (db) {
         db.close();
         logger.info('Database connection closed.');
@@ -75,7 +93,8 @@ function close() {
 // ==================== Player Links ====================
 
 /**
- * Create a new player link
+ * Create a new player link.
+ * Drops the player's sync state, which described the roles of an earlier link.
  */
 function createLink(mcUuid, mcName, discordId) {
     const stmt = db.prepare(`
@@ -86,7 +105,10 @@ function createLink(mcUuid, mcName, discordId) {
             discord_id = excluded.discord_id,
             updated_at = CURRENT_TIMESTAMP
     `);
-    return stmt.run(mcUuid, mcName, discordId);
+    return db.transaction(() => {
+        deleteSyncState(mcUuid);
+        return stmt.run(mcUuid, mcName, discordId);
+    })();
 }
 
 /**
@@ -106,19 +128,27 @@ function getLinkByDiscordId(discordId) {
 }
 
 /**
- * Delete a player link by Minecraft UUID
+ * Delete a player link by Minecraft UUID, along with the player's sync state
+ * (unlinking removes the synced roles, so the last applied groups no longer hold)
  */
 function deleteLinkByMcUuid(mcUuid) {
     const stmt = db.prepare('DELETE FROM player_links WHERE mc_uuid = ?');
-    return stmt.run(mcUuid);
+    return db.transaction(() => {
+        deleteSyncState(mcUuid);
+        return stmt.run(mcUuid);
+    })();
 }
 
 /**
- * Delete a player link by Discord ID
+ * Delete a player link by Discord ID, along with the player's sync state
  */
 function deleteLinkByDiscordId(discordId) {
+    const clearState = db.prepare('DELETE FROM sync_state WHERE mc_uuid IN (SELECT mc_uuid FROM player_links WHERE discord_id = ?)');
     const stmt = db.prepare('DELETE FROM player_links WHERE discord_id = ?');
-    return stmt.run(discordId);
+    return db.transaction(() => {
+        clearState.run(discordId);
+        return stmt.run(discordId);
+    })();
 }
 
 /**
@@ -139,7 +169,7 @@ function createRankMapping(mcRank, discordRoleId) {
         INSERT OR IGNORE INTO rank_mappings (mc_rank, discord_role_id)
         VALUES (?, ?)
     `);
-    return stmt.run(mcRank.toLowerCase(), discordRoleId);
+    return invalidateOnChange(stmt.run(mcRank.toLowerCase(), discordRoleId));
 }
 
 /**
@@ -163,7 +193,7 @@ function getAllRankMappings() {
  */
 function deleteRankMapping(mcRank, discordRoleId) {
     const stmt = db.prepare('DELETE FROM rank_mappings WHERE mc_rank = ? AND discord_role_id = ?');
-    return stmt.run(mcRank.toLowerCase(), discordRoleId);
+    return invalidateOnChange(stmt.run(mcRank.toLowerCase(), discordRoleId));
 }
 
 /**
@@ -171,7 +201,7 @@ function deleteRankMapping(mcRank, discordRoleId) {
  */
 function deleteAllMappingsForRank(mcRank) {
     const stmt = db.prepare('DELETE FROM rank_mappings WHERE mc_rank = ?');
-    return stmt.run(mcRank.toLowerCase());
+    return invalidateOnChange(stmt.run(mcRank.toLowerCase()));
 }
 
 /**
@@ -182,6 +212,104 @@ function getMappedRanks() {
     return stmt.all().map(row => row.mc_rank);
 }
 
+/**
+ * Get the rank mapping index used for role syncs.
+ * rolesByRank maps each lowercase Minecraft rank to its Discord role IDs and
+ * mappedRoleIds contains every role ID that has a mapping. revision is a hash of
+ * all mappings, reported to the plugin so it stops skipping joins once they change.
+ * The index is built from a single query and reused until a mapping is created or deleted.
+ */
+function getRankMappingIndex() {
+    if (!rankMappingIndex) {
+        const rolesByRank = new Map();
+        const mappedRoleIds = new Set();
+        const hash = crypto.createHash('sha1');
+        const rows = db.prepare('SELECT mc_rank, discord_role_id FROM rank_mappings ORDER BY mc_rank, discord_role_id').all();
+
+        for (const row of rows) {
+            hash.update(`${row.mc_rank}\0${row.discord_role_id}\n`);
+            let roleIds = rolesByRank.get(row.mc_rank);
+            if (!roleIds) {
+                roleIds = [];
+                rolesByRank.set(row.mc_rank, roleIds);
+            }
+            roleIds.push(row.discord_role_id);
+            mappedRoleIds.add(row.discord_role_id);
+        }
+
+        rankMappingIndex = { rolesByRank, mappedRoleIds, revision: hash.digest('hex').slice(0, 16) };
+        logger.debug(`Rank mapping index built with ${rows.length} mapping(s).`);
+    }
+    return rankMappingIndex;
+}
+
+/**
+ * Revision of the rank mappings, changing whenever a mapping is created or deleted
+ */
+function getRankMappingRevision() {
+    return getRankMappingIndex().revision;
+}
+
+/**
+ * Drop the rank mapping index if a statement changed the rank_mappings table
+ */
+function invalidateOnChange(result) {
+    if (result.changes > 0) {
+        rankMappingIndex = null;
+    }
+    return result;
+}
+
+// ==================== Sync State ====================
+
+/**
+ * Get the last update applied for a player
+ * @returns {Object|undefined} Row with version, server_id, groups_fingerprint and applied_at (ms)
+ */
+function getSyncState(mcUuid) {
+    const stmt = db.prepare('SELECT * FROM sync_state WHERE mc_uuid = ?');
+    return stmt.get(mcUuid);
+}
+
+/**
+ * Record the last update applied for a player
+ */
+function saveSyncState(mcUuid, version, serverId, groupsFingerprint, appliedAt) {
+    const stmt = db.prepare(`
+        INSERT INTO sync_state (mc_uuid, version, server_id, groups_fingerprint, applied_at)
+        VALUES (?, ?, ?, ?, ?)
+        ON CONFLICT(mc_uuid) DO UPDATE SET
+            version = excluded.version,
+            server_id = excluded.server_id,
+            groups_fingerprint = excluded.groups_fingerprint,
+            applied_at = excluded.applied_at
+    `);
+    return stmt.run(mcUuid, version, serverId, groupsFingerprint, appliedAt);
+}
+
+/**
+ * Forget the last update applied for a player
+ */
+function deleteSyncState(mcUuid) {
+    const stmt = db.prepare('DELETE FROM sync_state WHERE mc_uuid = ?');
+    return stmt.run(mcUuid);
+}
+
+/**
+ * Linked players with the groups last applied for them, ordered by UUID.
+ * Optionally limited to UUIDs from lo (inclusive) up to hi (exclusive).
+ */
+function getLinkedSyncStates(lo = null, hi = null) {
+    const stmt = db.prepare(`
+        SELECT l.mc_uuid, s.groups_fingerprint
+        FROM player_links l
+        LEFT JOIN sync_state s ON s.mc_uuid = l.mc_uuid
+        WHERE (? IS NULL OR l.mc_uuid >= ?) AND (? IS NULL OR l.mc_uuid < ?)
+        ORDER BY l.mc_uuid
+    `);
+    return stmt.all(lo, lo, hi, hi);
+}
+
 // ==================== Link Codes ====================
 
 /**
@@ -259,7 +387,6 @@ function cleanupExpiredCodes() {
  */
 function generateCode() {
     const chars = 'ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789';
-    const crypto = require('crypto');
     let code = '';
     for (let i = 0; i < 6; i++) {
         // Use randomInt for unbiased random selection
@@ -285,6 +412,13 @@ module.exports = {
     deleteRankMapping,
     deleteAllMappingsForRank,
     getMappedRanks,
+    getRankMappingIndex,
+    getRankMappingRevision,
+    // Sync state
+    getSyncState,
+    saveSyncState,
+    deleteSyncState,
+    getLinkedSyncStates,
     // Link codes
     createLinkCode,
     verifyLinkCode,
@@ -137,6 +137,112 @@ describe('Database Module', () => {
             const roles = database.getRolesByRank('trial');
             assert.strictEqual(roles.length, 0);
         });
+
+        it('should index roles by rank', () => {
+            database.createRankMapping('vip', 'role-vip');
+            database.createRankMapping('VIP', 'role-vip-2');
+            database.createRankMapping('admin', 'role-admin');
+
+            const index = database.getRankMappingIndex();
+            assert.deepStrictEqual([...index.rolesByRank.get('vip')].sort(), ['role-vip', 'role-vip-2']);
+            assert.deepStrictEqual(index.rolesByRank.get('admin'), ['role-admin']);
+            assert.strictEqual(index.mappedRoleIds.size, 3);
+            assert.ok(index.mappedRoleIds.has('role-admin'));
+        });
+
+        it('should rebuild the index after mappings change', () => {
+            database.createRankMapping('builder', 'role-builder');
+            const before = database.getRankMappingIndex();
+            assert.strictEqual(database.getRankMappingIndex(), before);
+
+            database.createRankMapping('builder', 'role-builder-2');
+            const afterCreate = database.getRankMappingIndex();
+            assert.notStrictEqual(afterCreate, before);
+            assert.strictEqual(afterCreate.rolesByRank.get('builder').length, 2);
+
+            database.deleteAllMappingsForRank('builder');
+            const afterDelete = database.getRankMappingIndex();
+            assert.strictEqual(afterDelete.rolesByRank.has('builder'), false);
+            assert.strictEqual(afterDelete.mappedRoleIds.has('role-builder'), false);
+        });
+
+        it('should keep the index when nothing changed', () => {
+            database.createRankMapping('guide', 'role-guide');
+            const index = database.getRankMappingIndex();
+
+            database.createRankMapping('guide', 'role-guide');
+            database.deleteRankMapping('guide', 'role-missing');
+            assert.strictEqual(database.getRankMappingIndex(), index);
+        });
+
+        it('should change the mapping revision with the mappings', () => {
+            database.createRankMapping('elder', 'role-elder');
+            const before = database.getRankMappingRevision();
+            assert.match(before, /^[0-9a-f]{16}$/);
+
+            database.createRankMapping('elder', 'role-elder-2');
+            const changed = database.getRankMappingRevision();
+            assert.notStrictEqual(changed, before);
+
+            database.deleteRankMapping('elder', 'role-elder-2');
+            assert.strictEqual(database.getRankMappingRevision(), before);
+        });
+    });
+
+    describe('Sync State', () => {
+        it('should return undefined for a player without state', () => {
+            assert.strictEqual(database.getSyncState('sync-unknown-uuid'), undefined);
+        });
+
+        it('should save and replace sync state', () => {
+            database.saveSyncState('sync-test-uuid', 1000, 'lobby', 'default', 1);
+            database.saveSyncState('sync-test-uuid', 2000, 'survival', 'default\nvip', 2);
+
+            const state = database.getSyncState('sync-test-uuid');
+            assert.strictEqual(state.version, 2000);
+            assert.strictEqual(state.server_id, 'survival');
+            assert.strictEqual(state.groups_fingerprint, 'default\nvip');
+            assert.strictEqual(state.applied_at, 2);
+        });
+
+        it('should list linked players with their sync state by UUID range', () => {
+            database.createLink('e1-linked-synced', 'Synced', 'discord-sync-1');
+            database.createLink('e1-linked-new', 'New', 'discord-sync-2');
+            database.createLink('e2-linked-other', 'Other', 'discord-sync-3');
+            database.saveSyncState('e1-linked-synced', 1000, 'lobby', 'default', 1);
+            database.saveSyncState('e1-unlinked', 1000, 'lobby', 'default', 1);
+
+            const rows = database.getLinkedSyncStates('e1', 'e2');
+            assert.deepStrictEqual(rows.map(row => ({ ...row })), [
+                { mc_uuid: 'e1-linked-new', groups_fingerprint: null },
+                { mc_uuid: 'e1-linked-synced', groups_fingerprint: 'default' }
+            ]);
+            assert.ok(database.getLinkedSyncStates('e2', null).some(row => row.mc_uuid === 'e2-linked-other'));
+        });
+
+        it('should drop sync state when a player unlinks and relinks', () => {
+            database.createLink('relink-uuid', 'Relinker', 'discord-relink-1');
+            database.saveSyncState('relink-uuid', 1000, 'lobby', 'default\nvip', 1);
+
+            database.deleteLinkByMcUuid('relink-uuid');
+            assert.strictEqual(database.getSyncState('relink-uuid'), undefined);
+
+            // State saved after the unlink (e.g. an update still in flight) must not survive the relink either
+            database.saveSyncState('relink-uuid', 2000, 'lobby', 'default\nvip', 2);
+            database.createLink('relink-uuid', 'Relinker', 'discord-relink-2');
+            assert.strictEqual(database.getSyncState('relink-uuid'), undefined);
+            assert.deepStrictEqual(database.getLinkedSyncStates('relink', 'relinl').map(row => ({ ...row })), [
+                { mc_uuid: 'relink-uuid', groups_fingerprint: null }
+            ]);
+        });
+
+        it('should drop sync state when unlinking by Discord ID', () => {
+            database.createLink('unlink-discord-uuid', 'Unlinker', 'discord-unlink-1');
+            database.saveSyncState('unlink-discord-uuid', 1000, 'lobby', 'default', 1);
+
+            database.deleteLinkByDiscordId('discord-unlink-1');
+            assert.strictEqual(database.getSyncState('unlink-discord-uuid'), undefined);
+        });
     });
 
     describe('Link Codes', () => {
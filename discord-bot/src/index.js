@@ -4,6 +4,8 @@ const express = require('express');
 const logger = require('./utils/logger');
 const database = require('./database/database');
 const apiRoutes = require('./api/routes');
+const streamServer = require('./api/streamServer');
+const { processRankUpdate } = require('./api/rankUpdates');
 
 // Import commands
 const linkCommand = require('./commands/link');
@@ -113,7 +115,8 @@ client.on('interactionCreate', async (interaction) => {
 
 // Initialize Express server for REST API
 const app = express();
-app.use(express.json());
+// Batched updates from the plugin can exceed the default 100kb body limit
+app.use(express.json({ limit: '1mb' }));
 
 // Make Discord client available to routes
 app.set('discordClient', client);
@@ -126,6 +129,9 @@ app.get('/health', (req, res) => {
     res.json({ status: 'ok', timestamp: new Date().toISOString() });
 });
 
+// Event stream endpoint, attached once the HTTP server is listening
+let eventStream = null;
+
 // Start the application
 async function start() {
     try {
@@ -136,10 +142,16 @@ async function start() {
 
         // Start Express server
         const port = process.env.API_PORT || 3000;
-        app.listen(port, () => {
+        const server = app.listen(port, () => {
             logger.info(`REST API server listening on port ${port}`);
         });
 
+        // Long-lived WebSocket connection the plugin can use instead of one request per event
+        eventStream = streamServer.attach(server, {
+            token: process.env.API_TOKEN,
+            handleUpdate: update => processRankUpdate(client, update)
+        });
+
         // Login to Discord
         logger.info('Connecting to Discord...');
         await client.login(process.env.DISCORD_TOKEN);
@@ -152,6 +164,9 @@ async function start() {
 // Handle graceful shutdown
 process.on('SIGINT', () => {
     logger.info('Received SIGINT. Shutting down gracefully...');
+    if (eventStream) {
+        eventStream.close();
+    }
     client.destroy();
     database.close();
     process.exit(0);
@@ -159,6 +174,9 @@ process.on('SIGINT', () => {
 
 process.on('SIGTERM', () => {
     logger.info('Received SIGTERM. Shutting down gracefully...');
+    if (eventStream) {
+        eventStream.close();
+    }
     client.destroy();
     database.close();
     process.exit(0);
@@ -0,0 +1,87 @@
+package com.mcranksync.benchmarks;
+
+import com.mcranksync.MCRankSync;
+import com.mcranksync.config.Settings;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * The per-event overhead of reading settings and building debug messages, with debug logging off:
+ * path lookups in the Bukkit configuration plus an eagerly concatenated message, against the
+ * {@link Settings} snapshot plus a message supplier that is never called
+ */
+@State(Scope.Thread)
+public class ConfigAccessBenchmark extends BenchmarkDefaults {
+
+    @Param({"1", "5", "20"})
+    public int groupCount;
+
+    private YamlConfiguration config;
+    private Settings settings;
+    private String playerName;
+    private List<String> groups;
+
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream in = MCRankSync.class.getResourceAsStream("/config.yml");
+             Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            config = YamlConfiguration.loadConfiguration(reader);
+        }
+        settings = Settings.load(config);
+        playerName = "Player-" + new UUID(SEED, groupCount).toString().substring(0, 8);
+        groups = new ArrayList<>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            groups.add("group-" + i);
+        }
+    }
+
+    @Benchmark
+    public void configLookups(Blackhole blackhole) {
+        blackhole.consume(config.getBoolean("sync.on-rank-change", true));
+        blackhole.consume(config.getBoolean("sync.include-inherited-groups", false));
+        blackhole.consume(config.getBoolean("sync.respect-contexts", false));
+        blackhole.consume(config.getBoolean("sync.require-linked", true));
+        debugEager(config.getBoolean("logging.debug", false),
+                "Rank change detected for " + playerName + ", groups: " + groups);
+        debugEager(config.getBoolean("logging.debug", false),
+                "Queued rank update for " + playerName);
+    }
+
+    @Benchmark
+    public void settingsSnapshot(Blackhole blackhole) {
+        Settings current = settings;
+        blackhole.consume(current.isSyncOnRankChange());
+        blackhole.consume(current.isIncludeInheritedGroups());
+        blackhole.consume(current.isRespectContexts());
+        blackhole.consume(current.isRequireLinked());
+        debugLazy(current.isDebug(), () -> "Rank change detected for " + playerName + ", groups: " + groups);
+        debugLazy(current.isDebug(), () -> "Queued rank update for " + playerName);
+    }
+
+    private static void debugEager(boolean enabled, String message) {
+        if (enabled) {
+            System.out.println(message);
+        }
+    }
+
+    private static void debugLazy(boolean enabled, Supplier<String> message) {
+        if (enabled) {
+            System.out.println(message.get());
+        }
+    }
+}
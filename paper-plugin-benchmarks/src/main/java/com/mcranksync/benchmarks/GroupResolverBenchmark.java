@@ -0,0 +1,52 @@
+package com.mcranksync.benchmarks;
+
+import com.mcranksync.sync.GroupResolver;
+import com.mcranksync.sync.SyncStateCache;
+import net.luckperms.api.model.user.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Extracting group names from a LuckPerms user and fingerprinting them
+ */
+@State(Scope.Thread)
+public class GroupResolverBenchmark extends BenchmarkDefaults {
+
+    @Param({"1", "5", "20"})
+    public int groupCount;
+
+    private User user;
+    private List<String> groups;
+
+    @Setup
+    public void setup() {
+        user = StubLuckPerms.user(new UUID(SEED, groupCount), "Player", groupCount);
+        groups = GroupResolver.resolveGroups(user, false, false);
+    }
+
+    @Benchmark
+    public List<String> directGroups() {
+        return GroupResolver.resolveGroups(user, false, false);
+    }
+
+    @Benchmark
+    public List<String> directGroupsInContext() {
+        return GroupResolver.resolveGroups(user, false, true);
+    }
+
+    @Benchmark
+    public List<String> inheritedGroupsInContext() {
+        return GroupResolver.resolveGroups(user, true, true);
+    }
+
+    @Benchmark
+    public long fingerprint() {
+        return SyncStateCache.fingerprint("group-0", groups);
+    }
+}
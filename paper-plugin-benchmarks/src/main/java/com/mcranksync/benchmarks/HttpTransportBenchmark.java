@@ -0,0 +1,93 @@
+package com.mcranksync.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.mcranksync.api.ApiResponse;
+import com.mcranksync.api.HttpTransport;
+import com.mcranksync.models.RankUpdatePayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request round trips through the pooled HTTP transport against an in-process stub of the bot.
+ * ApiClient itself needs a running plugin, so this measures the transport and response handling it wraps.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HttpTransportBenchmark extends BenchmarkDefaults {
+
+    private static final int BATCH_SIZE = 50;
+
+    private StubBotServer server;
+    private HttpTransport transport;
+    private String updateJson;
+    private String batchJson;
+    private String linkedPath;
+
+    @Setup
+    public void setup() throws IOException {
+        server = new StubBotServer();
+        transport = new HttpTransport(server.getEndpoint(), "benchmark-token", 5000, 10, false);
+
+        Gson gson = new GsonBuilder().create();
+        updateJson = gson.toJson(payload(0));
+
+        JsonArray updates = new JsonArray();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            updates.add(gson.toJsonTree(payload(i)));
+        }
+        JsonObject batch = new JsonObject();
+        batch.add("updates", updates);
+        batchJson = gson.toJson(batch);
+
+        linkedPath = "/api/linked/" + new UUID(SEED, 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public Boolean rankUpdate() throws IOException {
+        return transport.post("/api/rank-update", updateJson).getLinked();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Boolean rankUpdateConcurrent() throws IOException {
+        return transport.post("/api/rank-update", updateJson).getLinked();
+    }
+
+    @Benchmark
+    public ApiResponse rankUpdateBatch() throws IOException {
+        return transport.post("/api/rank-update/batch", batchJson);
+    }
+
+    @Benchmark
+    public Boolean checkLinked() throws IOException {
+        return transport.get(linkedPath).getLinked();
+    }
+
+    private static RankUpdatePayload payload(int index) {
+        return RankUpdatePayload.builder()
+                .uuid(new UUID(SEED, index).toString())
+                .playerName("Player" + index)
+                .primaryGroup("group-0")
+                .groups(List.of("group-0", "group-1", "group-2"))
+                .eventType("GROUP_ADD")
+                .build();
+    }
+}
@@ -0,0 +1,69 @@
+package com.mcranksync.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.mcranksync.api.ApiResponse;
+import com.mcranksync.api.HttpTransport;
+import com.mcranksync.models.RankUpdatePayload;
+import com.mcranksync.sync.GroupResolver;
+import com.mcranksync.sync.SyncStateCache;
+import net.luckperms.api.model.user.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work PlayerJoinListener does for a join, from the LuckPerms user to the bot's response:
+ * resolve groups, fingerprint them, build and serialize the payload, then POST it
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JoinPathBenchmark extends BenchmarkDefaults {
+
+    @Param({"1", "5", "20"})
+    public int groupCount;
+
+    private final Gson gson = new GsonBuilder().create();
+    private StubBotServer server;
+    private HttpTransport transport;
+    private User user;
+
+    @Setup
+    public void setup() throws IOException {
+        server = new StubBotServer();
+        transport = new HttpTransport(server.getEndpoint(), "benchmark-token", 5000, 10, false);
+        user = StubLuckPerms.user(new UUID(SEED, groupCount), "Player", groupCount);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public ApiResponse join(Blackhole blackhole) throws IOException {
+        List<String> groups = GroupResolver.resolveGroups(user, false, false);
+        String primaryGroup = user.getPrimaryGroup();
+        blackhole.consume(SyncStateCache.fingerprint(primaryGroup, groups));
+
+        RankUpdatePayload payload = RankUpdatePayload.builder()
+                .uuid(user.getUniqueId().toString())
+                .playerName(user.getUsername())
+                .primaryGroup(primaryGroup)
+                .groups(groups)
+                .eventType("PLAYER_JOIN")
+                .build();
+
+        return transport.post("/api/player-join", gson.toJson(payload));
+    }
+}
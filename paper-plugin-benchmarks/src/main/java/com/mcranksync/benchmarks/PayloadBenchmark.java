@@ -0,0 +1,102 @@
+package com.mcranksync.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.mcranksync.models.GroupSet;
+import com.mcranksync.models.RankUpdateJson;
+import com.mcranksync.models.RankUpdatePayload;
+import com.mcranksync.sync.GroupSetRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Building a {@link RankUpdatePayload} and serializing it: with Gson, as ApiClient used to,
+ * and with {@link RankUpdateJson} splicing in the pre-encoded groups of an interned {@link GroupSet}.
+ * The interned variants look the set up in a warm registry, as on a server where every
+ * group combination has been seen before.
+ */
+@State(Scope.Thread)
+public class PayloadBenchmark extends BenchmarkDefaults {
+
+    @Param({"1", "5", "20"})
+    public int groupCount;
+
+    private final Gson gson = new GsonBuilder().create();
+    private final GroupSetRegistry groupSets = new GroupSetRegistry(256);
+    private String uuid;
+    private List<String> groups;
+    private RankUpdatePayload payload;
+    private RankUpdatePayload internedPayload;
+
+    @Setup
+    public void setup() {
+        uuid = new UUID(SEED, groupCount).toString();
+        groups = new ArrayList<>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            groups.add("group-" + i);
+        }
+        payload = build();
+        internedPayload = buildInterned();
+    }
+
+    @Benchmark
+    public RankUpdatePayload buildPayload() {
+        return build();
+    }
+
+    @Benchmark
+    public String serialize() {
+        return gson.toJson(payload);
+    }
+
+    @Benchmark
+    public String buildAndSerialize() {
+        return gson.toJson(build());
+    }
+
+    /**
+     * Gson serialization through to the request body bytes, for comparison with the interned variants
+     */
+    @Benchmark
+    public byte[] serializeToBytes() {
+        return gson.toJson(payload).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] serializeInterned() {
+        return RankUpdateJson.encode(internedPayload);
+    }
+
+    @Benchmark
+    public byte[] buildAndSerializeInterned() {
+        return RankUpdateJson.encode(buildInterned());
+    }
+
+    private RankUpdatePayload build() {
+        return RankUpdatePayload.builder()
+                .uuid(uuid)
+                .playerName("Player")
+                .primaryGroup("group-0")
+                .groups(groups)
+                .eventType("GROUP_ADD")
+                .build();
+    }
+
+    private RankUpdatePayload buildInterned() {
+        GroupSet groupSet = groupSets.intern("group-0", groups);
+        return RankUpdatePayload.builder()
+                .uuid(uuid)
+                .playerName("Player")
+                .groupSet(groupSet)
+                .eventType("GROUP_ADD")
+                .build();
+    }
+}
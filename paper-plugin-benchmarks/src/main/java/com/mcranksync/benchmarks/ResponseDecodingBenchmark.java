@@ -0,0 +1,94 @@
+package com.mcranksync.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.mcranksync.api.ApiResponse;
+import com.mcranksync.api.ResponseDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Decoding bot responses: the previous approach (read the body into a string line by line,
+ * then parse it into a JSON tree to pick out fields) against streaming it into a typed response.
+ * Run with {@code -prof gc} and compare gc.alloc.rate.norm for the allocation per response.
+ */
+@State(Scope.Thread)
+public class ResponseDecodingBenchmark extends BenchmarkDefaults {
+
+    private static final String UPDATE_RESULT = "\"success\":true,\"message\":\"Roles synced successfully\","
+            + "\"linked\":true,\"applied\":true,\"rolesAdded\":[\"123456789012345678\"],\"rolesRemoved\":[]";
+
+    @Param({"single", "batch"})
+    public String body;
+
+    private final ResponseDecoder decoder = new ResponseDecoder(1);
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        String json;
+        if (body.equals("single")) {
+            json = "{" + UPDATE_RESULT + "}";
+        } else {
+            StringBuilder batch = new StringBuilder("{\"success\":true,\"results\":[");
+            for (int i = 0; i < 50; i++) {
+                if (i > 0) {
+                    batch.append(',');
+                }
+                batch.append("{\"uuid\":\"").append(new UUID(SEED, i)).append("\",").append(UPDATE_RESULT).append('}');
+            }
+            json = batch.append("]}").toString();
+        }
+        bytes = json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void bufferedTree(Blackhole blackhole) throws IOException {
+        StringBuilder response = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                response.append(line.trim());
+            }
+        }
+
+        JsonObject root = JsonParser.parseString(response.toString()).getAsJsonObject();
+        JsonElement results = root.get("results");
+        if (results == null) {
+            blackhole.consume(root.get("linked").getAsBoolean());
+            return;
+        }
+        for (JsonElement result : (JsonArray) results) {
+            JsonObject object = result.getAsJsonObject();
+            blackhole.consume(object.get("success").getAsBoolean());
+            blackhole.consume(object.get("linked").getAsBoolean());
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) throws IOException {
+        ApiResponse response = decoder.decode(new ByteArrayInputStream(bytes), 200);
+        if (response.getResults().isEmpty()) {
+            blackhole.consume(response.getLinked());
+            return;
+        }
+        for (ApiResponse result : response.getResults()) {
+            blackhole.consume(result.isSuccess());
+            blackhole.consume(result.getLinked());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.mcranksync.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.mcranksync.api.ApiResponse;
+import com.mcranksync.api.EventStream;
+import com.mcranksync.api.HttpTransport;
+import com.mcranksync.models.RankUpdatePayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Rank updates over the event stream against the REST endpoints, each against an in-process stand-in
+ * of the bot. The single-event benchmarks compare per-event latency; the windowed ones send
+ * {@value #WINDOW} events before waiting for the results and report the time per event, comparing
+ * throughput of stream pipelining with REST batching.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StreamTransportBenchmark extends BenchmarkDefaults {
+
+    private static final int WINDOW = 50;
+
+    private final Gson gson = new GsonBuilder().create();
+    private StubBotServer restServer;
+    private StubStreamServer streamServer;
+    private HttpTransport transport;
+    private EventStream stream;
+    private List<RankUpdatePayload> payloads;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        restServer = new StubBotServer();
+        streamServer = new StubStreamServer();
+        transport = new HttpTransport(restServer.getEndpoint(), "benchmark-token", 5000, 10, false);
+
+        // Any fallback to REST would skew the stream numbers, so make it fail loudly instead
+        stream = new EventStream(streamServer.getEndpoint(), "benchmark-token", 1024, 10000, 30000,
+                payload -> CompletableFuture.failedFuture(new IllegalStateException("Event stream fell back to REST")),
+                Logger.getLogger(StreamTransportBenchmark.class.getName()));
+        stream.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!stream.isConnected()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Event stream did not connect to the stub server");
+            }
+            Thread.sleep(10);
+        }
+
+        payloads = new ArrayList<>(WINDOW);
+        for (int i = 0; i < WINDOW; i++) {
+            payloads.add(RankUpdatePayload.builder()
+                    .uuid(new UUID(SEED, i).toString())
+                    .playerName("Player" + i)
+                    .primaryGroup("group-0")
+                    .groups(List.of("group-0", "group-1", "group-2"))
+                    .eventType("GROUP_ADD")
+                    .build());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        stream.close();
+        streamServer.close();
+        restServer.close();
+    }
+
+    @Benchmark
+    public Boolean restSingle() throws IOException {
+        return transport.post("/api/rank-update", gson.toJson(payloads.get(0))).getLinked();
+    }
+
+    @Benchmark
+    public Boolean streamSingle() {
+        return stream.send(payloads.get(0)).join().getLinked();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WINDOW)
+    public boolean restBatch() throws IOException {
+        JsonObject batch = new JsonObject();
+        JsonArray updates = new JsonArray();
+        for (RankUpdatePayload payload : payloads) {
+            updates.add(gson.toJsonTree(payload));
+        }
+        batch.add("updates", updates);
+        return transport.post("/api/rank-update/batch", gson.toJson(batch)).isSuccess();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WINDOW)
+    public boolean streamWindow() {
+        List<CompletableFuture<ApiResponse>> results = new ArrayList<>(WINDOW);
+        for (RankUpdatePayload payload : payloads) {
+            results.add(stream.send(payload));
+        }
+        boolean success = true;
+        for (CompletableFuture<ApiResponse> result : results) {
+            success &= result.join().isSuccess();
+        }
+        return success;
+    }
+}
@@ -0,0 +1,61 @@
+package com.mcranksync.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process stand-in for the Discord bot API that answers every request with a canned success response
+ */
+final class StubBotServer implements AutoCloseable {
+
+    private static final byte[] UPDATE_RESPONSE = ("{\"success\":true,\"message\":\"Roles synced successfully\","
+            + "\"linked\":true,\"applied\":true,\"rolesAdded\":[],\"rolesRemoved\":[]}").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LINKED_RESPONSE = "{\"linked\":true,\"discordId\":\"123456789012345678\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    StubBotServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.executor = Executors.newFixedThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "StubBotServer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/api/linked", exchange -> respond(exchange, LINKED_RESPONSE));
+        server.createContext("/api", exchange -> respond(exchange, UPDATE_RESPONSE));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String getEndpoint() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.readAllBytes();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.mcranksync.benchmarks;
+
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.node.types.InheritanceNode;
+import net.luckperms.api.query.QueryOptions;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Offline stand-ins for the LuckPerms model objects the plugin reads.
+ * Only the methods used by the sync code are implemented, everything else throws.
+ */
+final class StubLuckPerms {
+
+    private StubLuckPerms() {
+    }
+
+    /**
+     * A user whose direct and inherited groups are "group-0" .. "group-(groupCount - 1)"
+     */
+    static User user(UUID uuid, String username, int groupCount) {
+        List<InheritanceNode> nodes = new ArrayList<>(groupCount);
+        List<Group> groups = new ArrayList<>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            nodes.add(inheritanceNode("group-" + i));
+            groups.add(group("group-" + i));
+        }
+        Collection<InheritanceNode> nodeView = Collections.unmodifiableList(nodes);
+        Collection<Group> groupView = Collections.unmodifiableList(groups);
+        QueryOptions queryOptions = queryOptions();
+
+        return proxy(User.class, Map.of(
+                "getUniqueId", args -> uuid,
+                "getUsername", args -> username,
+                "getPrimaryGroup", args -> groupCount > 0 ? "group-0" : "default",
+                "getNodes", args -> nodeView,
+                "getInheritedGroups", args -> groupView,
+                "getQueryOptions", args -> queryOptions
+        ));
+    }
+
+    private static InheritanceNode inheritanceNode(String groupName) {
+        return proxy(InheritanceNode.class, Map.of(
+                "getGroupName", args -> groupName,
+                "getValue", args -> Boolean.TRUE,
+                "getContexts", args -> null
+        ));
+    }
+
+    private static Group group(String name) {
+        return proxy(Group.class, Map.of("getName", args -> name));
+    }
+
+    private static QueryOptions queryOptions() {
+        return proxy(QueryOptions.class, Map.of("satisfies", args -> Boolean.TRUE));
+    }
+
+    private static <T> T proxy(Class<T> type, Map<String, Answer> methods) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            Answer implementation = methods.get(method.getName());
+            if (implementation != null) {
+                return implementation.invoke(args);
+            }
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "Stub" + type.getSimpleName();
+                default:
+                    throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    @FunctionalInterface
+    private interface Answer {
+        Object invoke(Object[] args);
+    }
+}
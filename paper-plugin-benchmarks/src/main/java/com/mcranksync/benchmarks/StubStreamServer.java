@@ -0,0 +1,157 @@
+package com.mcranksync.benchmarks;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.mcranksync.api.EventStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * In-process stand-in for the bot's event stream endpoint. Speaks just enough WebSocket to accept
+ * one connection at a time and acknowledges every event immediately with a canned success result.
+ */
+final class StubStreamServer implements AutoCloseable {
+
+    private static final String HANDSHAKE_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final String RESULT = "{\"success\":true,\"message\":\"Roles synced successfully\","
+            + "\"linked\":true,\"applied\":true,\"rolesAdded\":[],\"rolesRemoved\":[]}";
+
+    private final ServerSocket serverSocket;
+    private final Thread acceptThread;
+    private volatile boolean closed;
+
+    StubStreamServer() throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.acceptThread = new Thread(this::acceptLoop, "StubStreamServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    String getEndpoint() {
+        return "http://" + serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setTcpNoDelay(true);
+                serve(socket);
+            } catch (IOException e) {
+                // Connection closed by the client or the server is shutting down
+            }
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+
+        String key = readHandshake(in);
+        if (key == null) {
+            out.write("HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            return;
+        }
+        out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+        while (true) {
+            int first = in.readUnsignedByte();
+            int second = in.readUnsignedByte();
+            int opcode = first & 0x0F;
+            long length = second & 0x7F;
+            if (length == 126) {
+                length = in.readUnsignedShort();
+            } else if (length == 127) {
+                length = in.readLong();
+            }
+            byte[] mask = new byte[4];
+            in.readFully(mask);
+            byte[] payload = new byte[(int) length];
+            in.readFully(payload);
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] ^= mask[i & 3];
+            }
+
+            if (opcode == 0x8) {
+                writeFrame(out, 0x8, new byte[0]);
+                return;
+            }
+            if (opcode == 0x1) {
+                JsonObject message = JsonParser.parseString(new String(payload, StandardCharsets.UTF_8)).getAsJsonObject();
+                String type = message.get("type").getAsString();
+                if ("hello".equals(type)) {
+                    writeText(out, "{\"type\":\"welcome\",\"resumeFrom\":0}");
+                } else if ("event".equals(type)) {
+                    writeText(out, "{\"type\":\"ack\",\"seq\":" + message.get("seq").getAsLong() + ",\"result\":" + RESULT + "}");
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the upgrade request up to the blank line and return its Sec-WebSocket-Key, if it is for the stream path
+     */
+    private static String readHandshake(DataInputStream in) throws IOException {
+        StringBuilder headers = new StringBuilder();
+        while (headers.length() < 8192 && (headers.length() < 4 || !headers.substring(headers.length() - 4).equals("\r\n\r\n"))) {
+            headers.append((char) in.readUnsignedByte());
+        }
+
+        String[] lines = headers.toString().split("\r\n");
+        if (!lines[0].startsWith("GET " + EventStream.PATH)) {
+            return null;
+        }
+        for (String line : lines) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+                return line.substring(colon + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    private static void writeText(OutputStream out, String text) throws IOException {
+        writeFrame(out, 0x1, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeFrame(OutputStream out, int opcode, byte[] payload) throws IOException {
+        byte[] header;
+        if (payload.length < 126) {
+            header = new byte[] {(byte) (0x80 | opcode), (byte) payload.length};
+        } else {
+            header = new byte[] {(byte) (0x80 | opcode), 126, (byte) (payload.length >>> 8), (byte) payload.length};
+        }
+        out.write(header);
+        out.write(payload);
+        out.flush();
+    }
+
+    private static String acceptKey(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest((key + HANDSHAKE_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.mcranksync.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.mcranksync.models.RankUpdateCodec;
+import com.mcranksync.models.RankUpdatePayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encode/decode time of a rank update batch as Gson JSON versus the binary batch format.
+ * Encoded sizes, plain and gzipped, are printed once per fork.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WireFormatBenchmark extends BenchmarkDefaults {
+
+    @Param({"1", "50", "500"})
+    public int batchSize;
+
+    private final Gson gson = new GsonBuilder().create();
+    private List<RankUpdatePayload> payloads;
+    private String json;
+    private byte[] binary;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(SEED);
+        String[] groups = {"default", "member", "vip", "vip-plus", "builder", "helper", "moderator", "admin"};
+        payloads = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            List<String> playerGroups = new ArrayList<>();
+            playerGroups.add("default");
+            for (int g = 1; g < groups.length; g++) {
+                if (random.nextInt(4) == 0) {
+                    playerGroups.add(groups[g]);
+                }
+            }
+            RankUpdatePayload payload = RankUpdatePayload.builder()
+                    .uuid(new UUID(random.nextLong(), random.nextLong()).toString())
+                    .playerName("Player" + random.nextInt(1_000_000))
+                    .primaryGroup(playerGroups.get(playerGroups.size() - 1))
+                    .groups(playerGroups)
+                    .eventType(random.nextBoolean() ? "PLAYER_JOIN" : "RESYNC")
+                    .build();
+            payload.setTimestamp(1_700_000_000_000L + random.nextInt(60_000));
+            payloads.add(payload);
+        }
+
+        json = gson.toJson(new BatchRequest(payloads));
+        binary = RankUpdateCodec.encode(payloads);
+
+        byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+        System.out.printf("%nBatch of %d: JSON %d bytes (%d gzipped), binary %d bytes (%d gzipped)%n",
+                batchSize, jsonBytes.length, gzip(jsonBytes).length, binary.length, gzip(binary).length);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return gson.toJson(new BatchRequest(payloads)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return RankUpdateCodec.encode(payloads);
+    }
+
+    @Benchmark
+    public List<RankUpdatePayload> decodeJson() {
+        return gson.fromJson(json, BatchRequest.class).updates;
+    }
+
+    @Benchmark
+    public List<RankUpdatePayload> decodeBinary() {
+        return RankUpdateCodec.decode(binary);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(data);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Same shape as the request body ApiClient sends
+     */
+    private static class BatchRequest {
+        final List<RankUpdatePayload> updates;
+
+        BatchRequest(List<RankUpdatePayload> updates) {
+            this.updates = updates;
+        }
+    }
+}
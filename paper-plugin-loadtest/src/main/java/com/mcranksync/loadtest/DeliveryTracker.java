@@ -0,0 +1,148 @@
+package com.mcranksync.loadtest;
+
+import com.mcranksync.models.RankUpdatePayload;
+import com.mcranksync.sync.SyncStateCache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Matches what the mock bot receives against what the scenario changed.
+ * For every player the scenario records the state the bot should end up with; a delivery
+ * carrying that state completes the player and its latency is measured from the first change.
+ * Players whose final state never arrives are reported as dropped.
+ */
+final class DeliveryTracker {
+
+    private final Map<UUID, Expectation> expected = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> lastVersions = new ConcurrentHashMap<>();
+    private final LongAdder deliveries = new LongAdder();
+    private final LongAdder unexpected = new LongAdder();
+    private final LongAdder redundant = new LongAdder();
+    private final LongAdder outOfOrder = new LongAdder();
+
+    /**
+     * The scenario changed a player; the bot should eventually receive this primary group and groups
+     */
+    void expect(UUID uuid, String primaryGroup, Collection<String> groups) {
+        long fingerprint = SyncStateCache.fingerprint(primaryGroup, groups);
+        long now = System.nanoTime();
+        expected.compute(uuid, (key, previous) -> {
+            if (previous != null && previous.deliveredAt == 0) {
+                // Still waiting for an earlier change; latency counts from the first one
+                return new Expectation(fingerprint, previous.firedAt);
+            }
+            return new Expectation(fingerprint, now);
+        });
+    }
+
+    void onDelivery(RankUpdatePayload payload) {
+        deliveries.increment();
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(payload.getUuid());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            unexpected.increment();
+            return;
+        }
+        long version = payload.getVersion();
+        if (version != 0) {
+            long previous = lastVersions.merge(uuid, version, Math::max);
+            if (previous != version) {
+                // A newer update for this player arrived first
+                outOfOrder.increment();
+            }
+        }
+
+        Expectation expectation = expected.get(uuid);
+        if (expectation == null) {
+            unexpected.increment();
+            return;
+        }
+        long fingerprint = SyncStateCache.fingerprint(payload.getPrimaryGroup(), payload.getGroups());
+        if (fingerprint != expectation.fingerprint) {
+            // An intermediate state that was superseded before it was sent
+            return;
+        }
+        synchronized (expectation) {
+            if (expectation.deliveredAt != 0) {
+                redundant.increment();
+                return;
+            }
+            expectation.deliveredAt = System.nanoTime();
+        }
+    }
+
+    int getExpectedCount() {
+        return expected.size();
+    }
+
+    long getCompletedCount() {
+        return expected.size() - getPendingCount();
+    }
+
+    long getPendingCount() {
+        return expected.values().stream().filter(expectation -> expectation.deliveredAt == 0).count();
+    }
+
+    long getDeliveryCount() {
+        return deliveries.sum();
+    }
+
+    long getUnexpectedCount() {
+        return unexpected.sum();
+    }
+
+    long getRedundantCount() {
+        return redundant.sum();
+    }
+
+    /**
+     * Updates that arrived after a newer update (by version) for the same player
+     */
+    long getOutOfOrderCount() {
+        return outOfOrder.sum();
+    }
+
+    /**
+     * End-to-end latencies of completed players in milliseconds, sorted ascending
+     */
+    double[] getLatenciesMillis() {
+        return expected.values().stream()
+                .filter(expectation -> expectation.deliveredAt != 0)
+                .mapToDouble(expectation -> (expectation.deliveredAt - expectation.firedAt) / 1_000_000.0)
+                .sorted()
+                .toArray();
+    }
+
+    static double percentile(double[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    static double max(double[] sorted) {
+        return sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+    }
+
+    static double mean(double[] values) {
+        return Arrays.stream(values).average().orElse(0);
+    }
+
+    private static final class Expectation {
+        final long fingerprint;
+        final long firedAt;
+        volatile long deliveredAt;
+
+        Expectation(long fingerprint, long firedAt) {
+            this.fingerprint = fingerprint;
+            this.firedAt = firedAt;
+        }
+    }
+}
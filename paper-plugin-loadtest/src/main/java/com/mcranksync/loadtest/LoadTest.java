@@ -0,0 +1,602 @@
+package com.mcranksync.loadtest;
+
+import com.mcranksync.MCRankSync;
+import com.mcranksync.api.Lane;
+import com.mcranksync.listeners.PlayerJoinListener;
+import com.mcranksync.models.RankUpdatePayload;
+import com.mcranksync.sync.MainThreadExecutor;
+import com.mcranksync.sync.SyncDispatcher;
+import com.mcranksync.sync.UpdateVersioner;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+/**
+ * Load test harness for the plugin.
+ * Boots the real plugin against a stubbed server and LuckPerms, drives it with synthetic players
+ * and sends everything to a local mock bot, then reports how long it took for every change to
+ * reach the bot, what never arrived, and what it cost in allocation and threads.
+ *
+ * <pre>
+ * java -jar target/loadtest.jar --scenario join-storm --players 2000 --duration 10 --latency 40
+ * </pre>
+ */
+public final class LoadTest {
+
+    private static final List<String> SCENARIOS = List.of("join-storm", "mass-promotion", "parent-change", "status-burst", "ordering");
+    private static final int PRODUCER_THREADS = 16;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println();
+            System.err.println(Options.USAGE);
+            System.exit(2);
+            return;
+        }
+        if (options.help) {
+            System.out.println(Options.USAGE);
+            return;
+        }
+
+        List<String> scenarios = options.scenario.equals("all") ? SCENARIOS : List.of(options.scenario);
+        boolean failed = false;
+        for (String scenario : scenarios) {
+            Report report = new Run(scenario, options).execute();
+            System.out.println(report.format());
+            failed |= report.isFailed();
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * One scenario against a freshly enabled plugin, server, LuckPerms and bot
+     */
+    private static final class Run {
+
+        private final String scenario;
+        private final Options options;
+        private final StubServer server = new StubServer();
+        private final StubLuckPerms luckPerms;
+        private final DeliveryTracker tracker = new DeliveryTracker();
+        private final ScheduledExecutorService driver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LoadTest-Driver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private final boolean includeInherited;
+        private double[] joinMicros = new double[0];
+        private int expectedMessages;
+
+        Run(String scenario, Options options) {
+            this.scenario = scenario;
+            this.options = options;
+            this.luckPerms = new StubLuckPerms(options.storageLatency);
+            this.includeInherited = Boolean.parseBoolean(options.overrides.getOrDefault("sync.include-inherited-groups",
+                    String.valueOf(scenario.equals("parent-change"))));
+        }
+
+        Report execute() throws Exception {
+            Path dataFolder = Files.createTempDirectory("mcranksync-loadtest");
+            try (MockBotServer bot = new MockBotServer(options.botThreads, options.latency, options.jitter,
+                    options.errorRate, options.rateLimitRate, options.seed, tracker::onDelivery)) {
+                MCRankSync plugin = enable(dataFolder, bot.getEndpoint());
+                ResourceSampler sampler = new ResourceSampler();
+                try {
+                    sampler.start();
+                    long started = System.nanoTime();
+                    switch (scenario) {
+                        case "join-storm" -> joinStorm();
+                        case "mass-promotion" -> massPromotion();
+                        case "parent-change" -> parentChange();
+                        case "status-burst" -> statusBurst();
+                        case "ordering" -> ordering(plugin);
+                        default -> throw new IllegalArgumentException("Unknown scenario " + scenario);
+                    }
+                    long drained = drain();
+                    sampler.stop();
+                    return new Report(scenario, options, tracker, bot, server, plugin, sampler, joinMicros,
+                            expectedMessages, (drained - started) / 1_000_000_000.0);
+                } finally {
+                    plugin.onDisable();
+                }
+            } finally {
+                driver.shutdownNow();
+                luckPerms.shutdown();
+                server.shutdown();
+                deleteRecursively(dataFolder);
+            }
+        }
+
+        /**
+         * Players join at an even rate over the duration. LuckPerms has already loaded them during
+         * login, as on a real server, so the join handler normally finds them cached.
+         */
+        private void joinStorm() throws Exception {
+            PlayerJoinListener listener = findListener(PlayerJoinListener.class);
+            luckPerms.createGroup("default");
+            luckPerms.createGroup("vip", "default");
+
+            int players = options.players;
+            joinMicros = new double[players];
+            CountDownLatch fired = new CountDownLatch(players);
+            long spacingNanos = options.duration * 1_000_000_000L / players;
+            for (int i = 0; i < players; i++) {
+                int index = i;
+                UUID uuid = syntheticUuid(i);
+                List<String> groups = i % 10 == 0 ? List.of("default", "vip") : List.of("default");
+                server.getServerThread().schedule(() -> {
+                    try {
+                        luckPerms.createUser(uuid, playerName(index), groups, true);
+                        Player player = server.addPlayer(uuid, playerName(index));
+                        tracker.expect(uuid, luckPerms.primaryGroup(uuid), luckPerms.effectiveGroups(uuid, includeInherited));
+
+                        long start = System.nanoTime();
+                        listener.onPlayerJoin(new PlayerJoinEvent(player, Component.empty()));
+                        joinMicros[index] = (System.nanoTime() - start) / 1000.0;
+                    } finally {
+                        fired.countDown();
+                    }
+                }, index * spacingNanos, TimeUnit.NANOSECONDS);
+            }
+            await(fired);
+        }
+
+        /**
+         * Every online player is promoted to vip, at an even rate over the duration
+         */
+        private void massPromotion() throws Exception {
+            luckPerms.createGroup("default");
+            luckPerms.createGroup("vip", "default");
+
+            int players = options.players;
+            for (int i = 0; i < players; i++) {
+                UUID uuid = syntheticUuid(i);
+                luckPerms.createUser(uuid, playerName(i), List.of("default"), true);
+                server.addPlayer(uuid, playerName(i));
+            }
+
+            CountDownLatch fired = new CountDownLatch(players);
+            long spacingNanos = options.duration * 1_000_000_000L / players;
+            for (int i = 0; i < players; i++) {
+                UUID uuid = syntheticUuid(i);
+                driver.schedule(() -> {
+                    try {
+                        // Expected before the change, so a fast delivery cannot beat it
+                        tracker.expect(uuid, "vip", List.of("default", "vip"));
+                        luckPerms.addUserGroup(uuid, "vip");
+                    } finally {
+                        fired.countDown();
+                    }
+                }, i * spacingNanos, TimeUnit.NANOSECONDS);
+            }
+            await(fired);
+        }
+
+        /**
+         * A group most players are in gains a parent in one go. One in ten members is online;
+         * the rest are loaded from storage to be compared, which is the expensive part.
+         */
+        private void parentChange() throws Exception {
+            luckPerms.createGroup("default");
+            luckPerms.createGroup("supporter");
+            luckPerms.createGroup("member", "default");
+
+            int players = options.players;
+            for (int i = 0; i < players; i++) {
+                UUID uuid = syntheticUuid(i);
+                boolean online = i % 10 == 0;
+                luckPerms.createUser(uuid, playerName(i), List.of("member"), online);
+                if (online) {
+                    server.addPlayer(uuid, playerName(i));
+                }
+            }
+
+            List<String> expected = includeInherited ? List.of("member", "default", "supporter") : List.of("member");
+            for (int i = 0; i < players; i++) {
+                tracker.expect(syntheticUuid(i), "member", expected);
+            }
+            luckPerms.addGroupParent("member", "supporter");
+        }
+
+        /**
+         * Every online player runs /mcranksync status in the same tick. Nobody's link status is
+         * cached, so every reply waits for the bot and is then handed back to the server thread,
+         * which has to spread the burst of replies over several ticks.
+         */
+        private void statusBurst() throws Exception {
+            int players = options.players;
+            List<Player> online = new ArrayList<>(players);
+            for (int i = 0; i < players; i++) {
+                online.add(server.addPlayer(syntheticUuid(i), playerName(i)));
+            }
+
+            PluginCommand command = server.getServer().getPluginCommand("mcranksync");
+            CommandExecutor executor = command.getExecutor();
+            expectedMessages = players;
+            server.getServerThread().submit(() -> {
+                for (Player player : online) {
+                    executor.onCommand(player, command, "mcranksync", new String[]{"status"});
+                }
+            }).get(options.duration + 60, TimeUnit.SECONDS);
+        }
+
+        /**
+         * Every player gets a join followed straight away by a run of rank changes, submitted
+         * from many threads at once and past the outbox, so nothing is coalesced. Without ordered
+         * delivery the join and rank change lanes and the bot's jitter let later updates overtake.
+         */
+        private void ordering(MCRankSync plugin) throws Exception {
+            int players = options.players;
+            int updates = options.updatesPerPlayer;
+            SyncDispatcher dispatcher = plugin.getSyncDispatcher();
+            UpdateVersioner versioner = plugin.getUpdateVersioner();
+            ExecutorService producers = Executors.newFixedThreadPool(PRODUCER_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "LoadTest-Producer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            try {
+                CountDownLatch fired = new CountDownLatch(players);
+                long spacingNanos = options.duration * 1_000_000_000L / players;
+                for (int i = 0; i < players; i++) {
+                    int index = i;
+                    driver.schedule(() -> producers.execute(() -> {
+                        try {
+                            UUID uuid = syntheticUuid(index);
+                            String last = "rank-" + (updates - 1);
+                            tracker.expect(uuid, last, List.of("default", last));
+                            for (int k = 0; k < updates; k++) {
+                                String rank = "rank-" + k;
+                                dispatcher.submit(RankUpdatePayload.builder()
+                                        .uuid(uuid.toString())
+                                        .playerName(playerName(index))
+                                        .primaryGroup(rank)
+                                        .groups(List.of("default", rank))
+                                        .eventType(k == 0 ? "PLAYER_JOIN" : "GROUP_CHANGE")
+                                        .serverId(versioner.getServerId())
+                                        .version(versioner.nextVersion())
+                                        .build());
+                            }
+                        } finally {
+                            fired.countDown();
+                        }
+                    }), index * spacingNanos, TimeUnit.NANOSECONDS);
+                }
+                await(fired);
+            } finally {
+                producers.shutdown();
+            }
+        }
+
+        /**
+         * Wait for every expected state to reach the bot or for the drain timeout
+         *
+         * @return when the wait ended
+         */
+        private long drain() throws InterruptedException {
+            luckPerms.awaitEvents();
+            long deadline = System.nanoTime() + options.drainTimeout * 1_000_000_000L;
+            while ((tracker.getPendingCount() > 0 || server.getMessageCount() < expectedMessages)
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            return System.nanoTime();
+        }
+
+        private MCRankSync enable(Path dataFolder, String endpoint) throws Exception {
+            writeConfig(dataFolder, endpoint);
+            luckPerms.register();
+            if (Bukkit.getServer() == null) {
+                Bukkit.setServer(server.getServer());
+            }
+
+            PluginDescriptionFile description;
+            try (InputStream in = MCRankSync.class.getClassLoader().getResourceAsStream("plugin.yml")) {
+                if (in == null) {
+                    throw new IllegalStateException("plugin.yml not found, is the plugin jar on the classpath?");
+                }
+                description = new PluginDescriptionFile(in);
+            }
+            File pluginFile = new File(MCRankSync.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+
+            @SuppressWarnings("removal")
+            JavaPluginLoader loader = new JavaPluginLoader(server.getServer());
+            MCRankSync plugin = new HarnessPlugin(loader, description, dataFolder.toFile(), pluginFile);
+            plugin.getLogger().setLevel(options.verbose ? Level.INFO : Level.SEVERE);
+            server.setPlugin(plugin);
+
+            server.getServerThread().submit(plugin::onEnable).get(30, TimeUnit.SECONDS);
+            return plugin;
+        }
+
+        /**
+         * The plugin's default config, pointed at the mock bot, with the command line overrides applied
+         */
+        private void writeConfig(Path dataFolder, String endpoint) throws IOException {
+            YamlConfiguration config;
+            try (InputStream in = MCRankSync.class.getClassLoader().getResourceAsStream("config.yml")) {
+                if (in == null) {
+                    throw new IllegalStateException("config.yml not found, is the plugin jar on the classpath?");
+                }
+                config = YamlConfiguration.loadConfiguration(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+            config.set("api.endpoint", endpoint);
+            config.set("api.token", "loadtest");
+            config.set("logging.log-api-calls", false);
+            // The mock bot keeps no sync state to audit against
+            config.set("audit.enabled", false);
+            if (scenario.equals("parent-change")) {
+                config.set("sync.include-inherited-groups", true);
+            }
+            for (Map.Entry<String, String> override : options.overrides.entrySet()) {
+                config.set(override.getKey(), parseValue(override.getValue()));
+            }
+            config.save(dataFolder.resolve("config.yml").toFile());
+        }
+
+        private <T extends Listener> T findListener(Class<T> type) {
+            for (Listener listener : server.getListeners()) {
+                if (type.isInstance(listener)) {
+                    return type.cast(listener);
+                }
+            }
+            throw new IllegalStateException(type.getSimpleName() + " was not registered");
+        }
+
+        private void await(CountDownLatch fired) throws InterruptedException {
+            if (!fired.await(options.duration + 60, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("The scenario did not finish firing its events, the server thread is stuck");
+            }
+        }
+    }
+
+    /**
+     * The plugin as Bukkit would construct it, outside a server
+     */
+    private static final class HarnessPlugin extends MCRankSync {
+        HarnessPlugin(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+            super(loader, description, dataFolder, file);
+        }
+    }
+
+    private static final class Report {
+        private final String text;
+        private final boolean failed;
+
+        Report(String scenario, Options options, DeliveryTracker tracker, MockBotServer bot, StubServer server,
+               MCRankSync plugin, ResourceSampler sampler, double[] joinMicros, int expectedMessages, double seconds) {
+            double[] latencies = tracker.getLatenciesMillis();
+            StringBuilder out = new StringBuilder();
+            out.append(String.format(Locale.ROOT, "%n=== %s: %d players over %ds, bot latency %d+%dms, %.1f%% errors, %.1f%% rate limited ===%n",
+                    scenario, options.players, options.duration, options.latency, options.jitter,
+                    options.errorRate * 100, options.rateLimitRate * 100));
+            line(out, "Delivered", "%d/%d players in %.2fs (%.1f players/s)", tracker.getCompletedCount(),
+                    tracker.getExpectedCount(), seconds, seconds > 0 ? tracker.getCompletedCount() / seconds : 0);
+            line(out, "Latency", "p50 %.1fms  p95 %.1fms  p99 %.1fms  max %.1fms",
+                    DeliveryTracker.percentile(latencies, 50), DeliveryTracker.percentile(latencies, 95),
+                    DeliveryTracker.percentile(latencies, 99), DeliveryTracker.max(latencies));
+            line(out, "Dropped", "%d players never reached their final state", tracker.getPendingCount());
+            line(out, "Bot", "%d requests, %d updates (%d redundant, %d unexpected), %d errors and %d rate limits injected",
+                    bot.getRequestCount(), bot.getUpdateCount(), tracker.getRedundantCount(),
+                    tracker.getUnexpectedCount(), bot.getInjectedErrorCount(), bot.getInjectedRateLimitCount());
+            line(out, "Ordering", "%d updates arrived after a newer one for the same player, %d held back by the sequencer",
+                    tracker.getOutOfOrderCount(), plugin.getSyncDispatcher().getSequencerWaitCount());
+            line(out, "Plugin", "retry queue %d, executor rejected %d, outbox coalesced %d, change detector backlog %d",
+                    plugin.getRetryQueue().getDepth(), plugin.getApiClient().getExecutor().getRejectedCount(),
+                    plugin.getRankUpdateOutbox().getCoalescedCount(), plugin.getGroupChangeDetector().getDirtyCount());
+            StringBuilder lanes = new StringBuilder();
+            for (Lane lane : Lane.values()) {
+                lanes.append(String.format(Locale.ROOT, "%s %dms  ", lane.getKey(),
+                        plugin.getApiClient().getExecutor().getQueueDelayP99Millis(lane)));
+            }
+            line(out, "Queue p99", "%s", lanes.toString().trim());
+            if (joinMicros.length > 0) {
+                double[] sorted = joinMicros.clone();
+                Arrays.sort(sorted);
+                line(out, "Join handler", "mean %.1fus  p99 %.1fus  max %.1fus on the server thread",
+                        DeliveryTracker.mean(sorted), DeliveryTracker.percentile(sorted, 99), DeliveryTracker.max(sorted));
+            }
+            if (expectedMessages > 0) {
+                line(out, "Replies", "%d/%d players answered in %.2fs, %d off the server thread",
+                        server.getMessageCount(), expectedMessages, seconds, server.getOffThreadMessageCount());
+            }
+            MainThreadExecutor mainThread = plugin.getMainThread();
+            long drains = mainThread.getDrainCount();
+            line(out, "Main thread", "%d tasks over %d ticks (%d deferred), mean %.1fus  max %.1fus per tick, peak backlog %d",
+                    mainThread.getExecutedCount(), drains, mainThread.getDeferredTickCount(),
+                    drains > 0 ? mainThread.getDrainNanos() / 1000.0 / drains : 0, mainThread.getMaxDrainNanos() / 1000.0,
+                    mainThread.getPeakQueuedCount());
+            line(out, "Allocation", "%.1f MB/s (%.1f MB total), peak heap %.1f MB, %d GCs taking %dms",
+                    sampler.getAllocationRateMbPerSecond(), sampler.getAllocatedBytes() / (1024.0 * 1024.0),
+                    sampler.getPeakHeapBytes() / (1024.0 * 1024.0), sampler.getGcCount(), sampler.getGcMillis());
+            line(out, "Threads", "peak %d live, %d of them MCRankSync-*", sampler.getPeakThreads(),
+                    sampler.getPeakPluginThreads());
+            // Updates for one player must reach the bot in the order they were made
+            this.failed = tracker.getOutOfOrderCount() > 0;
+            if (failed) {
+                out.append(String.format(Locale.ROOT, "  FAILED: %d updates were delivered out of order%n",
+                        tracker.getOutOfOrderCount()));
+            }
+            this.text = out.toString();
+        }
+
+        String format() {
+            return text;
+        }
+
+        boolean isFailed() {
+            return failed;
+        }
+
+        private static void line(StringBuilder out, String label, String format, Object... args) {
+            out.append(String.format(Locale.ROOT, "  %-13s", label + ":"))
+                    .append(String.format(Locale.ROOT, format, args))
+                    .append(System.lineSeparator());
+        }
+    }
+
+    private static final class Options {
+        static final String USAGE = String.join(System.lineSeparator(),
+                "Usage: java -jar loadtest.jar [options]",
+                "  --scenario <name>        join-storm, mass-promotion, parent-change, status-burst, ordering",
+                "                           or all (default all)",
+                "  --players <n>            synthetic players (default 1000)",
+                "  --duration <seconds>     time over which joins and promotions are spread (default 10)",
+                "  --updates-per-player <n> updates sent back to back per player in ordering (default 10)",
+                "  --latency <ms>           mock bot response time (default 20)",
+                "  --jitter <ms>            random extra bot response time, 0 to this (default 10)",
+                "  --error-rate <0..1>      fraction of bot requests answered with 500 (default 0)",
+                "  --rate-limit-rate <0..1> fraction of bot requests answered with 429 (default 0)",
+                "  --bot-threads <n>        mock bot request threads (default 16)",
+                "  --storage-latency <ms>   time LuckPerms takes to load an offline user (default 5)",
+                "  --drain-timeout <s>      how long to wait for deliveries after the last event (default 30)",
+                "  --seed <n>               seed for latency jitter and injected errors (default 1)",
+                "  --set <key>=<value>      override a plugin config.yml setting, e.g. --set batch.max-size=100",
+                "  --verbose                show the plugin's log output");
+
+        String scenario = "all";
+        int players = 1000;
+        int updatesPerPlayer = 10;
+        long duration = 10;
+        long latency = 20;
+        long jitter = 10;
+        double errorRate;
+        double rateLimitRate;
+        int botThreads = 16;
+        long storageLatency = 5;
+        long drainTimeout = 30;
+        long seed = 1;
+        boolean verbose;
+        boolean help;
+        final Map<String, String> overrides = new LinkedHashMap<>();
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--help", "-h" -> options.help = true;
+                    case "--verbose" -> options.verbose = true;
+                    default -> {
+                        if (i + 1 >= args.length) {
+                            throw new IllegalArgumentException("Missing value for " + arg);
+                        }
+                        String value = args[++i];
+                        options.set(arg, value);
+                    }
+                }
+            }
+            if (!options.scenario.equals("all") && !SCENARIOS.contains(options.scenario)) {
+                throw new IllegalArgumentException("Unknown scenario " + options.scenario);
+            }
+            if (options.players < 1 || options.duration < 1 || options.updatesPerPlayer < 1) {
+                throw new IllegalArgumentException("--players, --duration and --updates-per-player must be at least 1");
+            }
+            return options;
+        }
+
+        private void set(String arg, String value) {
+            try {
+                switch (arg) {
+                    case "--scenario" -> scenario = value;
+                    case "--players" -> players = Integer.parseInt(value);
+                    case "--updates-per-player" -> updatesPerPlayer = Integer.parseInt(value);
+                    case "--duration" -> duration = Long.parseLong(value);
+                    case "--latency" -> latency = Long.parseLong(value);
+                    case "--jitter" -> jitter = Long.parseLong(value);
+                    case "--error-rate" -> errorRate = Double.parseDouble(value);
+                    case "--rate-limit-rate" -> rateLimitRate = Double.parseDouble(value);
+                    case "--bot-threads" -> botThreads = Integer.parseInt(value);
+                    case "--storage-latency" -> storageLatency = Long.parseLong(value);
+                    case "--drain-timeout" -> drainTimeout = Long.parseLong(value);
+                    case "--seed" -> seed = Long.parseLong(value);
+                    case "--set" -> {
+                        int separator = value.indexOf('=');
+                        if (separator <= 0) {
+                            throw new IllegalArgumentException("Expected --set key=value, got " + value);
+                        }
+                        overrides.put(value.substring(0, separator), value.substring(separator + 1));
+                    }
+                    default -> throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number for " + arg + ": " + value);
+            }
+        }
+    }
+
+    private static Object parseValue(String value) {
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(value);
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ignored) {
+        }
+        return value;
+    }
+
+    private static UUID syntheticUuid(int index) {
+        return new UUID(0x4c6f6164_54657374L, index);
+    }
+
+    private static String playerName(int index) {
+        return "Player" + index;
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(root)) {
+            walk.forEach(paths::add);
+        }
+        paths.sort(Comparator.reverseOrder());
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.mcranksync.loadtest;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.mcranksync.models.RankUpdateCodec;
+import com.mcranksync.models.RankUpdatePayload;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Local stand-in for the Discord bot API with configurable latency and injected failures.
+ * Every update it accepts is handed to a receiver, which is how the harness measures
+ * end-to-end latency and finds dropped events.
+ */
+final class MockBotServer implements AutoCloseable {
+
+    private static final String UPDATE_RESULT = "\"success\":true,\"message\":\"Roles synced successfully\","
+            + "\"linked\":true,\"applied\":true,\"rolesAdded\":[],\"rolesRemoved\":[]";
+
+    private final Gson gson = new GsonBuilder().create();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final double rateLimitRate;
+    private final Consumer<RankUpdatePayload> receiver;
+    private final SplittableRandom seedRandom;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder injectedErrors = new LongAdder();
+    private final LongAdder injectedRateLimits = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+
+    MockBotServer(int threads, long latencyMillis, long jitterMillis, double errorRate, double rateLimitRate,
+                  long seed, Consumer<RankUpdatePayload> receiver) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorRate = errorRate;
+        this.rateLimitRate = rateLimitRate;
+        this.receiver = receiver;
+        this.seedRandom = new SplittableRandom(seed);
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "MockBot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/api/linked", exchange -> handle(exchange, this::linked));
+        server.createContext("/api/rank-update/batch", exchange -> handle(exchange, this::batch));
+        server.createContext("/api/rank-update", exchange -> handle(exchange, this::single));
+        server.createContext("/api/player-join", exchange -> handle(exchange, this::single));
+        server.createContext("/api", exchange -> handle(exchange, body -> "{\"success\":true}"));
+        server.createContext("/health", exchange -> handle(exchange, body -> "{\"status\":\"ok\"}"));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String getEndpoint() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    long getRequestCount() {
+        return requests.sum();
+    }
+
+    long getInjectedErrorCount() {
+        return injectedErrors.sum();
+    }
+
+    long getInjectedRateLimitCount() {
+        return injectedRateLimits.sum();
+    }
+
+    long getUpdateCount() {
+        return updates.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private String single(Request request) {
+        RankUpdatePayload payload = gson.fromJson(request.text(), RankUpdatePayload.class);
+        accept(payload);
+        return "{\"uuid\":\"" + payload.getUuid() + "\"," + UPDATE_RESULT + "}";
+    }
+
+    private String batch(Request request) {
+        List<RankUpdatePayload> payloads;
+        if (RankUpdateCodec.CONTENT_TYPE.equals(request.contentType)) {
+            payloads = RankUpdateCodec.decode(request.body);
+        } else {
+            JsonArray array = JsonParser.parseString(request.text()).getAsJsonObject().getAsJsonArray("updates");
+            payloads = new ArrayList<>(array.size());
+            for (JsonElement element : array) {
+                payloads.add(gson.fromJson(element, RankUpdatePayload.class));
+            }
+        }
+
+        JsonArray results = new JsonArray();
+        for (RankUpdatePayload payload : payloads) {
+            accept(payload);
+            JsonObject result = JsonParser.parseString("{" + UPDATE_RESULT + "}").getAsJsonObject();
+            result.addProperty("uuid", payload.getUuid());
+            results.add(result);
+        }
+        JsonObject response = new JsonObject();
+        response.addProperty("success", true);
+        response.add("results", results);
+        return response.toString();
+    }
+
+    private String linked(Request request) {
+        return "{\"linked\":true,\"discordId\":\"123456789012345678\"}";
+    }
+
+    private void accept(RankUpdatePayload payload) {
+        updates.increment();
+        receiver.accept(payload);
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try {
+            requests.increment();
+            byte[] body;
+            try (InputStream in = "gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))
+                    ? new GZIPInputStream(exchange.getRequestBody())
+                    : exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+
+            SplittableRandom random;
+            synchronized (seedRandom) {
+                random = seedRandom.split();
+            }
+            long delay = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+
+            double roll = random.nextDouble();
+            if (roll < errorRate) {
+                injectedErrors.increment();
+                respond(exchange, 500, "{\"error\":\"Internal server error\"}");
+                return;
+            }
+            if (roll < errorRate + rateLimitRate) {
+                injectedRateLimits.increment();
+                respond(exchange, 429, "{\"error\":\"Too many requests, please try again later.\"}");
+                return;
+            }
+
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            respond(exchange, 200, handler.handle(new Request(body, contentType)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        } catch (RuntimeException e) {
+            respond(exchange, 400, "{\"error\":\"" + e.getClass().getSimpleName() + "\"}");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        String handle(Request request);
+    }
+
+    private static final class Request {
+        final byte[] body;
+        final String contentType;
+
+        Request(byte[] body, String contentType) {
+            this.body = body;
+            this.contentType = contentType == null ? "" : contentType.split(";")[0].trim();
+        }
+
+        String text() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+}
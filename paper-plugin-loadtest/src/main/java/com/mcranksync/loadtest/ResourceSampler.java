@@ -0,0 +1,159 @@
+package com.mcranksync.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples heap allocation, heap usage, GC time and thread counts while a scenario runs.
+ * Allocation is summed from the per-thread allocated byte counters of the HotSpot thread bean;
+ * threads that die between samples lose at most one interval of their allocations.
+ */
+final class ResourceSampler {
+
+    private static final long INTERVAL_MILLIS = 100;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "LoadTest-Sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<Long, Long> lastAllocated = new HashMap<>();
+    private boolean primed;
+    private long allocatedBytes;
+    private long peakHeapBytes;
+    private int peakThreads;
+    private int peakPluginThreads;
+    private long startNanos;
+    private long stopNanos;
+    private long gcMillisAtStart;
+    private long gcCountAtStart;
+    private long gcMillis;
+    private long gcCount;
+
+    void start() {
+        com.sun.management.ThreadMXBean allocation = allocationBean();
+        if (allocation != null && !allocation.isThreadAllocatedMemoryEnabled()) {
+            allocation.setThreadAllocatedMemoryEnabled(true);
+        }
+        gcMillisAtStart = gcMillis();
+        gcCountAtStart = gcCount();
+        startNanos = System.nanoTime();
+        sample();
+        executor.scheduleAtFixedRate(this::sample, INTERVAL_MILLIS, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop sampling; the totals below cover the time between start and stop
+     */
+    void stop() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sample();
+        stopNanos = System.nanoTime();
+        gcMillis = gcMillis() - gcMillisAtStart;
+        gcCount = gcCount() - gcCountAtStart;
+    }
+
+    synchronized double getAllocationRateMbPerSecond() {
+        double seconds = (stopNanos - startNanos) / 1_000_000_000.0;
+        return seconds <= 0 ? 0 : allocatedBytes / (1024.0 * 1024.0) / seconds;
+    }
+
+    synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    synchronized long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    synchronized int getPeakThreads() {
+        return peakThreads;
+    }
+
+    /**
+     * Highest number of live threads started by the plugin itself (named MCRankSync-*)
+     */
+    synchronized int getPeakPluginThreads() {
+        return peakPluginThreads;
+    }
+
+    long getGcMillis() {
+        return gcMillis;
+    }
+
+    long getGcCount() {
+        return gcCount;
+    }
+
+    private synchronized void sample() {
+        peakHeapBytes = Math.max(peakHeapBytes, memory.getHeapMemoryUsage().getUsed());
+
+        long[] ids = threads.getAllThreadIds();
+        peakThreads = Math.max(peakThreads, ids.length);
+
+        int pluginThreads = 0;
+        for (ThreadInfo info : threads.getThreadInfo(ids)) {
+            if (info != null && info.getThreadName().startsWith("MCRankSync-")) {
+                pluginThreads++;
+            }
+        }
+        peakPluginThreads = Math.max(peakPluginThreads, pluginThreads);
+
+        com.sun.management.ThreadMXBean allocation = allocationBean();
+        if (allocation == null) {
+            return;
+        }
+        long[] allocated = allocation.getThreadAllocatedBytes(ids);
+        for (int i = 0; i < ids.length; i++) {
+            if (allocated[i] < 0) {
+                continue;
+            }
+            Long previous = lastAllocated.put(ids[i], allocated[i]);
+            if (previous != null) {
+                allocatedBytes += allocated[i] - previous;
+            } else if (primed) {
+                // Started since the previous sample, so everything it allocated counts
+                allocatedBytes += allocated[i];
+            }
+        }
+        primed = true;
+    }
+
+    private com.sun.management.ThreadMXBean allocationBean() {
+        return threads instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported()
+                ? bean
+                : null;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionCount());
+        }
+        return total;
+    }
+}
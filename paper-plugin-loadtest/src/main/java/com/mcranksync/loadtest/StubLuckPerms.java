@@ -0,0 +1,430 @@
+package com.mcranksync.loadtest;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.LuckPermsProvider;
+import net.luckperms.api.event.EventBus;
+import net.luckperms.api.event.LuckPermsEvent;
+import net.luckperms.api.event.node.NodeAddEvent;
+import net.luckperms.api.event.node.NodeMutateEvent;
+import net.luckperms.api.event.node.NodeRemoveEvent;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import net.luckperms.api.model.PermissionHolder;
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.model.group.GroupManager;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.types.InheritanceNode;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-memory LuckPerms with synthetic users and groups.
+ * Changes made through it post the same events LuckPerms does (node mutation, then a data
+ * recalculation of every loaded user affected) on a separate thread, like LuckPerms' own
+ * asynchronous event dispatch. Loading an offline user takes the configured storage latency.
+ */
+final class StubLuckPerms {
+
+    private final long storageLatencyMillis;
+    private final Map<UUID, StubUser> users = new ConcurrentHashMap<>();
+    private final Set<UUID> loaded = ConcurrentHashMap.newKeySet();
+    private final Map<String, StubGroup> groups = new ConcurrentHashMap<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Map<Object, Node> matcherNodes = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final ExecutorService eventExecutor;
+    private final ExecutorService storageExecutor;
+    private final LuckPerms api;
+    private final UserManager userManager;
+    private final GroupManager groupManager;
+
+    StubLuckPerms(long storageLatencyMillis) {
+        this.storageLatencyMillis = storageLatencyMillis;
+        this.eventExecutor = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "luckperms-event"));
+        this.storageExecutor = Executors.newFixedThreadPool(4, runnable -> daemon(runnable, "luckperms-storage"));
+        this.userManager = Stubs.proxy(UserManager.class, Map.of(
+                "getUser", (method, args) -> loaded.contains((UUID) args[0]) ? userProxy((UUID) args[0]) : null,
+                "isLoaded", (method, args) -> loaded.contains((UUID) args[0]),
+                "loadUser", (method, args) -> loadUser((UUID) args[0]),
+                "getLoadedUsers", (method, args) -> loadedUsers(),
+                "getUniqueUsers", (method, args) -> CompletableFuture.completedFuture(new HashSet<>(users.keySet())),
+                "searchAll", (method, args) -> searchAll(args[0]),
+                "lookupUniqueId", (method, args) -> CompletableFuture.completedFuture(lookup((String) args[0]))
+        ));
+        this.groupManager = Stubs.proxy(GroupManager.class, Map.of(
+                "getGroup", (method, args) -> groups.containsKey((String) args[0]) ? groupProxy((String) args[0]) : null,
+                "getLoadedGroups", (method, args) -> loadedGroups()
+        ));
+        EventBus eventBus = Stubs.proxy(EventBus.class, Map.of(
+                "subscribe", (method, args) -> subscribe(method, args)
+        ));
+        this.api = Stubs.proxy(LuckPerms.class, Map.of(
+                "getUserManager", (method, args) -> userManager,
+                "getGroupManager", (method, args) -> groupManager,
+                "getEventBus", (method, args) -> eventBus,
+                "getNodeBuilderRegistry", (method, args) -> Stubs.proxy(method.getReturnType(), Map.of(
+                        "forInheritance", (builderMethod, builderArgs) -> inheritanceBuilder(builderMethod.getReturnType()))),
+                "getNodeMatcherFactory", (method, args) -> Stubs.proxy(method.getReturnType(), Map.of(
+                        "key", (keyMethod, keyArgs) -> keyMatcher(keyMethod.getReturnType(), (Node) keyArgs[0])))
+        ));
+    }
+
+    /**
+     * Make this instance what LuckPermsProvider.get() returns, the way LuckPerms registers itself
+     */
+    void register() throws ReflectiveOperationException {
+        Method register = LuckPermsProvider.class.getDeclaredMethod("register", LuckPerms.class);
+        register.setAccessible(true);
+        register.invoke(null, api);
+    }
+
+    void shutdown() {
+        eventExecutor.shutdownNow();
+        storageExecutor.shutdownNow();
+    }
+
+    void createGroup(String name, String... parents) {
+        StubGroup group = new StubGroup(name);
+        Collections.addAll(group.parents, parents);
+        groups.put(name, group);
+    }
+
+    /**
+     * Add a user to storage, loaded (as for an online player) or not
+     */
+    void createUser(UUID uuid, String username, List<String> directGroups, boolean load) {
+        users.put(uuid, new StubUser(uuid, username, directGroups));
+        if (load) {
+            loaded.add(uuid);
+        }
+    }
+
+    void unloadUser(UUID uuid) {
+        loaded.remove(uuid);
+    }
+
+    /**
+     * Effective groups as the plugin resolves them: direct groups, plus inherited ones if requested
+     */
+    List<String> effectiveGroups(UUID uuid, boolean includeInherited) {
+        StubUser user = users.get(uuid);
+        return includeInherited ? new ArrayList<>(inheritedGroupNames(user.directGroups)) : new ArrayList<>(user.directGroups);
+    }
+
+    String primaryGroup(UUID uuid) {
+        return users.get(uuid).primaryGroup();
+    }
+
+    /**
+     * Add a group to a user, as /lp user ... parent add does
+     */
+    void addUserGroup(UUID uuid, String group) {
+        StubUser user = users.get(uuid);
+        Set<Node> before = nodes(user.directGroups);
+        List<String> updated = new ArrayList<>(user.directGroups);
+        updated.add(group);
+        user.directGroups = List.copyOf(updated);
+
+        User target = userProxy(uuid);
+        post(NodeAddEvent.class, nodeEvent(NodeAddEvent.class, target, inheritanceNode(group), before, nodes(user.directGroups)));
+        if (loaded.contains(uuid)) {
+            post(UserDataRecalculateEvent.class, recalculateEvent(target));
+        }
+    }
+
+    /**
+     * Remove a group from a user, as /lp user ... parent remove does
+     */
+    void removeUserGroup(UUID uuid, String group) {
+        StubUser user = users.get(uuid);
+        Set<Node> before = nodes(user.directGroups);
+        List<String> updated = new ArrayList<>(user.directGroups);
+        updated.remove(group);
+        user.directGroups = List.copyOf(updated);
+
+        User target = userProxy(uuid);
+        post(NodeRemoveEvent.class, nodeEvent(NodeRemoveEvent.class, target, inheritanceNode(group), before, nodes(user.directGroups)));
+        if (loaded.contains(uuid)) {
+            post(UserDataRecalculateEvent.class, recalculateEvent(target));
+        }
+    }
+
+    /**
+     * Make a group inherit another one, as /lp group ... parent add does.
+     * LuckPerms then recalculates every loaded user.
+     */
+    void addGroupParent(String name, String parent) {
+        StubGroup group = groups.get(name);
+        Set<Node> before = nodes(group.parents);
+        group.parents.add(parent);
+
+        post(NodeAddEvent.class, nodeEvent(NodeAddEvent.class, groupProxy(name), inheritanceNode(parent), before, nodes(group.parents)));
+        for (UUID uuid : loaded) {
+            post(UserDataRecalculateEvent.class, recalculateEvent(userProxy(uuid)));
+        }
+    }
+
+    /**
+     * Wait until every posted event has been handled
+     */
+    void awaitEvents() throws InterruptedException {
+        CompletableFuture<Void> marker = CompletableFuture.runAsync(() -> { }, eventExecutor);
+        try {
+            marker.get(1, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            throw new IllegalStateException("LuckPerms event dispatch did not finish", e);
+        }
+    }
+
+    private <T extends LuckPermsEvent> void post(Class<T> type, T event) {
+        eventExecutor.execute(() -> {
+            for (Subscription subscription : subscriptions) {
+                if (subscription.type.isAssignableFrom(type)) {
+                    subscription.handler.accept(event);
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object subscribe(Method method, Object[] args) {
+        // subscribe(plugin, eventClass, handler)
+        subscriptions.add(new Subscription((Class<?>) args[1], (Consumer<Object>) args[2]));
+        return Stubs.emptyValue(method.getReturnType());
+    }
+
+    private <T extends NodeMutateEvent> T nodeEvent(Class<T> type, PermissionHolder target, Node node,
+                                                    Set<Node> before, Set<Node> after) {
+        return Stubs.proxy(type, Map.of(
+                "getTarget", (method, args) -> target,
+                "getNode", (method, args) -> node,
+                "getDataBefore", (method, args) -> before,
+                "getDataAfter", (method, args) -> after,
+                "isUser", (method, args) -> target instanceof User,
+                "isGroup", (method, args) -> target instanceof Group,
+                "getLuckPerms", (method, args) -> api
+        ));
+    }
+
+    private UserDataRecalculateEvent recalculateEvent(User user) {
+        return Stubs.proxy(UserDataRecalculateEvent.class, Map.of(
+                "getUser", (method, args) -> user,
+                "getLuckPerms", (method, args) -> api
+        ));
+    }
+
+    private CompletableFuture<User> loadUser(UUID uuid) {
+        if (!users.containsKey(uuid)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (storageLatencyMillis <= 0) {
+            return CompletableFuture.completedFuture(userProxy(uuid));
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Thread.sleep(storageLatencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return userProxy(uuid);
+        }, storageExecutor);
+    }
+
+    private Set<User> loadedUsers() {
+        Set<User> result = new HashSet<>();
+        for (UUID uuid : loaded) {
+            result.add(userProxy(uuid));
+        }
+        return result;
+    }
+
+    private Set<Group> loadedGroups() {
+        Set<Group> result = new HashSet<>();
+        for (String name : groups.keySet()) {
+            result.add(groupProxy(name));
+        }
+        return result;
+    }
+
+    private UUID lookup(String username) {
+        for (StubUser user : users.values()) {
+            if (user.username.equalsIgnoreCase(username)) {
+                return user.uuid;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Every user holding the node the matcher was built from, directly
+     */
+    private CompletableFuture<Map<UUID, Collection<Node>>> searchAll(Object matcher) {
+        Node wanted = matcherNodes.remove(matcher);
+        return CompletableFuture.supplyAsync(() -> {
+            Map<UUID, Collection<Node>> result = new HashMap<>();
+            if (wanted == null) {
+                return result;
+            }
+            for (StubUser user : users.values()) {
+                for (Node node : nodes(user.directGroups)) {
+                    if (node.getKey().equals(wanted.getKey())) {
+                        result.computeIfAbsent(user.uuid, key -> new ArrayList<>()).add(node);
+                    }
+                }
+            }
+            return result;
+        }, storageExecutor);
+    }
+
+    private Object keyMatcher(Class<?> type, Node node) {
+        Object matcher = Stubs.proxy(type, Map.of(
+                "test", (method, args) -> args[0] instanceof Node other && other.getKey().equals(node.getKey()),
+                "match", (method, args) -> args[0] instanceof Node other && other.getKey().equals(node.getKey()) ? other : null
+        ));
+        matcherNodes.put(matcher, node);
+        return matcher;
+    }
+
+    private Object inheritanceBuilder(Class<?> type) {
+        String[] group = {"default"};
+        return Stubs.proxy(type, Map.of(
+                "group", (method, args) -> {
+                    group[0] = args[0] instanceof Group value ? value.getName() : (String) args[0];
+                    return Stubs.SELF;
+                },
+                "build", (method, args) -> inheritanceNode(group[0])
+        ));
+    }
+
+    private User userProxy(UUID uuid) {
+        StubUser user = users.get(uuid);
+        return user == null ? null : user.proxy;
+    }
+
+    private Group groupProxy(String name) {
+        StubGroup group = groups.computeIfAbsent(name, StubGroup::new);
+        return group.proxy;
+    }
+
+    /**
+     * The groups, followed by every group they inherit from, without duplicates
+     */
+    private Set<String> inheritedGroupNames(Collection<String> direct) {
+        Set<String> result = new LinkedHashSet<>();
+        List<String> pending = new ArrayList<>(direct);
+        while (!pending.isEmpty()) {
+            String name = pending.remove(pending.size() - 1);
+            if (result.add(name)) {
+                StubGroup group = groups.get(name);
+                if (group != null) {
+                    pending.addAll(group.parents);
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<Group> groupProxies(Collection<String> names) {
+        List<Group> result = new ArrayList<>(names.size());
+        for (String name : names) {
+            result.add(groupProxy(name));
+        }
+        return result;
+    }
+
+    private static Set<Node> nodes(Collection<String> groupNames) {
+        Set<Node> result = new LinkedHashSet<>();
+        for (String name : groupNames) {
+            result.add(inheritanceNode(name));
+        }
+        return result;
+    }
+
+    private static InheritanceNode inheritanceNode(String groupName) {
+        return Stubs.proxy(InheritanceNode.class, Map.of(
+                "getGroupName", (method, args) -> groupName,
+                "getKey", (method, args) -> "group." + groupName,
+                "getValue", (method, args) -> Boolean.TRUE,
+                "hasExpiry", (method, args) -> Boolean.FALSE
+        ));
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private final class StubUser {
+        final UUID uuid;
+        final String username;
+        final User proxy;
+        volatile List<String> directGroups;
+
+        StubUser(UUID uuid, String username, List<String> directGroups) {
+            this.uuid = uuid;
+            this.username = username;
+            this.directGroups = List.copyOf(directGroups);
+            this.proxy = Stubs.proxy(User.class, Map.of(
+                    "getUniqueId", (method, args) -> uuid,
+                    "getUsername", (method, args) -> username,
+                    "getFriendlyName", (method, args) -> username,
+                    "getPrimaryGroup", (method, args) -> primaryGroup(),
+                    "getNodes", (method, args) -> nodes(this.directGroups),
+                    "getInheritedGroups", (method, args) -> groupProxies(inheritedGroupNames(this.directGroups))
+            ));
+        }
+
+        String primaryGroup() {
+            List<String> current = directGroups;
+            return current.isEmpty() ? "default" : current.get(current.size() - 1);
+        }
+    }
+
+    private final class StubGroup {
+        final String name;
+        final Set<String> parents = ConcurrentHashMap.newKeySet();
+        final Group proxy;
+
+        StubGroup(String name) {
+            this.name = name;
+            this.proxy = Stubs.proxy(Group.class, Map.of(
+                    "getName", (method, args) -> name,
+                    "getFriendlyName", (method, args) -> name,
+                    "getNodes", (method, args) -> nodes(parents),
+                    "getInheritedGroups", (method, args) -> {
+                        Set<String> inherited = inheritedGroupNames(parents);
+                        return groupProxies(inherited);
+                    }
+            ));
+        }
+    }
+
+    private static final class Subscription {
+        final Class<?> type;
+        final Consumer<Object> handler;
+
+        Subscription(Class<?> type, Consumer<Object> handler) {
+            this.type = type;
+            this.handler = handler;
+        }
+    }
+}
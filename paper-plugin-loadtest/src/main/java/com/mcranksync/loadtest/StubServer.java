@@ -0,0 +1,179 @@
+package com.mcranksync.loadtest;
+
+import org.bukkit.Server;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * The parts of a Bukkit server the plugin uses: online players, listener registration, the
+ * scheduler and the plugin's command. The "server thread" is a single thread the harness runs
+ * Bukkit events on, so time spent there can be measured like tick time.
+ */
+final class StubServer {
+
+    private static final long TICK_MILLIS = 50;
+
+    private final Logger logger = Logger.getLogger("LoadTestServer");
+    private final Map<UUID, Player> online = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, PluginCommand> commands = new ConcurrentHashMap<>();
+    private final AtomicInteger messages = new AtomicInteger();
+    private final AtomicInteger offThreadMessages = new AtomicInteger();
+    private final ScheduledExecutorService serverThread;
+    private final ScheduledExecutorService asyncScheduler;
+    private final Server server;
+    private volatile Plugin plugin;
+
+    StubServer() {
+        this.serverThread = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "Server thread"));
+        this.asyncScheduler = Executors.newScheduledThreadPool(2, runnable -> daemon(runnable, "Craft Scheduler"));
+
+        PluginManager pluginManager = Stubs.proxy(PluginManager.class, Map.of(
+                "registerEvents", (method, args) -> listeners.add((Listener) args[0]),
+                "disablePlugin", (method, args) -> {
+                    throw new IllegalStateException("The plugin disabled itself, see the log above");
+                }
+        ));
+        BukkitScheduler scheduler = Stubs.proxy(BukkitScheduler.class, Map.of(
+                "runTask", (method, args) -> task(serverThread.submit((Runnable) args[1])),
+                "runTaskAsynchronously", (method, args) -> task(asyncScheduler.submit((Runnable) args[1])),
+                "runTaskLater", (method, args) -> task(serverThread.schedule((Runnable) args[1],
+                        ticks(args[2]), TimeUnit.MILLISECONDS)),
+                "runTaskLaterAsynchronously", (method, args) -> task(asyncScheduler.schedule((Runnable) args[1],
+                        ticks(args[2]), TimeUnit.MILLISECONDS)),
+                "runTaskTimer", (method, args) -> task(serverThread.scheduleAtFixedRate((Runnable) args[1],
+                        ticks(args[2]), Math.max(TICK_MILLIS, ticks(args[3])), TimeUnit.MILLISECONDS)),
+                "runTaskTimerAsynchronously", (method, args) -> task(asyncScheduler.scheduleAtFixedRate((Runnable) args[1],
+                        ticks(args[2]), Math.max(TICK_MILLIS, ticks(args[3])), TimeUnit.MILLISECONDS))
+        ));
+        this.server = Stubs.proxy(Server.class, Map.of(
+                "getLogger", (method, args) -> logger,
+                "getName", (method, args) -> "LoadTest",
+                "getPluginManager", (method, args) -> pluginManager,
+                "getScheduler", (method, args) -> scheduler,
+                "getOnlinePlayers", (method, args) -> new ArrayList<>(online.values()),
+                "getPlayer", (method, args) -> args[0] instanceof UUID uuid ? online.get(uuid) : null,
+                "getPluginCommand", (method, args) -> command((String) args[0]),
+                "isPrimaryThread", (method, args) -> isServerThread()
+        ));
+    }
+
+    Server getServer() {
+        return server;
+    }
+
+    ScheduledExecutorService getServerThread() {
+        return serverThread;
+    }
+
+    List<Listener> getListeners() {
+        return listeners;
+    }
+
+    void setPlugin(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Messages sent to players so far
+     */
+    int getMessageCount() {
+        return messages.get();
+    }
+
+    /**
+     * Messages sent to players from a thread other than the server thread, which Bukkit does not allow
+     */
+    int getOffThreadMessageCount() {
+        return offThreadMessages.get();
+    }
+
+    /**
+     * Create an online player (only identity, chat and permissions are modelled)
+     */
+    Player addPlayer(UUID uuid, String name) {
+        Player player = Stubs.proxy(Player.class, Map.of(
+                "getUniqueId", (method, args) -> uuid,
+                "getName", (method, args) -> name,
+                "isOnline", (method, args) -> online.containsKey(uuid),
+                "hasPermission", (method, args) -> Boolean.TRUE,
+                "sendMessage", (method, args) -> {
+                    messages.incrementAndGet();
+                    if (!isServerThread()) {
+                        offThreadMessages.incrementAndGet();
+                    }
+                    return null;
+                }
+        ));
+        online.put(uuid, player);
+        return player;
+    }
+
+    void removePlayer(UUID uuid) {
+        online.remove(uuid);
+    }
+
+    void shutdown() {
+        serverThread.shutdownNow();
+        asyncScheduler.shutdownNow();
+    }
+
+    /**
+     * PluginCommand's constructor is not public; Bukkit creates commands from plugin.yml reflectively too
+     */
+    private PluginCommand command(String name) {
+        Plugin owner = plugin;
+        if (owner == null) {
+            return null;
+        }
+        return commands.computeIfAbsent(name.toLowerCase(), key -> {
+            try {
+                Constructor<PluginCommand> constructor = PluginCommand.class.getDeclaredConstructor(String.class, Plugin.class);
+                constructor.setAccessible(true);
+                return constructor.newInstance(key, owner);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create the plugin command " + key, e);
+            }
+        });
+    }
+
+    private static boolean isServerThread() {
+        return Thread.currentThread().getName().equals("Server thread");
+    }
+
+    private static long ticks(Object ticks) {
+        return ((Number) ticks).longValue() * TICK_MILLIS;
+    }
+
+    private static BukkitTask task(Future<?> future) {
+        return Stubs.proxy(BukkitTask.class, Map.of(
+                "cancel", (method, args) -> future.cancel(false),
+                "isCancelled", (method, args) -> future.isCancelled()
+        ));
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
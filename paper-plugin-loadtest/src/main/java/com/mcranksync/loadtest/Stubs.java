@@ -0,0 +1,101 @@
+package com.mcranksync.loadtest;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Dynamic proxies for the Bukkit and LuckPerms interfaces the plugin talks to.
+ * Methods without an answer return an empty value (zero, false, empty collection, a completed
+ * future or another stub), or the proxy itself for builder-style methods, so the plugin keeps
+ * running when it touches parts of the API the harness does not model.
+ */
+final class Stubs {
+
+    private Stubs() {
+    }
+
+    /**
+     * Returned by an answer to make the call return the proxy itself, for fluent builders
+     */
+    static final Object SELF = new Object();
+
+    @FunctionalInterface
+    interface Answer {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+
+    static <T> T proxy(Class<T> type, Map<String, Answer> answers) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            Answer answer = answers.get(method.getName());
+            if (answer != null) {
+                Object result = answer.invoke(method, args == null ? new Object[0] : args);
+                return result == SELF ? proxy : result;
+            }
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "Stub" + type.getSimpleName();
+                default:
+                    if (method.isDefault()) {
+                        return InvocationHandler.invokeDefault(proxy, method, args);
+                    }
+                    if (method.getReturnType() != Object.class && method.getReturnType().isInstance(proxy)) {
+                        return proxy;
+                    }
+                    return emptyValue(method.getReturnType());
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    static Object emptyValue(Class<?> type) {
+        if (type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type.isPrimitive()) {
+            return switch (type.getName()) {
+                case "long" -> 0L;
+                case "double" -> 0.0;
+                case "float" -> 0.0f;
+                case "short" -> (short) 0;
+                case "byte" -> (byte) 0;
+                default -> 0;
+            };
+        }
+        if (type == String.class) {
+            return "";
+        }
+        if (type == List.class || type == Collection.class) {
+            return Collections.emptyList();
+        }
+        if (type == Set.class) {
+            return Collections.emptySet();
+        }
+        if (type == Map.class) {
+            return Collections.emptyMap();
+        }
+        if (type == CompletableFuture.class) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (type.isInterface()) {
+            return proxy(type, Map.of());
+        }
+        return null;
+    }
+}
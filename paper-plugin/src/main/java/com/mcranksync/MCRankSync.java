@@ -2,12 +2,35 @@ package com.mcranksync;
 
 import com.mcranksync.api.ApiClient;
 import com.mcranksync.commands.MCRankSyncCommand;
+import com.mcranksync.config.Settings;
 import com.mcranksync.listeners.LuckPermsListener;
 import com.mcranksync.listeners.PlayerJoinListener;
+import com.mcranksync.metrics.MetricsHttpServer;
+import com.mcranksync.metrics.MetricsRegistry;
+import com.mcranksync.sync.DriftAuditor;
+import com.mcranksync.sync.GroupChangeDetector;
+import com.mcranksync.sync.GroupSetRegistry;
+import com.mcranksync.sync.LinkCache;
+import com.mcranksync.sync.MainThreadExecutor;
+import com.mcranksync.sync.RankUpdateOutbox;
+import com.mcranksync.sync.ResyncManager;
+import com.mcranksync.sync.RetryQueue;
+import com.mcranksync.sync.SyncStateCache;
+import com.mcranksync.sync.SyncDispatcher;
+import com.mcranksync.sync.UpdateVersioner;
 import net.luckperms.api.LuckPerms;
 import net.luckperms.api.LuckPermsProvider;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 /**
@@ -18,7 +41,32 @@ public class MCRankSync extends JavaPlugin {
 
     private static MCRankSync instance;
     private LuckPerms luckPerms;
+    private volatile Settings settings;
+    private MetricsRegistry metrics;
+    private MetricsHttpServer metricsServer;
     private ApiClient apiClient;
+    private SyncDispatcher syncDispatcher;
+    private RankUpdateOutbox rankUpdateOutbox;
+    private RetryQueue retryQueue;
+    private SyncStateCache syncStateCache;
+    private LinkCache linkCache;
+    private GroupSetRegistry groupSets;
+    private MainThreadExecutor mainThread;
+    private ResyncManager resyncManager;
+    private GroupChangeDetector groupChangeDetector;
+    private DriftAuditor driftAuditor;
+    private UpdateVersioner updateVersioner;
+
+    public MCRankSync() {
+    }
+
+    /**
+     * Bukkit's initialization constructor for running the plugin outside a server, used by the load test harness
+     */
+    @SuppressWarnings("removal")
+    protected MCRankSync(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
 
     @Override
     public void onEnable() {
@@ -26,6 +74,7 @@ public class MCRankSync extends JavaPlugin {
 
         // Save default config
         saveDefaultConfig();
+        settings = Settings.load(getConfig());
 
         // Initialize LuckPerms
         if (!initLuckPerms()) {
@@ -34,8 +83,32 @@ public class MCRankSync extends JavaPlugin {
             return;
         }
 
+        metrics = new MetricsRegistry();
+        updateVersioner = new UpdateVersioner(resolveServerId());
+        mainThread = new MainThreadExecutor(this);
+
         // Initialize API client
         apiClient = new ApiClient(this);
+        syncDispatcher = new SyncDispatcher(this);
+        rankUpdateOutbox = new RankUpdateOutbox(this);
+        retryQueue = new RetryQueue(this);
+        retryQueue.start();
+        syncStateCache = new SyncStateCache(this);
+        syncStateCache.load();
+        linkCache = new LinkCache(
+                getConfig().getInt("link-cache.max-size", 10000),
+                getConfig().getLong("link-cache.ttl", 300) * 1000L
+        );
+        groupSets = new GroupSetRegistry(getConfig().getInt("sync.group-set-cache-size", 256));
+        getServer().getScheduler().runTaskTimerAsynchronously(this, syncStateCache::saveAsync, 6000L, 6000L);
+        resyncManager = new ResyncManager(this);
+        if (resyncManager.hasCheckpoint()) {
+            getLogger().info("An interrupted resync can be continued with /mcranksync resync resume");
+        }
+        groupChangeDetector = new GroupChangeDetector(this);
+        driftAuditor = new DriftAuditor(this);
+        registerMetrics();
+        startMetricsServer();
 
         // Register listeners
         getServer().getPluginManager().registerEvents(new PlayerJoinListener(this), this);
@@ -54,9 +127,147 @@ public class MCRankSync extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        if (metricsServer != null) {
+            metricsServer.stop();
+            metricsServer = null;
+        }
+        if (driftAuditor != null) {
+            driftAuditor.shutdown();
+        }
+        if (resyncManager != null) {
+            resyncManager.shutdown();
+        }
+        if (groupChangeDetector != null) {
+            groupChangeDetector.shutdown();
+        }
+        if (rankUpdateOutbox != null) {
+            rankUpdateOutbox.shutdown();
+        }
+        if (syncDispatcher != null) {
+            syncDispatcher.shutdown();
+        }
+        if (apiClient != null) {
+            apiClient.shutdown();
+        }
+        if (retryQueue != null) {
+            retryQueue.shutdown();
+        }
+        if (mainThread != null) {
+            mainThread.shutdown();
+        }
+        if (syncStateCache != null) {
+            syncStateCache.shutdown();
+            logDebug(() -> "Join sync cache: " + syncStateCache.getHitCount() + " skipped, "
+                    + syncStateCache.getMissCount() + " sent.");
+        }
+
         getLogger().info("MCRankSync has been disabled!");
     }
 
+    private void registerMetrics() {
+        metrics.gauge("mcranksync_outbox_pending", "Rank updates waiting for the coalesce window",
+                rankUpdateOutbox::getPendingCount);
+        metrics.counter("mcranksync_outbox_submitted_total", "Rank updates submitted to the outbox",
+                rankUpdateOutbox::getSubmittedCount);
+        metrics.counter("mcranksync_outbox_coalesced_total", "Rank updates replaced by a newer update in the outbox",
+                rankUpdateOutbox::getCoalescedCount);
+        metrics.counter("mcranksync_outbox_flushed_total", "Rank updates sent on by the outbox",
+                rankUpdateOutbox::getFlushedCount);
+        metrics.gauge("mcranksync_change_detector_dirty", "Users waiting to have their groups compared",
+                groupChangeDetector::getDirtyCount);
+        metrics.gauge("mcranksync_sequencer_players", "Players with an update in flight or waiting behind one",
+                syncDispatcher::getSequencedCount);
+        metrics.counter("mcranksync_sequencer_waits_total", "Updates held back until an earlier update for the player was answered",
+                syncDispatcher::getSequencerWaitCount);
+        metrics.gauge("mcranksync_batch_buffered", "Updates waiting for the next batch request",
+                syncDispatcher::getBufferedCount);
+        metrics.gauge("mcranksync_retry_queue_depth", "Updates waiting in the retry queue",
+                retryQueue::getDepth);
+        metrics.gauge("mcranksync_retry_queue_oldest_age_ms", "Age of the oldest update in the retry queue",
+                retryQueue::getOldestAgeMillis);
+        metrics.counter("mcranksync_sync_cache_hits_total", "Join syncs skipped because nothing changed",
+                syncStateCache::getHitCount);
+        metrics.counter("mcranksync_sync_cache_misses_total", "Join syncs sent to the bot",
+                syncStateCache::getMissCount);
+        metrics.gauge("mcranksync_sync_cache_size", "Players in the sync state cache",
+                syncStateCache::getSize);
+        metrics.counter("mcranksync_link_cache_hits_total", "Link status lookups answered from the cache",
+                linkCache::getHitCount);
+        metrics.counter("mcranksync_link_cache_misses_total", "Link status lookups not in the cache",
+                linkCache::getMissCount);
+        metrics.gauge("mcranksync_link_cache_size", "Players in the link status cache",
+                linkCache::getSize);
+        metrics.gauge("mcranksync_group_sets", "Distinct group combinations with a cached encoding",
+                groupSets::getSize);
+        metrics.counter("mcranksync_group_set_hits_total", "Group combinations found already encoded",
+                groupSets::getHitCount);
+        metrics.counter("mcranksync_group_set_misses_total", "Group combinations encoded on first use",
+                groupSets::getMissCount);
+        metrics.counter("mcranksync_group_set_evictions_total", "Group combinations evicted from the cache",
+                groupSets::getEvictionCount);
+        metrics.gauge("mcranksync_main_thread_queued", "Tasks waiting to run on the server thread",
+                mainThread::getQueuedCount);
+        metrics.counter("mcranksync_main_thread_tasks_total", "Tasks run on the server thread",
+                mainThread::getExecutedCount);
+        metrics.counter("mcranksync_main_thread_deferred_ticks_total", "Ticks that left queued tasks for the next tick",
+                mainThread::getDeferredTickCount);
+        metrics.counter("mcranksync_main_thread_drain_ms_total", "Time spent running queued tasks on the server thread",
+                () -> mainThread.getDrainNanos() / 1_000_000);
+        metrics.counter("mcranksync_audit_passes_total", "Completed drift audit passes",
+                driftAuditor::getPassCount);
+        metrics.counter("mcranksync_audit_players_checked_total", "Players compared with the bot's sync state by the drift audit",
+                driftAuditor::getPlayersCheckedCount);
+        metrics.counter("mcranksync_audit_players_drifted_total", "Players found out of sync with the bot by the drift audit",
+                driftAuditor::getPlayersDriftedCount);
+        metrics.counter("mcranksync_audit_players_resynced_total", "Drifted players resynced by the drift audit",
+                driftAuditor::getPlayersResyncedCount);
+        metrics.gauge("mcranksync_audit_last_pass_drifted", "Players out of sync in the last drift audit pass (-1 before the first)",
+                driftAuditor::getLastPassDriftedCount);
+    }
+
+    private void startMetricsServer() {
+        if (!getConfig().getBoolean("metrics.http.enabled", false)) {
+            return;
+        }
+
+        String bind = getConfig().getString("metrics.http.bind", "127.0.0.1");
+        int port = getConfig().getInt("metrics.http.port", 9465);
+        try {
+            metricsServer = new MetricsHttpServer(metrics, bind, port);
+            metricsServer.start();
+            getLogger().info("Serving metrics on http://" + bind + ":" + port + "/metrics");
+        } catch (IOException e) {
+            logError("Failed to start the metrics endpoint on " + bind + ":" + port, e);
+        }
+    }
+
+    /**
+     * network.server-id from the config, or an ID generated on first start and kept in the data folder
+     */
+    private String resolveServerId() {
+        String configured = getConfig().getString("network.server-id", "");
+        if (configured != null && !configured.isBlank()) {
+            return configured.trim();
+        }
+
+        Path file = getDataFolder().toPath().resolve("server-id");
+        try {
+            if (Files.exists(file)) {
+                String stored = Files.readString(file, StandardCharsets.UTF_8).trim();
+                if (!stored.isEmpty()) {
+                    return stored;
+                }
+            }
+            String generated = UUID.randomUUID().toString().substring(0, 8);
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, generated, StandardCharsets.UTF_8);
+            return generated;
+        } catch (IOException e) {
+            logError("Failed to store the generated server ID, it will change on restart", e);
+            return UUID.randomUUID().toString().substring(0, 8);
+        }
+    }
+
     private boolean initLuckPerms() {
         try {
             luckPerms = LuckPermsProvider.get();
@@ -70,28 +281,105 @@ public class MCRankSync extends JavaPlugin {
         return instance;
     }
 
+    /**
+     * Current settings snapshot. Callers should read it once per operation so they see
+     * one consistent configuration even if a reload happens concurrently.
+     */
+    public Settings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Re-read config.yml and atomically replace the settings snapshot
+     */
+    public void reloadSettings() {
+        reloadConfig();
+        settings = Settings.load(getConfig());
+        if (apiClient != null) {
+            apiClient.reload();
+        }
+    }
+
     public LuckPerms getLuckPerms() {
         return luckPerms;
     }
 
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
     public ApiClient getApiClient() {
         return apiClient;
     }
 
+    public SyncDispatcher getSyncDispatcher() {
+        return syncDispatcher;
+    }
+
+    public RankUpdateOutbox getRankUpdateOutbox() {
+        return rankUpdateOutbox;
+    }
+
+    public RetryQueue getRetryQueue() {
+        return retryQueue;
+    }
+
+    public SyncStateCache getSyncStateCache() {
+        return syncStateCache;
+    }
+
+    public LinkCache getLinkCache() {
+        return linkCache;
+    }
+
+    public GroupSetRegistry getGroupSets() {
+        return groupSets;
+    }
+
+    /**
+     * Executor for continuations that touch players or other Bukkit objects
+     */
+    public MainThreadExecutor getMainThread() {
+        return mainThread;
+    }
+
+    public ResyncManager getResyncManager() {
+        return resyncManager;
+    }
+
+    public GroupChangeDetector getGroupChangeDetector() {
+        return groupChangeDetector;
+    }
+
+    public DriftAuditor getDriftAuditor() {
+        return driftAuditor;
+    }
+
+    public UpdateVersioner getUpdateVersioner() {
+        return updateVersioner;
+    }
+
     public void logDebug(String message) {
-        if (getConfig().getBoolean("logging.debug", false)) {
+        if (settings.isDebug()) {
             getLogger().info("[DEBUG] " + message);
         }
     }
 
+    /**
+     * Log a debug message that is only built when debug logging is enabled
+     */
+    public void logDebug(Supplier<String> message) {
+        if (settings.isDebug()) {
+            getLogger().info("[DEBUG] " + message.get());
+        }
+    }
+
     public void logError(String message, Throwable e) {
         getLogger().log(Level.SEVERE, message, e);
     }
 
     public String formatMessage(String key) {
-        String prefix = getConfig().getString("messages.prefix", "&8[&bMCRankSync&8] &r");
-        String message = getConfig().getString("messages." + key, "");
-        return colorize(prefix + message);
+        return settings.getMessage(key);
     }
 
     public static String colorize(String message) {
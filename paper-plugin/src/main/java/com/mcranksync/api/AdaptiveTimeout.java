@@ -0,0 +1,109 @@
+package com.mcranksync.api;
+
+import java.util.Arrays;
+
+/**
+ * Request timeout derived from observed bot latency.
+ * The timeout is the p99 of recent calls times a multiplier, clamped to [min, max].
+ * Until enough samples have been seen the configured maximum is used. Calls that time
+ * out are recorded at the timeout they were given and double the timeout right away,
+ * so the estimate can grow again when the bot gets slower than what it has learned.
+ */
+public class AdaptiveTimeout {
+
+    private static final int SAMPLE_COUNT = 512;
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final long minMillis;
+    private final long maxMillis;
+    private final double multiplier;
+
+    // Ring buffer of recent latencies, guarded by this
+    private final long[] samples = new long[SAMPLE_COUNT];
+    private int position;
+    private int recorded;
+    private int sinceRecompute;
+
+    private volatile long currentMillis;
+    private volatile long p50Millis;
+    private volatile long p99Millis;
+
+    public AdaptiveTimeout(long minMillis, long maxMillis, double multiplier) {
+        this.minMillis = Math.max(1, Math.min(minMillis, maxMillis));
+        this.maxMillis = maxMillis;
+        this.multiplier = multiplier;
+        this.currentMillis = maxMillis;
+    }
+
+    /**
+     * Record the latency of a call that completed normally
+     */
+    public void record(long latencyMillis) {
+        long[] snapshot = addSample(latencyMillis);
+        if (snapshot != null) {
+            recompute(snapshot);
+        }
+    }
+
+    /**
+     * Record a call that timed out, or failed only after waiting its full timeout
+     *
+     * @param timeoutMillis the timeout the call was given
+     */
+    public void recordTimeout(long timeoutMillis) {
+        long[] snapshot = addSample(timeoutMillis);
+        if (snapshot != null) {
+            recompute(snapshot);
+        }
+
+        // Back off without waiting for the next recompute, which only grows the timeout
+        // once enough of the window has timed out to move the p99
+        long current = currentMillis;
+        long backedOff = Math.max(minMillis, Math.min(maxMillis, Math.max(current, timeoutMillis) * 2));
+        if (backedOff > current) {
+            currentMillis = backedOff;
+        }
+    }
+
+    private long[] addSample(long latencyMillis) {
+        long[] snapshot = null;
+
+        synchronized (this) {
+            samples[position] = latencyMillis;
+            position = (position + 1) % SAMPLE_COUNT;
+            if (recorded < SAMPLE_COUNT) {
+                recorded++;
+            }
+            if (recorded >= MIN_SAMPLES && ++sinceRecompute >= RECOMPUTE_EVERY) {
+                sinceRecompute = 0;
+                snapshot = Arrays.copyOf(samples, recorded);
+            }
+        }
+        return snapshot;
+    }
+
+    private void recompute(long[] snapshot) {
+        int count = snapshot.length;
+        Arrays.sort(snapshot);
+        p50Millis = snapshot[(count - 1) / 2];
+        p99Millis = snapshot[(int) Math.ceil(count * 0.99) - 1];
+        long timeout = (long) (p99Millis * multiplier);
+        currentMillis = Math.max(minMillis, Math.min(maxMillis, timeout));
+    }
+
+    /**
+     * Timeout to use for the next request
+     */
+    public long getTimeoutMillis() {
+        return currentMillis;
+    }
+
+    public long getP50Millis() {
+        return p50Millis;
+    }
+
+    public long getP99Millis() {
+        return p99Millis;
+    }
+}
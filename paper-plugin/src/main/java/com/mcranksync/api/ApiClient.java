@@ -3,15 +3,22 @@ package com.mcranksync.api;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.mcranksync.MCRankSync;
+import com.mcranksync.config.Settings;
+import com.mcranksync.metrics.MetricsRegistry;
+import com.mcranksync.models.RankUpdateCodec;
+import com.mcranksync.models.RankUpdateJson;
 import com.mcranksync.models.RankUpdatePayload;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URI;
-import java.net.URL;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * HTTP client for communicating with the Discord bot REST API
@@ -20,19 +27,253 @@ public class ApiClient {
 
     private final MCRankSync plugin;
     private final Gson gson;
+    private final ApiExecutor executor;
+    private final Map<String, EndpointMetrics> endpointMetrics = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile CircuitBreaker circuitBreaker;
+    // One estimator per endpoint label, or null if adaptive timeouts are disabled
+    private volatile Map<String, AdaptiveTimeout> adaptiveTimeouts;
+    private volatile HttpTransport transport;
+    private volatile EventStream eventStream;
+    private volatile boolean binaryBatchesUnsupported;
 
     public ApiClient(MCRankSync plugin) {
         this.plugin = plugin;
         this.gson = new GsonBuilder().create();
+        this.executor = createExecutor();
+        this.circuitBreaker = createCircuitBreaker();
+        this.adaptiveTimeouts = createAdaptiveTimeouts();
+        this.transport = createTransport();
+        this.eventStream = createEventStream();
+        registerMetrics();
+        registerResilienceMetrics();
+    }
+
+    /**
+     * Rebuild the transport, circuit breaker and adaptive timeout from the current configuration.
+     * Requests already in flight finish on the previous connection pool, and the breaker starts
+     * closed again since its failure history belongs to the previous endpoint settings.
+     */
+    public void reload() {
+        this.circuitBreaker = createCircuitBreaker();
+        this.adaptiveTimeouts = createAdaptiveTimeouts();
+        registerResilienceMetrics();
+        this.transport = createTransport();
+        this.binaryBatchesUnsupported = false;
+
+        EventStream previous = eventStream;
+        this.eventStream = createEventStream();
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Close the event stream and stop the request executor, waiting for in-flight requests to complete
+     */
+    public void shutdown() {
+        EventStream stream = eventStream;
+        if (stream != null) {
+            stream.close();
+        }
+        executor.shutdown(plugin.getConfig().getLong("api.executor.shutdown-timeout", 5000));
+    }
+
+    public ApiExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Circuit breaker guarding the bot endpoint, or null if disabled
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Latency-based request timeouts by endpoint, or an empty map if disabled.
+     * The batch endpoint's estimator tracks the latency per update in a batch.
+     */
+    public Map<String, AdaptiveTimeout> getAdaptiveTimeouts() {
+        Map<String, AdaptiveTimeout> timeouts = adaptiveTimeouts;
+        return timeouts != null ? Collections.unmodifiableMap(timeouts) : Collections.emptyMap();
+    }
+
+    /**
+     * WebSocket event stream to the bot, or null if disabled
+     */
+    public EventStream getEventStream() {
+        return eventStream;
+    }
+
+    /**
+     * Whether the circuit breaker currently lets requests through
+     */
+    public boolean isAvailable() {
+        CircuitBreaker breaker = circuitBreaker;
+        return breaker == null || breaker.getState() != CircuitBreaker.State.OPEN;
+    }
+
+    private void registerMetrics() {
+        MetricsRegistry metrics = plugin.getMetrics();
+        metrics.gauge("mcranksync_api_in_flight_requests", "Requests currently waiting for the Discord bot",
+                inFlight::get);
+        metrics.gauge("mcranksync_api_executor_queue_depth", "Requests queued in the API executor",
+                executor::getQueueDepth);
+        metrics.gauge("mcranksync_api_executor_active", "API executor threads currently running a request",
+                executor::getActiveCount);
+        metrics.counter("mcranksync_api_executor_rejected_total", "Requests rejected or dropped by the API executor",
+                executor::getRejectedCount);
+        for (Lane lane : Lane.values()) {
+            metrics.gauge("mcranksync_api_lane_queued", "Requests queued in an API executor lane",
+                    () -> executor.getQueueDepth(lane), "lane", lane.getKey());
+            metrics.gauge("mcranksync_api_lane_active", "Requests of an API executor lane currently being sent",
+                    () -> executor.getActiveCount(lane), "lane", lane.getKey());
+        }
+        metrics.gauge("mcranksync_stream_connected", "Whether events are sent over the event stream (1) or REST (0)",
+                () -> {
+                    EventStream stream = eventStream;
+                    return stream != null && stream.isConnected() ? 1 : 0;
+                });
+        metrics.gauge("mcranksync_stream_unacked", "Events sent over the event stream and not yet acknowledged",
+                () -> {
+                    EventStream stream = eventStream;
+                    return stream != null ? stream.getUnackedCount() : 0;
+                });
+        metrics.counter("mcranksync_stream_fallbacks_total", "Events sent over REST because the event stream was down, full or timed out",
+                () -> {
+                    EventStream stream = eventStream;
+                    return stream != null ? stream.getFallbackCount() : 0;
+                });
+    }
+
+    /**
+     * Register the gauge of the circuit breaker once it is enabled. The gauge reads the
+     * current instance, so it follows the replacements made by reload. The adaptive timeout
+     * gauges are registered per endpoint as their estimators are created.
+     */
+    private void registerResilienceMetrics() {
+        MetricsRegistry metrics = plugin.getMetrics();
+        if (circuitBreaker != null) {
+            metrics.gauge("mcranksync_api_circuit_breaker_state", "Circuit breaker state (0 closed, 1 open, 2 half-open)",
+                    () -> {
+                        CircuitBreaker breaker = circuitBreaker;
+                        return breaker != null ? breaker.getState().ordinal() : 0;
+                    });
+        }
+    }
+
+    /**
+     * Estimator for an endpoint, created on its first call
+     */
+    private AdaptiveTimeout adaptiveTimeout(Map<String, AdaptiveTimeout> timeouts, String endpoint) {
+        AdaptiveTimeout existing = timeouts.get(endpoint);
+        if (existing != null) {
+            return existing;
+        }
+        AdaptiveTimeout created = timeouts.computeIfAbsent(endpoint, key -> createAdaptiveTimeout());
+        plugin.getMetrics().gauge("mcranksync_api_timeout_ms",
+                "Current adaptive request timeout in milliseconds (per update for batches)",
+                () -> {
+                    Map<String, AdaptiveTimeout> current = adaptiveTimeouts;
+                    AdaptiveTimeout timeout = current != null ? current.get(endpoint) : null;
+                    return timeout != null ? timeout.getTimeoutMillis() : plugin.getSettings().getApiTimeoutMillis();
+                }, "endpoint", endpoint);
+        return created;
+    }
+
+    private ApiExecutor createExecutor() {
+        Map<Lane, Integer> laneLimits = new EnumMap<>(Lane.class);
+        for (Lane lane : Lane.values()) {
+            laneLimits.put(lane, plugin.getConfig().getInt("api.executor.lanes." + lane.getKey() + ".max-concurrency", 0));
+        }
+        return new ApiExecutor(
+                ApiExecutor.Mode.parse(plugin.getConfig().getString("api.executor.mode", "bounded")),
+                plugin.getConfig().getInt("api.executor.threads", 4),
+                plugin.getConfig().getInt("api.executor.queue-size", 256),
+                ApiExecutor.RejectionPolicy.parse(plugin.getConfig().getString("api.executor.rejection-policy", "drop-oldest")),
+                laneLimits,
+                plugin.getMetrics(),
+                plugin.getLogger()
+        );
+    }
+
+    private CircuitBreaker createCircuitBreaker() {
+        if (!plugin.getConfig().getBoolean("api.circuit-breaker.enabled", true)) {
+            return null;
+        }
+        return new CircuitBreaker(
+                plugin.getConfig().getInt("api.circuit-breaker.window-size", 20),
+                plugin.getConfig().getInt("api.circuit-breaker.minimum-calls", 10),
+                plugin.getConfig().getInt("api.circuit-breaker.failure-rate-threshold", 50),
+                plugin.getConfig().getInt("api.circuit-breaker.slow-call-rate-threshold", 80),
+                plugin.getConfig().getLong("api.circuit-breaker.slow-call-duration", 2000),
+                plugin.getConfig().getLong("api.circuit-breaker.open-duration", 30000),
+                plugin.getConfig().getInt("api.circuit-breaker.half-open-calls", 3)
+        );
+    }
+
+    private Map<String, AdaptiveTimeout> createAdaptiveTimeouts() {
+        if (!plugin.getConfig().getBoolean("api.adaptive-timeout.enabled", true)) {
+            return null;
+        }
+        return new ConcurrentHashMap<>();
+    }
+
+    private AdaptiveTimeout createAdaptiveTimeout() {
+        return new AdaptiveTimeout(
+                plugin.getConfig().getLong("api.adaptive-timeout.min", 500),
+                plugin.getSettings().getApiTimeoutMillis(),
+                plugin.getConfig().getDouble("api.adaptive-timeout.multiplier", 3.0)
+        );
+    }
+
+    private HttpTransport createTransport() {
+        Settings settings = plugin.getSettings();
+        return new HttpTransport(
+                settings.getApiEndpoint(),
+                settings.getApiToken(),
+                settings.getApiTimeoutMillis(),
+                settings.getApiMaxConnections(),
+                settings.isApiHttp2()
+        );
+    }
+
+    private EventStream createEventStream() {
+        if (!plugin.getConfig().getBoolean("api.stream.enabled", false)) {
+            return null;
+        }
+        Settings settings = plugin.getSettings();
+        EventStream stream = new EventStream(
+                settings.getApiEndpoint(),
+                settings.getApiToken(),
+                plugin.getConfig().getInt("api.stream.max-in-flight", 256),
+                plugin.getConfig().getLong("api.stream.ack-timeout", 10000),
+                plugin.getConfig().getLong("api.stream.max-reconnect-delay", 30000),
+                this::sendOverRest,
+                plugin.getLogger()
+        );
+        stream.start();
+        return stream;
+    }
+
+    /**
+     * Send a single rank update or player join event over REST, the event stream's fallback
+     */
+    private CompletableFuture<ApiResponse> sendOverRest(RankUpdatePayload payload) {
+        if ("PLAYER_JOIN".equals(payload.getEventType())) {
+            return sendPlayerJoin(payload);
+        }
+        return sendRankUpdate(payload);
     }
 
     /**
      * Send a rank update event to the Discord bot
      */
     public CompletableFuture<ApiResponse> sendRankUpdate(RankUpdatePayload payload) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.submit(Lane.of(payload), () -> {
             try {
-                return postJson("/api/rank-update", gson.toJson(payload));
+                return postBytes("/api/rank-update", RankUpdateJson.encode(payload), RankUpdateJson.CONTENT_TYPE);
             } catch (Exception e) {
                 plugin.logError("Failed to send rank update", e);
                 return new ApiResponse(false, "Error: " + e.getMessage());
@@ -44,9 +285,9 @@ public class ApiClient {
      * Send a player join event to the Discord bot
      */
     public CompletableFuture<ApiResponse> sendPlayerJoin(RankUpdatePayload payload) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.submit(Lane.JOIN, () -> {
             try {
-                return postJson("/api/player-join", gson.toJson(payload));
+                return postBytes("/api/player-join", RankUpdateJson.encode(payload), RankUpdateJson.CONTENT_TYPE);
             } catch (Exception e) {
                 plugin.logError("Failed to send player join event", e);
                 return new ApiResponse(false, "Error: " + e.getMessage());
@@ -54,11 +295,25 @@ public class ApiClient {
         });
     }
 
+    /**
+     * Send several rank update and player join events to the Discord bot in one request
+     */
+    public CompletableFuture<ApiResponse> sendRankUpdateBatch(List<RankUpdatePayload> payloads) {
+        return executor.submit(Lane.of(payloads), () -> {
+            try {
+                return postBatch(payloads);
+            } catch (Exception e) {
+                plugin.logError("Failed to send rank update batch", e);
+                return new ApiResponse(false, "Error: " + e.getMessage());
+            }
+        });
+    }
+
     /**
      * Link a player's Minecraft account to Discord
      */
     public CompletableFuture<ApiResponse> linkAccount(String uuid, String playerName, String linkCode) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.submit(Lane.INTERACTIVE, () -> {
             try {
                 String json = gson.toJson(new LinkRequest(uuid, playerName, linkCode));
                 return postJson("/api/link", json);
@@ -73,7 +328,7 @@ public class ApiClient {
      * Unlink a player's Minecraft account from Discord
      */
     public CompletableFuture<ApiResponse> unlinkAccount(String uuid) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.submit(Lane.INTERACTIVE, () -> {
             try {
                 String json = gson.toJson(new UnlinkRequest(uuid));
                 return postJson("/api/unlink", json);
@@ -85,12 +340,19 @@ public class ApiClient {
     }
 
     /**
-     * Check if a player is linked
+     * Check if a player is linked, for a player waiting on the answer
      */
     public CompletableFuture<ApiResponse> checkLinked(String uuid) {
-        return CompletableFuture.supplyAsync(() -> {
+        return checkLinked(uuid, Lane.INTERACTIVE);
+    }
+
+    /**
+     * Check if a player is linked, queued in the given lane
+     */
+    public CompletableFuture<ApiResponse> checkLinked(String uuid, Lane lane) {
+        return executor.submit(lane, () -> {
             try {
-                return getJson("/api/linked/" + uuid);
+                return getJson("/api/linked", "/api/linked/" + uuid);
             } catch (Exception e) {
                 plugin.logError("Failed to check link status", e);
                 return new ApiResponse(false, "Error: " + e.getMessage());
@@ -98,97 +360,184 @@ public class ApiClient {
         });
     }
 
+    /**
+     * Fetch the bot's sync state digest, one hash per UUID range
+     */
+    public CompletableFuture<ApiResponse> getSyncDigest(int buckets) {
+        return executor.submit(Lane.RECONCILIATION, () -> {
+            try {
+                return getJson("/api/sync-state/digest", "/api/sync-state/digest?buckets=" + buckets);
+            } catch (Exception e) {
+                plugin.logError("Failed to fetch the sync state digest", e);
+                return new ApiResponse(false, "Error: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Fetch the per-player hashes of one range of the sync state digest
+     */
+    public CompletableFuture<ApiResponse> getSyncDigestRange(int bucket, int buckets) {
+        return executor.submit(Lane.RECONCILIATION, () -> {
+            try {
+                return getJson("/api/sync-state/digest/:bucket",
+                        "/api/sync-state/digest/" + bucket + "?buckets=" + buckets);
+            } catch (Exception e) {
+                plugin.logError("Failed to fetch a sync state digest range", e);
+                return new ApiResponse(false, "Error: " + e.getMessage());
+            }
+        });
+    }
+
     private ApiResponse postJson(String path, String json) throws IOException {
-        String endpoint = plugin.getConfig().getString("api.endpoint", "http://localhost:3000");
-        String token = plugin.getConfig().getString("api.token", "");
-        int timeout = plugin.getConfig().getInt("api.timeout", 5000);
+        boolean logApiCalls = plugin.getSettings().isLogApiCalls();
 
-        URL url = URI.create(endpoint + path).toURL();
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        if (logApiCalls) {
+            plugin.logDebug(() -> "POST " + path + " -> " + json);
+        }
 
-        try {
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setRequestProperty("Authorization", "Bearer " + token);
-            conn.setConnectTimeout(timeout);
-            conn.setReadTimeout(timeout);
-            conn.setDoOutput(true);
-
-            if (plugin.getConfig().getBoolean("logging.log-api-calls", false)) {
-                plugin.logDebug("POST " + path + " -> " + json);
+        return execute(path, 1, timeout -> transport.post(path, json, timeout), logApiCalls);
+    }
+
+    /**
+     * Send a batch in the configured wire format. A bot that rejects the binary format
+     * gets the batch again as JSON, and JSON is used from then on until the next reload.
+     */
+    private ApiResponse postBatch(List<RankUpdatePayload> payloads) throws IOException {
+        String path = "/api/rank-update/batch";
+        boolean binary = plugin.getSettings().getWireFormat() == Settings.WireFormat.BINARY
+                && !binaryBatchesUnsupported;
+
+        if (binary) {
+            ApiResponse response = postBytes(path, payloads.size(), RankUpdateCodec.encode(payloads), RankUpdateCodec.CONTENT_TYPE);
+            int status = response.getStatusCode();
+            if (status != 400 && status != 415) {
+                return response;
             }
 
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = json.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
+            ApiResponse jsonResponse = postBytes(path, payloads.size(), RankUpdateJson.encodeBatch(payloads), RankUpdateJson.CONTENT_TYPE);
+            if (jsonResponse.isSuccess()) {
+                binaryBatchesUnsupported = true;
+                plugin.getLogger().warning("Discord bot does not accept the binary batch format, sending batches as JSON.");
             }
+            return jsonResponse;
+        }
 
-            int responseCode = conn.getResponseCode();
-            String responseBody = readResponse(conn, responseCode);
+        return postBytes(path, payloads.size(), RankUpdateJson.encodeBatch(payloads), RankUpdateJson.CONTENT_TYPE);
+    }
 
-            if (plugin.getConfig().getBoolean("logging.log-api-calls", false)) {
-                plugin.logDebug("Response: " + responseCode + " -> " + responseBody);
-            }
+    private ApiResponse postBytes(String path, byte[] body, String contentType) throws IOException {
+        return postBytes(path, 1, body, contentType);
+    }
 
-            return new ApiResponse(responseCode >= 200 && responseCode < 300, responseBody);
-        } finally {
-            conn.disconnect();
+    /**
+     * @param updates number of updates in the body, which scales the timeout
+     */
+    private ApiResponse postBytes(String path, int updates, byte[] body, String contentType) throws IOException {
+        Settings settings = plugin.getSettings();
+        boolean logApiCalls = settings.isLogApiCalls();
+        int gzipThreshold = settings.getGzipThreshold();
+        boolean gzip = gzipThreshold > 0 && body.length >= gzipThreshold;
+
+        if (logApiCalls) {
+            String description = contentType.equals(RankUpdateCodec.CONTENT_TYPE)
+                    ? body.length + " bytes of " + contentType
+                    : new String(body, StandardCharsets.UTF_8);
+            plugin.logDebug(() -> "POST " + path + " -> " + description + (gzip ? " (gzip)" : ""));
         }
+
+        return execute(path, updates, timeout -> transport.post(path, body, contentType, gzip, timeout), logApiCalls);
     }
 
-    private ApiResponse getJson(String path) throws IOException {
-        String endpoint = plugin.getConfig().getString("api.endpoint", "http://localhost:3000");
-        String token = plugin.getConfig().getString("api.token", "");
-        int timeout = plugin.getConfig().getInt("api.timeout", 5000);
+    /**
+     * @param endpoint path template used as the metrics label, e.g. /api/linked
+     */
+    private ApiResponse getJson(String endpoint, String path) throws IOException {
+        boolean logApiCalls = plugin.getSettings().isLogApiCalls();
 
-        URL url = URI.create(endpoint + path).toURL();
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        if (logApiCalls) {
+            plugin.logDebug(() -> "GET " + path);
+        }
 
-        try {
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("Authorization", "Bearer " + token);
-            conn.setConnectTimeout(timeout);
-            conn.setReadTimeout(timeout);
+        return execute(endpoint, 1, timeout -> transport.get(path, timeout), logApiCalls);
+    }
 
-            if (plugin.getConfig().getBoolean("logging.log-api-calls", false)) {
-                plugin.logDebug("GET " + path);
-            }
+    /**
+     * Send a request through the circuit breaker with the endpoint's timeout.
+     * A batch endpoint applies its updates one after another, so its timeout is the per-update
+     * timeout times the number of updates, and the breaker and estimator see the latency per update.
+     *
+     * @param updates number of updates carried by the request
+     */
+    private ApiResponse execute(String endpoint, int updates, Request request, boolean logApiCalls) throws IOException {
+        EndpointMetrics metrics = endpointMetrics.computeIfAbsent(endpoint,
+                key -> new EndpointMetrics(plugin.getMetrics(), key));
+        int units = Math.max(1, updates);
 
-            int responseCode = conn.getResponseCode();
-            String responseBody = readResponse(conn, responseCode);
+        // Settle the call with the instances it started with, even if a reload replaces them meanwhile
+        CircuitBreaker breaker = circuitBreaker;
+        Map<String, AdaptiveTimeout> timeouts = adaptiveTimeouts;
+        AdaptiveTimeout adaptive = timeouts != null ? adaptiveTimeout(timeouts, endpoint) : null;
+        if (breaker != null && !breaker.tryAcquirePermission()) {
+            metrics.recordCircuitOpen();
+            return new ApiResponse(false, "Error: Discord bot unavailable (circuit breaker open)");
+        }
 
-            if (plugin.getConfig().getBoolean("logging.log-api-calls", false)) {
-                plugin.logDebug("Response: " + responseCode + " -> " + responseBody);
+        long unitTimeout = adaptive != null
+                ? adaptive.getTimeoutMillis()
+                : plugin.getSettings().getApiTimeoutMillis();
+        long timeout = unitTimeout * units;
+        long start = System.nanoTime();
+        ApiResponse response;
+        inFlight.incrementAndGet();
+        try {
+            response = request.send(timeout);
+        } catch (IOException e) {
+            long elapsed = recordOutcome(breaker, start, units, true);
+            metrics.recordFailure(e);
+            if (adaptive != null) {
+                if (e instanceof HttpTimeoutException || elapsed >= timeout) {
+                    adaptive.recordTimeout(unitTimeout);
+                } else {
+                    adaptive.record(elapsed / units);
+                }
             }
-
-            return new ApiResponse(responseCode >= 200 && responseCode < 300, responseBody);
+            throw e;
+        } catch (RuntimeException e) {
+            // e.g. a malformed api.endpoint; still settle the call so a half-open breaker gets its permit back
+            recordOutcome(breaker, start, units, true);
+            metrics.recordFailure(e);
+            throw e;
         } finally {
-            conn.disconnect();
+            inFlight.decrementAndGet();
         }
-    }
 
-    private String readResponse(HttpURLConnection conn, int responseCode) {
-        try {
-            java.io.InputStream is = responseCode >= 200 && responseCode < 300 
-                ? conn.getInputStream() 
-                : conn.getErrorStream();
-            
-            if (is == null) {
-                return "";
-            }
+        int status = response.getStatusCode();
+        boolean failed = status == 429 || status >= 500;
+        long elapsed = recordOutcome(breaker, start, units, failed);
+        metrics.recordResponse(status, elapsed);
+        if (adaptive != null) {
+            adaptive.record(elapsed / units);
+        }
 
-            try (java.io.BufferedReader br = new java.io.BufferedReader(
-                    new java.io.InputStreamReader(is, StandardCharsets.UTF_8))) {
-                StringBuilder response = new StringBuilder();
-                String responseLine;
-                while ((responseLine = br.readLine()) != null) {
-                    response.append(responseLine.trim());
-                }
-                return response.toString();
-            }
-        } catch (IOException e) {
-            return "Error reading response: " + e.getMessage();
+        if (logApiCalls) {
+            plugin.logDebug(() -> "Response: " + status + " -> " + response + " (" + elapsed + " ms)");
+        }
+
+        return response;
+    }
+
+    private long recordOutcome(CircuitBreaker breaker, long startNanos, int units, boolean failed) {
+        long elapsed = (System.nanoTime() - startNanos) / 1_000_000;
+        if (breaker != null) {
+            breaker.onResult(elapsed / units, failed);
         }
+        return elapsed;
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        ApiResponse send(long timeoutMillis) throws IOException;
     }
 
     // Helper classes for JSON serialization
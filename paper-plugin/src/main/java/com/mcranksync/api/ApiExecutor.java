@@ -0,0 +1,390 @@
+package com.mcranksync.api;
+
+import com.mcranksync.metrics.LatencyHistogram;
+import com.mcranksync.metrics.MetricsRegistry;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Executor owned by the API client so blocking HTTP calls never run on the
+ * shared ForkJoinPool common pool used by the server and other plugins.
+ * Requests are queued per priority {@link Lane}, so a link command is not stuck
+ * behind a resync or a join storm.
+ */
+public class ApiExecutor {
+
+    public enum Mode {
+        BOUNDED,
+        VIRTUAL;
+
+        public static Mode parse(String value) {
+            return "virtual".equalsIgnoreCase(value) ? VIRTUAL : BOUNDED;
+        }
+    }
+
+    public enum RejectionPolicy {
+        REJECT,
+        DROP_OLDEST,
+        CALLER_RUNS;
+
+        public static RejectionPolicy parse(String value) {
+            if (value == null) {
+                return DROP_OLDEST;
+            }
+            return switch (value.toLowerCase(Locale.ROOT)) {
+                case "reject" -> REJECT;
+                case "caller-runs" -> CALLER_RUNS;
+                default -> DROP_OLDEST;
+            };
+        }
+    }
+
+    private final Logger logger;
+    private final ExecutorService executor;
+    private final Mode mode;
+    private final int queueSize;
+    private final RejectionPolicy policy;
+    private final int maxConcurrency;
+    private final LaneState[] lanes = new LaneState[Lane.values().length];
+    private final LongAdder rejected = new LongAdder();
+
+    private final Object lock = new Object();
+    private int active;
+    private boolean shutdown;
+
+    /**
+     * @param laneLimits max concurrent requests per lane; lanes without a positive limit get
+     *                   {@code threads} minus their priority rank in bounded mode and no limit in virtual mode
+     */
+    public ApiExecutor(Mode mode, int threads, int queueSize, RejectionPolicy policy, Map<Lane, Integer> laneLimits,
+                       MetricsRegistry metrics, Logger logger) {
+        this.logger = logger;
+        this.queueSize = Math.max(1, queueSize);
+        this.policy = policy;
+
+        ExecutorService virtual = mode == Mode.VIRTUAL ? createVirtualExecutor() : null;
+        if (virtual != null) {
+            this.executor = virtual;
+            this.mode = Mode.VIRTUAL;
+            this.maxConcurrency = Integer.MAX_VALUE;
+        } else {
+            if (mode == Mode.VIRTUAL) {
+                logger.warning("Virtual threads are not available on this JVM (Java 21+ required). "
+                        + "Falling back to a bounded thread pool.");
+            }
+            this.maxConcurrency = Math.max(1, threads);
+            this.executor = createBoundedExecutor(maxConcurrency);
+            this.mode = Mode.BOUNDED;
+        }
+
+        for (Lane lane : Lane.values()) {
+            Integer configured = laneLimits.get(lane);
+            int limit;
+            if (configured != null && configured > 0) {
+                limit = configured;
+            } else if (this.mode == Mode.BOUNDED) {
+                // Keep a thread free for every lane above this one
+                limit = Math.max(1, maxConcurrency - lane.ordinal());
+            } else {
+                limit = Integer.MAX_VALUE;
+            }
+            lanes[lane.ordinal()] = new LaneState(lane, limit, metrics.histogram("mcranksync_api_lane_queue_delay_ms",
+                    "Time requests waited in their API executor lane before being sent", "lane", lane.getKey()));
+        }
+    }
+
+    /**
+     * Run a blocking API call on this executor in the given lane.
+     * If the task is rejected or dropped, the returned future completes with a failed response.
+     */
+    public CompletableFuture<ApiResponse> submit(Lane lane, Supplier<ApiResponse> call) {
+        ApiTask task = new ApiTask(lanes[lane.ordinal()], call);
+        ApiTask dropped = null;
+        String rejection = null;
+        boolean runHere = false;
+
+        synchronized (lock) {
+            LaneState state = task.lane;
+            if (shutdown) {
+                rejection = "API executor is shut down";
+            } else if (state.queue.size() < queueSize) {
+                state.queue.add(task);
+            } else {
+                switch (policy) {
+                    case REJECT -> rejection = "API executor queue is full";
+                    case CALLER_RUNS -> runHere = true;
+                    case DROP_OLDEST -> {
+                        dropped = state.queue.poll();
+                        state.queue.add(task);
+                    }
+                }
+            }
+        }
+
+        if (rejection != null) {
+            reject(task, rejection);
+        } else if (runHere) {
+            task.run();
+        }
+        if (dropped != null) {
+            reject(dropped, "Dropped from a full API executor queue");
+        }
+        dispatch();
+        return task.future;
+    }
+
+    /**
+     * Stop accepting new requests and wait for queued and in-flight ones to finish.
+     * Requests still queued after the timeout are completed as failed.
+     */
+    public void shutdown(long timeoutMillis) {
+        List<ApiTask> pending = new ArrayList<>();
+        try {
+            synchronized (lock) {
+                shutdown = true;
+                long deadline = System.currentTimeMillis() + timeoutMillis;
+                long remaining = timeoutMillis;
+                while ((active > 0 || queued() > 0) && remaining > 0) {
+                    lock.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (lock) {
+                for (LaneState lane : lanes) {
+                    pending.addAll(lane.queue);
+                    lane.queue.clear();
+                }
+            }
+            executor.shutdownNow();
+        }
+
+        for (ApiTask task : pending) {
+            task.reject("API executor shut down before the request was sent");
+        }
+        if (!pending.isEmpty()) {
+            logger.warning("API executor did not terminate in time, dropped " + pending.size() + " pending request(s).");
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return queued();
+        }
+    }
+
+    public int getActiveCount() {
+        synchronized (lock) {
+            return active;
+        }
+    }
+
+    public int getQueueDepth(Lane lane) {
+        synchronized (lock) {
+            return lanes[lane.ordinal()].queue.size();
+        }
+    }
+
+    public int getActiveCount(Lane lane) {
+        synchronized (lock) {
+            return lanes[lane.ordinal()].active;
+        }
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * 99th percentile of the time requests waited in a lane, in milliseconds
+     */
+    public long getQueueDelayP99Millis(Lane lane) {
+        return lanes[lane.ordinal()].queueDelay.getPercentile(0.99);
+    }
+
+    /**
+     * Hand queued requests to free threads until every lane is empty or at its limit
+     */
+    private void dispatch() {
+        while (true) {
+            ApiTask task;
+            synchronized (lock) {
+                if (active >= maxConcurrency) {
+                    return;
+                }
+                LaneState lane = nextLane();
+                if (lane == null) {
+                    return;
+                }
+                task = lane.queue.poll();
+                lane.active++;
+                active++;
+            }
+
+            task.lane.queueDelay.record((System.nanoTime() - task.enqueuedNanos) / 1_000_000);
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        finished(task);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                finished(task);
+                task.reject("API executor is shut down");
+                return;
+            }
+        }
+    }
+
+    private void finished(ApiTask task) {
+        synchronized (lock) {
+            task.lane.active--;
+            active--;
+            lock.notifyAll();
+        }
+        dispatch();
+    }
+
+    /**
+     * Weighted round robin: the highest priority lane that has work, a free slot and credit left
+     * in this round goes next. A new round starts once no ready lane has credit left.
+     */
+    private LaneState nextLane() {
+        for (int round = 0; round < 2; round++) {
+            for (LaneState lane : lanes) {
+                if (lane.credits > 0 && lane.isReady()) {
+                    lane.credits--;
+                    return lane;
+                }
+            }
+            for (LaneState lane : lanes) {
+                lane.credits = lane.lane.getWeight();
+            }
+        }
+        return null;
+    }
+
+    private int queued() {
+        int queued = 0;
+        for (LaneState lane : lanes) {
+            queued += lane.queue.size();
+        }
+        return queued;
+    }
+
+    private ExecutorService createBoundedExecutor(int threads) {
+        // Requests are only handed over when a thread is free, so the pool's own queue stays empty
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                threads, threads,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new NamedThreadFactory("MCRankSync-API")
+        );
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private void reject(ApiTask task, String reason) {
+        rejected.increment();
+        task.reject(reason);
+    }
+
+    /**
+     * Looks up Executors.newVirtualThreadPerTaskExecutor reflectively so the plugin
+     * still runs on Java 17 servers.
+     */
+    private static ExecutorService createVirtualExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static class LaneState {
+        final Lane lane;
+        final int limit;
+        final LatencyHistogram queueDelay;
+        final ArrayDeque<ApiTask> queue = new ArrayDeque<>();
+        int active;
+        int credits;
+
+        LaneState(Lane lane, int limit, LatencyHistogram queueDelay) {
+            this.lane = lane;
+            this.limit = limit;
+            this.queueDelay = queueDelay;
+            this.credits = lane.getWeight();
+        }
+
+        boolean isReady() {
+            return !queue.isEmpty() && active < limit;
+        }
+    }
+
+    private static class ApiTask implements Runnable {
+        private final LaneState lane;
+        private final Supplier<ApiResponse> call;
+        private final long enqueuedNanos = System.nanoTime();
+        private final CompletableFuture<ApiResponse> future = new CompletableFuture<>();
+
+        ApiTask(LaneState lane, Supplier<ApiResponse> call) {
+            this.lane = lane;
+            this.call = call;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(call.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+
+        void reject(String reason) {
+            future.complete(new ApiResponse(false, "Error: " + reason));
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
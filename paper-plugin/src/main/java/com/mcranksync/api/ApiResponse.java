@@ -1,23 +1,276 @@
 package com.mcranksync.api;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 /**
- * Represents a response from the Discord bot API
+ * Represents a response from the Discord bot API.
+ * Responses from the bot are decoded by {@link ResponseDecoder}; responses created locally
+ * (transport errors, skipped updates) only carry a message.
  */
 public class ApiResponse {
-    
+
     private final boolean success;
     private final String message;
+    private final int statusCode;
+    private final String error;
+    private final Boolean linked;
+    private final List<String> rolesAdded;
+    private final List<String> rolesRemoved;
+    private final String ignored;
+    private final Boolean applied;
+    private final List<ApiResponse> results;
+    private final List<String> digest;
+    private final Map<String, String> entries;
+    private final String mappingRevision;
 
     public ApiResponse(boolean success, String message) {
+        this(success, message, 0);
+    }
+
+    public ApiResponse(boolean success, String message, int statusCode) {
+        this(success, statusCode, message, null, null, null, null, null, null, null, null, null, null);
+    }
+
+    private ApiResponse(boolean success, int statusCode, String message, String error, Boolean linked,
+                        List<String> rolesAdded, List<String> rolesRemoved, String ignored, Boolean applied,
+                        List<ApiResponse> results, List<String> digest, Map<String, String> entries,
+                        String mappingRevision) {
         this.success = success;
         this.message = message;
+        this.statusCode = statusCode;
+        this.error = error;
+        this.linked = linked;
+        this.rolesAdded = rolesAdded == null ? Collections.emptyList() : rolesAdded;
+        this.rolesRemoved = rolesRemoved == null ? Collections.emptyList() : rolesRemoved;
+        this.ignored = ignored;
+        this.applied = applied;
+        this.results = results == null ? Collections.emptyList() : results;
+        this.digest = digest == null ? Collections.emptyList() : digest;
+        this.entries = entries == null ? Collections.emptyMap() : entries;
+        this.mappingRevision = mappingRevision;
     }
 
     public boolean isSuccess() {
         return success;
     }
 
+    /**
+     * The bot's message, or its error if it only sent one
+     */
     public String getMessage() {
-        return message;
+        if (message != null) {
+            return message;
+        }
+        if (error != null) {
+            return error;
+        }
+        return statusCode > 0 ? "HTTP " + statusCode : "";
+    }
+
+    /**
+     * The error reported by the bot, or null if there is none
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * The "linked" flag reported by the bot, or null if the response doesn't include one
+     */
+    public Boolean getLinked() {
+        return linked;
+    }
+
+    /**
+     * Discord role IDs the bot added for this update
+     */
+    public List<String> getRolesAdded() {
+        return rolesAdded;
+    }
+
+    /**
+     * Discord role IDs the bot removed for this update
+     */
+    public List<String> getRolesRemoved() {
+        return rolesRemoved;
+    }
+
+    /**
+     * Why the bot ignored the update ("duplicate"), or null if it was applied
+     */
+    public String getIgnored() {
+        return ignored;
+    }
+
+    /**
+     * Whether the player's roles now match the groups in the update: true once they were synced
+     * (or already matched, for a duplicate), false if the bot could not apply them, e.g. because
+     * the Discord member was not found. Null for bots that do not report it.
+     */
+    public Boolean getApplied() {
+        return applied;
+    }
+
+    /**
+     * Per-update results of a batch request, in submission order
+     */
+    public List<ApiResponse> getResults() {
+        return results;
+    }
+
+    /**
+     * Hash of each UUID range of the bot's sync state digest, in range order ("" for an empty range)
+     */
+    public List<String> getDigest() {
+        return digest;
+    }
+
+    /**
+     * Hash of the last applied state per player UUID, for one range of the sync state digest
+     */
+    public Map<String, String> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Revision of the bot's rank mappings when it answered, or null for bots that do not report it
+     */
+    public String getMappingRevision() {
+        return mappingRevision;
+    }
+
+    /**
+     * HTTP status code of the response, or 0 if no response was received
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("{success=").append(success);
+        if (message != null) {
+            out.append(", message=").append(message);
+        }
+        if (error != null) {
+            out.append(", error=").append(error);
+        }
+        if (linked != null) {
+            out.append(", linked=").append(linked);
+        }
+        if (!rolesAdded.isEmpty()) {
+            out.append(", rolesAdded=").append(rolesAdded);
+        }
+        if (!rolesRemoved.isEmpty()) {
+            out.append(", rolesRemoved=").append(rolesRemoved);
+        }
+        if (ignored != null) {
+            out.append(", ignored=").append(ignored);
+        }
+        if (applied != null) {
+            out.append(", applied=").append(applied);
+        }
+        if (!results.isEmpty()) {
+            out.append(", results=").append(results);
+        }
+        if (!digest.isEmpty()) {
+            out.append(", digest=").append(digest.size()).append(" ranges");
+        }
+        if (!entries.isEmpty()) {
+            out.append(", entries=").append(entries.size()).append(" players");
+        }
+        return out.append('}').toString();
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    static class Builder {
+        private boolean success;
+        private int statusCode;
+        private String message;
+        private String error;
+        private Boolean linked;
+        private List<String> rolesAdded;
+        private List<String> rolesRemoved;
+        private String ignored;
+        private Boolean applied;
+        private List<ApiResponse> results;
+        private List<String> digest;
+        private Map<String, String> entries;
+        private String mappingRevision;
+
+        Builder success(boolean success) {
+            this.success = success;
+            return this;
+        }
+
+        Builder statusCode(int statusCode) {
+            this.statusCode = statusCode;
+            return this;
+        }
+
+        Builder message(String message) {
+            this.message = message;
+            return this;
+        }
+
+        Builder error(String error) {
+            this.error = error;
+            return this;
+        }
+
+        Builder linked(Boolean linked) {
+            this.linked = linked;
+            return this;
+        }
+
+        Builder rolesAdded(List<String> rolesAdded) {
+            this.rolesAdded = rolesAdded;
+            return this;
+        }
+
+        Builder rolesRemoved(List<String> rolesRemoved) {
+            this.rolesRemoved = rolesRemoved;
+            return this;
+        }
+
+        Builder ignored(String ignored) {
+            this.ignored = ignored;
+            return this;
+        }
+
+        Builder applied(Boolean applied) {
+            this.applied = applied;
+            return this;
+        }
+
+        Builder results(List<ApiResponse> results) {
+            this.results = results;
+            return this;
+        }
+
+        Builder digest(List<String> digest) {
+            this.digest = digest;
+            return this;
+        }
+
+        Builder entries(Map<String, String> entries) {
+            this.entries = entries;
+            return this;
+        }
+
+        Builder mappingRevision(String mappingRevision) {
+            this.mappingRevision = mappingRevision;
+            return this;
+        }
+
+        ApiResponse build() {
+            return new ApiResponse(success, statusCode, message, error, linked, rolesAdded, rolesRemoved, ignored, applied,
+                    results, digest, entries, mappingRevision);
+        }
     }
 }
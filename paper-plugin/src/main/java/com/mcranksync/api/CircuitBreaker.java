@@ -0,0 +1,144 @@
+package com.mcranksync.api;
+
+/**
+ * Count-based circuit breaker for calls to the Discord bot.
+ * <p>
+ * CLOSED: calls pass through and their outcomes are recorded in a sliding window.
+ * When the failure rate or slow-call rate exceeds its threshold the breaker OPENs.
+ * OPEN: calls fail fast until the open duration has elapsed.
+ * HALF_OPEN: a limited number of trial calls are let through; if they all succeed
+ * the breaker closes again, otherwise it reopens.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallMillis;
+    private final long openDurationMillis;
+    private final int halfOpenCalls;
+
+    // Ring buffer of recent outcomes, guarded by this
+    private final boolean[] failures;
+    private final boolean[] slowCalls;
+    private int position;
+    private int recorded;
+    private int failureCount;
+    private int slowCount;
+
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold,
+                          int slowCallRateThreshold, long slowCallMillis,
+                          long openDurationMillis, int halfOpenCalls) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallMillis = slowCallMillis;
+        this.openDurationMillis = openDurationMillis;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.failures = new boolean[this.windowSize];
+        this.slowCalls = new boolean[this.windowSize];
+    }
+
+    /**
+     * Whether a call may be attempted now. Every permitted call must be followed by {@link #onResult}.
+     */
+    public synchronized boolean tryAcquirePermission() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openDurationMillis) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+                // fall through to hand out the first trial permit
+            case HALF_OPEN:
+            default:
+                if (halfOpenPermits >= halfOpenCalls) {
+                    return false;
+                }
+                halfOpenPermits++;
+                return true;
+        }
+    }
+
+    /**
+     * Record the outcome of a permitted call
+     */
+    public synchronized void onResult(long durationMillis, boolean failed) {
+        boolean slow = durationMillis >= slowCallMillis;
+
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                transitionTo(State.OPEN);
+            } else if (++halfOpenSuccesses >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+
+        if (state != State.CLOSED) {
+            return;
+        }
+
+        if (recorded == windowSize) {
+            if (failures[position]) {
+                failureCount--;
+            }
+            if (slowCalls[position]) {
+                slowCount--;
+            }
+        } else {
+            recorded++;
+        }
+        failures[position] = failed;
+        slowCalls[position] = slow;
+        if (failed) {
+            failureCount++;
+        }
+        if (slow) {
+            slowCount++;
+        }
+        position = (position + 1) % windowSize;
+
+        if (recorded >= minimumCalls
+                && (failureCount * 100 >= failureRateThreshold * recorded
+                || slowCount * 100 >= slowCallRateThreshold * recorded)) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    private void transitionTo(State newState) {
+        state = newState;
+        halfOpenPermits = 0;
+        halfOpenSuccesses = 0;
+
+        if (newState == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+        }
+        if (newState != State.HALF_OPEN) {
+            // Start every closed/open period with an empty window
+            position = 0;
+            recorded = 0;
+            failureCount = 0;
+            slowCount = 0;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.mcranksync.api;
+
+import com.mcranksync.metrics.Counter;
+import com.mcranksync.metrics.LatencyHistogram;
+import com.mcranksync.metrics.MetricsRegistry;
+
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.Locale;
+
+/**
+ * Request count, latency and error counters for one bot API endpoint
+ */
+class EndpointMetrics {
+
+    enum ErrorClass {
+        TIMEOUT,
+        CONNECT,
+        IO,
+        CIRCUIT_OPEN,
+        RATE_LIMITED,
+        CLIENT_ERROR,
+        SERVER_ERROR
+    }
+
+    private final Counter requests;
+    private final LatencyHistogram latency;
+    private final Counter[] errors = new Counter[ErrorClass.values().length];
+
+    EndpointMetrics(MetricsRegistry registry, String endpoint) {
+        this.requests = registry.counter("mcranksync_api_requests_total",
+                "Requests sent to the Discord bot", "endpoint", endpoint);
+        this.latency = registry.histogram("mcranksync_api_latency_ms",
+                "Discord bot request latency in milliseconds", "endpoint", endpoint);
+        for (ErrorClass errorClass : ErrorClass.values()) {
+            errors[errorClass.ordinal()] = registry.counter("mcranksync_api_errors_total",
+                    "Failed requests to the Discord bot by error class",
+                    "endpoint", endpoint, "class", errorClass.name().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    void recordResponse(int statusCode, long latencyMillis) {
+        requests.increment();
+        latency.record(latencyMillis);
+
+        if (statusCode == 429) {
+            error(ErrorClass.RATE_LIMITED);
+        } else if (statusCode >= 500) {
+            error(ErrorClass.SERVER_ERROR);
+        } else if (statusCode >= 400) {
+            error(ErrorClass.CLIENT_ERROR);
+        }
+    }
+
+    void recordFailure(Exception e) {
+        requests.increment();
+        if (e instanceof HttpConnectTimeoutException || e instanceof ConnectException) {
+            error(ErrorClass.CONNECT);
+        } else if (e instanceof HttpTimeoutException) {
+            error(ErrorClass.TIMEOUT);
+        } else {
+            error(ErrorClass.IO);
+        }
+    }
+
+    void recordCircuitOpen() {
+        error(ErrorClass.CIRCUIT_OPEN);
+    }
+
+    private void error(ErrorClass errorClass) {
+        errors[errorClass.ordinal()].increment();
+    }
+}
@@ -0,0 +1,462 @@
+package com.mcranksync.api;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.mcranksync.models.RankUpdateJson;
+import com.mcranksync.models.RankUpdatePayload;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.net.http.WebSocketHandshakeException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Long-lived WebSocket connection to the bot's /api/stream endpoint. Events are pipelined with
+ * sequence numbers instead of paying an HTTP request each, and the bot acknowledges every event
+ * with the same result object the batch endpoint returns.
+ * <p>
+ * Unacknowledged events are kept until the bot acknowledges them. After a reconnect the session is
+ * resumed and only events the bot never processed are sent again. Events sent while the stream is
+ * down or full, and events still unacknowledged once the bot has gone silent for the ack timeout,
+ * go through the REST fallback instead.
+ */
+public class EventStream {
+
+    public static final String PATH = "/api/stream";
+
+    private static final long MIN_RECONNECT_DELAY_MILLIS = 1000;
+
+    private final URI uri;
+    private final String token;
+    private final int maxInFlight;
+    private final long ackTimeoutNanos;
+    private final long maxReconnectDelayMillis;
+    private final Function<RankUpdatePayload, CompletableFuture<ApiResponse>> fallback;
+    private final Logger logger;
+    private final HttpClient client;
+    private final ScheduledExecutorService scheduler;
+    private final String sessionId = UUID.randomUUID().toString();
+
+    private final ConcurrentSkipListMap<Long, Pending> unacked = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextSeq = new AtomicLong();
+    private final LongAdder fallbackCount = new LongAdder();
+    private final LongAdder reconnectCount = new LongAdder();
+
+    // WebSocket allows one outstanding send at a time, so frames are chained, guarded by sendLock
+    private final Object sendLock = new Object();
+    private CompletableFuture<WebSocket> sendChain;
+
+    private volatile WebSocket socket;
+    private volatile boolean ready;
+    private volatile boolean closed;
+    private volatile long lastReceivedNanos = System.nanoTime();
+    private volatile long openedNanos;
+
+    // Reconnect state, guarded by this
+    private long reconnectDelayMillis = MIN_RECONNECT_DELAY_MILLIS;
+    private boolean outageLogged;
+
+    /**
+     * @param endpoint bot base URL, e.g. http://localhost:3000
+     * @param maxInFlight unacknowledged events allowed before new events go over REST
+     * @param ackTimeoutMillis how long the bot may stay silent with events outstanding before they are re-sent over REST
+     * @param fallback sends a single event over REST
+     */
+    public EventStream(String endpoint, String token, int maxInFlight, long ackTimeoutMillis, long maxReconnectDelayMillis,
+                       Function<RankUpdatePayload, CompletableFuture<ApiResponse>> fallback, Logger logger) {
+        this.uri = toWebSocketUri(endpoint);
+        this.token = token;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.ackTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(100, ackTimeoutMillis));
+        this.maxReconnectDelayMillis = Math.max(MIN_RECONNECT_DELAY_MILLIS, maxReconnectDelayMillis);
+        this.fallback = fallback;
+        this.logger = logger;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(Math.max(100, ackTimeoutMillis)))
+                .build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MCRankSync-Stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Open the connection and start watching for unacknowledged events
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::checkAcks, 1, 1, TimeUnit.SECONDS);
+        scheduler.execute(this::connect);
+    }
+
+    /**
+     * Close the connection. Events still waiting for an ack are handed to the REST fallback.
+     */
+    public void close() {
+        closed = true;
+        ready = false;
+        scheduler.shutdownNow();
+        WebSocket current = socket;
+        socket = null;
+        if (current != null) {
+            current.sendClose(WebSocket.NORMAL_CLOSURE, "Plugin disabled");
+        }
+        for (Long seq : unacked.keySet()) {
+            fallBack(seq);
+        }
+    }
+
+    /**
+     * Whether events are currently sent over the stream
+     */
+    public boolean isConnected() {
+        return ready;
+    }
+
+    public int getUnackedCount() {
+        return unacked.size();
+    }
+
+    /**
+     * Events that went over REST because the stream was down, full or timed out
+     */
+    public long getFallbackCount() {
+        return fallbackCount.sum();
+    }
+
+    public long getReconnectCount() {
+        return reconnectCount.sum();
+    }
+
+    /**
+     * Send an event over the stream, or over REST if the stream is not connected or too many
+     * events are waiting for an ack. The future completes with the bot's result for this event.
+     */
+    public CompletableFuture<ApiResponse> send(RankUpdatePayload payload) {
+        if (!ready || unacked.size() >= maxInFlight) {
+            fallbackCount.increment();
+            return fallback.apply(payload);
+        }
+
+        long seq = nextSeq.incrementAndGet();
+        Pending pending = new Pending(payload);
+        unacked.put(seq, pending);
+        transmit(seq, pending);
+        return pending.future;
+    }
+
+    private void connect() {
+        if (closed) {
+            return;
+        }
+
+        // The socket is set up in Listener.onOpen, before a close or error for it can arrive
+        client.newWebSocketBuilder()
+                .header("Authorization", "Bearer " + token)
+                .buildAsync(uri, new Listener())
+                .whenComplete((webSocket, error) -> {
+                    if (error != null) {
+                        onConnectFailed(error instanceof CompletionException ? error.getCause() : error);
+                    }
+                });
+    }
+
+    private void onOpen(WebSocket webSocket) {
+        if (closed) {
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "Plugin disabled");
+            return;
+        }
+
+        socket = webSocket;
+        long now = System.nanoTime();
+        openedNanos = now;
+        lastReceivedNanos = now;
+        synchronized (sendLock) {
+            sendChain = CompletableFuture.completedFuture(webSocket);
+        }
+
+        // Everything up to the first unacknowledged event is done, from the plugin's side
+        Map.Entry<Long, Pending> first = unacked.firstEntry();
+        long lastAck = first != null ? first.getKey() - 1 : nextSeq.get();
+        JsonObject hello = new JsonObject();
+        hello.addProperty("type", "hello");
+        hello.addProperty("session", sessionId);
+        hello.addProperty("lastAck", lastAck);
+        sendFrame(hello.toString());
+    }
+
+    private void onConnectFailed(Throwable error) {
+        if (error instanceof WebSocketHandshakeException) {
+            int status = ((WebSocketHandshakeException) error).getResponse().statusCode();
+            if (status == 404) {
+                logger.warning("Discord bot does not support the event stream, sending events over REST.");
+                return;
+            }
+            reportOutage("handshake rejected with HTTP " + status);
+        } else {
+            reportOutage(error.getMessage());
+        }
+        scheduleReconnect();
+    }
+
+    private void onDisconnected(WebSocket webSocket, String reason) {
+        if (socket != webSocket) {
+            return;
+        }
+        socket = null;
+        ready = false;
+        if (!closed) {
+            reportOutage(reason);
+            scheduleReconnect();
+        }
+    }
+
+    private synchronized void reportOutage(String reason) {
+        if (!outageLogged) {
+            outageLogged = true;
+            logger.warning("Event stream to the Discord bot is down (" + reason + "), sending events over REST until it reconnects.");
+        }
+    }
+
+    private synchronized void scheduleReconnect() {
+        if (closed) {
+            return;
+        }
+        long delay = reconnectDelayMillis;
+        reconnectDelayMillis = Math.min(maxReconnectDelayMillis, reconnectDelayMillis * 2);
+        reconnectCount.increment();
+        scheduler.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Resume after the bot's welcome: events it already processed are done, the rest are sent again in order
+     */
+    private void onWelcome(long resumeFrom) {
+        for (Map.Entry<Long, Pending> entry : unacked.entrySet()) {
+            long seq = entry.getKey();
+            if (seq <= resumeFrom) {
+                // Processed before the disconnect, but the result was lost with the connection
+                Pending pending = unacked.remove(seq);
+                if (pending != null) {
+                    pending.future.complete(new ApiResponse(true, "Processed before reconnect", 200));
+                }
+            } else {
+                transmit(seq, entry.getValue());
+            }
+        }
+
+        onReconnected();
+        ready = true;
+    }
+
+    private synchronized void onReconnected() {
+        reconnectDelayMillis = MIN_RECONNECT_DELAY_MILLIS;
+        if (outageLogged) {
+            outageLogged = false;
+            logger.info("Event stream to the Discord bot reconnected.");
+        }
+    }
+
+    private void onAck(long seq, ApiResponse result) {
+        Pending pending = unacked.remove(seq);
+        if (pending == null) {
+            return;
+        }
+        pending.future.complete(result != null ? result : new ApiResponse(false, "Error: Missing result in acknowledgement", 200));
+    }
+
+    private void handleMessage(String text) {
+        lastReceivedNanos = System.nanoTime();
+        String type = "";
+        long seq = -1;
+        long resumeFrom = -1;
+        String error = null;
+        ApiResponse result = null;
+        // Streamed, so the result is decoded into its typed response without building a tree
+        try {
+            JsonReader in = new JsonReader(new StringReader(text));
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.skipValue();
+                    continue;
+                }
+                switch (name) {
+                    case "type" -> type = in.nextString();
+                    case "seq" -> seq = in.nextLong();
+                    case "resumeFrom" -> resumeFrom = in.nextLong();
+                    case "error" -> {
+                        if (in.peek() == JsonToken.STRING) {
+                            error = in.nextString();
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    case "result" -> {
+                        if (in.peek() == JsonToken.BEGIN_OBJECT) {
+                            result = ResponseDecoder.readResult(in, 200);
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Ignoring malformed event stream message: " + text);
+            return;
+        }
+
+        switch (type) {
+            case "ack":
+                onAck(seq, result);
+                break;
+            case "welcome":
+                onWelcome(resumeFrom);
+                break;
+            case "error":
+                logger.warning("Discord bot reported an event stream error: " + error);
+                break;
+            default:
+                break;
+        }
+    }
+
+
+    /**
+     * Runs every second. If the bot has been silent for the ack timeout while events are outstanding,
+     * the connection is assumed dead: it is dropped and the overdue events are sent over REST.
+     * A connection the bot has not welcomed within the ack timeout is dropped as well, since nothing
+     * is sent over it until then.
+     */
+    private void checkAcks() {
+        long now = System.nanoTime();
+        WebSocket opening = socket;
+        if (opening != null && !ready && now - openedNanos >= ackTimeoutNanos) {
+            logger.warning("Discord bot did not answer the event stream handshake, reconnecting the event stream.");
+            opening.abort();
+            onDisconnected(opening, "no welcome within the ack timeout");
+        }
+
+        if (unacked.isEmpty() || now - lastReceivedNanos < ackTimeoutNanos) {
+            return;
+        }
+
+        WebSocket current = socket;
+        if (current != null) {
+            logger.warning("Discord bot stopped acknowledging events, reconnecting the event stream.");
+            current.abort();
+            onDisconnected(current, "no acknowledgement within the ack timeout");
+        }
+
+        for (Map.Entry<Long, Pending> entry : unacked.entrySet()) {
+            if (now - entry.getValue().createdNanos >= ackTimeoutNanos) {
+                fallBack(entry.getKey());
+            }
+        }
+    }
+
+    private void fallBack(long seq) {
+        Pending pending = unacked.remove(seq);
+        if (pending == null) {
+            return;
+        }
+        fallbackCount.increment();
+        fallback.apply(pending.payload).whenComplete((response, error) -> {
+            if (error != null) {
+                pending.future.complete(new ApiResponse(false, "Error: " + error.getMessage()));
+            } else {
+                pending.future.complete(response);
+            }
+        });
+    }
+
+    private void transmit(long seq, Pending pending) {
+        // The encoded payload is spliced in rather than rebuilt as a JSON tree for every frame
+        sendFrame("{\"type\":\"event\",\"seq\":" + seq + ",\"update\":"
+                + new String(RankUpdateJson.encode(pending.payload), StandardCharsets.UTF_8) + "}");
+    }
+
+    private void sendFrame(String text) {
+        synchronized (sendLock) {
+            if (sendChain == null) {
+                return;
+            }
+            // A failed send leaves the chain failed; the connection is dropped and replaced on reconnect
+            sendChain = sendChain.thenCompose(webSocket -> webSocket.sendText(text, true));
+        }
+    }
+
+    private static URI toWebSocketUri(String endpoint) {
+        String base = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+        if (base.startsWith("https://")) {
+            base = "wss://" + base.substring("https://".length());
+        } else if (base.startsWith("http://")) {
+            base = "ws://" + base.substring("http://".length());
+        }
+        return URI.create(base + PATH);
+    }
+
+    private final class Listener implements WebSocket.Listener {
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        public void onOpen(WebSocket webSocket) {
+            EventStream.this.onOpen(webSocket);
+            webSocket.request(1);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            text.append(data);
+            if (last) {
+                String message = text.toString();
+                text.setLength(0);
+                handleMessage(message);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            onDisconnected(webSocket, "closed by the bot with code " + statusCode);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            onDisconnected(webSocket, String.valueOf(error.getMessage()));
+        }
+    }
+
+    private static final class Pending {
+        final RankUpdatePayload payload;
+        final long createdNanos = System.nanoTime();
+        final CompletableFuture<ApiResponse> future = new CompletableFuture<>();
+
+        Pending(RankUpdatePayload payload) {
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.mcranksync.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pooled HTTP transport for the Discord bot REST API.
+ * A single {@link HttpClient} is shared by all requests so connections are kept alive
+ * and reused instead of paying a TCP/TLS handshake per event. Response bodies are decoded
+ * as they are received, see {@link ResponseDecoder}.
+ */
+public class HttpTransport {
+
+    private final HttpClient client;
+    private final Semaphore connectionPermits;
+    private final ResponseDecoder decoder;
+    private final String endpoint;
+    private final String token;
+    private final Duration requestTimeout;
+
+    public HttpTransport(String endpoint, String token, int timeoutMillis, int maxConnections, boolean http2) {
+        this.endpoint = stripTrailingSlash(endpoint);
+        this.token = token;
+        this.requestTimeout = Duration.ofMillis(timeoutMillis);
+
+        // Each in-flight HTTP/1.1 request occupies one pooled connection, so capping
+        // concurrent requests caps the number of open sockets to the bot
+        this.connectionPermits = new Semaphore(Math.max(1, maxConnections), true);
+        this.decoder = new ResponseDecoder(maxConnections);
+
+        this.client = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(timeoutMillis))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    /**
+     * POST a JSON body to the given API path
+     */
+    public ApiResponse post(String path, String json) throws IOException {
+        return post(path, json, requestTimeout.toMillis());
+    }
+
+    /**
+     * POST a JSON body to the given API path, failing if no response arrives within the timeout
+     */
+    public ApiResponse post(String path, String json, long timeoutMillis) throws IOException {
+        HttpRequest request = newRequest(path, timeoutMillis)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
+                .build();
+        return send(request);
+    }
+
+    /**
+     * POST a body with the given content type, gzip-compressing it first if requested
+     */
+    public ApiResponse post(String path, byte[] body, String contentType, boolean gzip, long timeoutMillis) throws IOException {
+        HttpRequest.Builder builder = newRequest(path, timeoutMillis)
+                .header("Content-Type", contentType);
+        if (gzip) {
+            body = gzip(body);
+            builder.header("Content-Encoding", "gzip");
+        }
+        return send(builder.POST(HttpRequest.BodyPublishers.ofByteArray(body)).build());
+    }
+
+    /**
+     * GET the given API path
+     */
+    public ApiResponse get(String path) throws IOException {
+        return get(path, requestTimeout.toMillis());
+    }
+
+    /**
+     * GET the given API path, failing if no response arrives within the timeout
+     */
+    public ApiResponse get(String path, long timeoutMillis) throws IOException {
+        HttpRequest request = newRequest(path, timeoutMillis)
+                .GET()
+                .build();
+        return send(request);
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    private HttpRequest.Builder newRequest(String path, long timeoutMillis) {
+        return HttpRequest.newBuilder(URI.create(endpoint + path))
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .header("Authorization", "Bearer " + token);
+    }
+
+    private ApiResponse send(HttpRequest request) throws IOException {
+        try {
+            connectionPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                return decoder.decode(body, response.statusCode());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a response", e);
+        } finally {
+            connectionPermits.release();
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
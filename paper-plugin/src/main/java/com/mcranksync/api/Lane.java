@@ -0,0 +1,71 @@
+package com.mcranksync.api;
+
+import com.mcranksync.models.RankUpdatePayload;
+
+import java.util.List;
+
+/**
+ * Priority lanes of the API executor, highest priority first.
+ * Each lane has its own queue and concurrency limit; free threads are handed out by weighted
+ * round robin, so higher lanes get most of the capacity without starving the lower ones.
+ */
+public enum Lane {
+    /** Requests a player is waiting on in chat: link, unlink, status */
+    INTERACTIVE("interactive", 8),
+    /** Rank changes made on this server */
+    RANK_CHANGE("rank-change", 4),
+    /** Join syncs and link status lookups on join */
+    JOIN("join", 2),
+    /** Resyncs and retries of resync updates */
+    RECONCILIATION("reconciliation", 1);
+
+    private final String key;
+    private final int weight;
+
+    Lane(String key, int weight) {
+        this.key = key;
+        this.weight = weight;
+    }
+
+    /**
+     * Name used in the config and metrics labels
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Requests dispatched from this lane per scheduling round while it has work queued
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Lane for a rank update or player join payload
+     */
+    public static Lane of(RankUpdatePayload payload) {
+        String eventType = payload.getEventType();
+        if ("PLAYER_JOIN".equals(eventType)) {
+            return JOIN;
+        }
+        if ("RESYNC".equals(eventType)) {
+            return RECONCILIATION;
+        }
+        return RANK_CHANGE;
+    }
+
+    /**
+     * Lane for a batch: the highest priority lane of its payloads
+     */
+    public static Lane of(List<RankUpdatePayload> payloads) {
+        Lane lane = RECONCILIATION;
+        for (RankUpdatePayload payload : payloads) {
+            Lane candidate = of(payload);
+            if (candidate.ordinal() < lane.ordinal()) {
+                lane = candidate;
+            }
+        }
+        return lane;
+    }
+}
@@ -0,0 +1,282 @@
+package com.mcranksync.api;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Decodes bot responses straight from the response body stream into typed {@link ApiResponse}s.
+ * No body string or JSON tree is built; the UTF-8 readers and their byte buffers are pooled,
+ * one per concurrent request, instead of being allocated for every response.
+ */
+public class ResponseDecoder {
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final BlockingQueue<PooledReader> readers;
+
+    /**
+     * @param poolSize number of readers kept for reuse, normally the maximum number of concurrent requests
+     */
+    public ResponseDecoder(int poolSize) {
+        this.readers = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+
+    /**
+     * Decode a response body. The stream is read to the end, so the connection can be reused, but not closed.
+     * An empty body or one that is not a JSON object leaves the response with only its status, as does
+     * malformed JSON in an error response.
+     *
+     * @throws IOException if reading the body failed, or a successful response's JSON was cut off or malformed,
+     *                     so the request is treated like any other transport failure
+     */
+    public ApiResponse decode(InputStream body, int statusCode) throws IOException {
+        boolean success = statusCode >= 200 && statusCode < 300;
+        PooledReader reader = acquire(body);
+        try {
+            JsonReader json = new JsonReader(reader);
+            if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                return ApiResponse.builder().success(success).statusCode(statusCode).build();
+            }
+            return readObject(json, statusCode).success(success).build();
+        } catch (IOException | RuntimeException e) {
+            if (reader.failure != null) {
+                throw reader.failure;
+            }
+            if (success && !reader.empty) {
+                throw new IOException("Malformed response body (status " + statusCode + ")", e);
+            }
+            return ApiResponse.builder().success(success).statusCode(statusCode).build();
+        } finally {
+            reader.drain();
+            readers.offer(reader);
+        }
+    }
+
+    /**
+     * Read one result object, e.g. an entry of a batch response or an event stream acknowledgement.
+     * Unlike a whole response its success is the object's own "success" flag.
+     */
+    static ApiResponse readResult(JsonReader in, int statusCode) throws IOException {
+        return readObject(in, statusCode).build();
+    }
+
+    private static ApiResponse.Builder readObject(JsonReader in, int statusCode) throws IOException {
+        ApiResponse.Builder builder = ApiResponse.builder().statusCode(statusCode);
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.skipValue();
+                continue;
+            }
+            switch (name) {
+                case "success" -> builder.success(readBoolean(in));
+                case "message" -> builder.message(readString(in));
+                case "error" -> builder.error(readString(in));
+                case "linked" -> builder.linked(readBoolean(in));
+                case "rolesAdded" -> builder.rolesAdded(readStrings(in));
+                case "rolesRemoved" -> builder.rolesRemoved(readStrings(in));
+                case "ignored" -> builder.ignored(readString(in));
+                case "applied" -> builder.applied(readBoolean(in));
+                case "results" -> builder.results(readResults(in, statusCode));
+                case "digest" -> builder.digest(readStrings(in));
+                case "entries" -> builder.entries(readStringMap(in));
+                case "mappingRevision" -> builder.mappingRevision(readString(in));
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder;
+    }
+
+    private static List<ApiResponse> readResults(JsonReader in, int statusCode) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            return null;
+        }
+        List<ApiResponse> results = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.BEGIN_OBJECT) {
+                results.add(readResult(in, statusCode));
+            } else {
+                // Keeps positions aligned with the submitted updates
+                in.skipValue();
+                results.add(null);
+            }
+        }
+        in.endArray();
+        return results;
+    }
+
+    private static List<String> readStrings(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            String value = readString(in);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        in.endArray();
+        return values;
+    }
+
+    private static Map<String, String> readStringMap(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return null;
+        }
+        Map<String, String> values = new HashMap<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            String value = readString(in);
+            if (value != null) {
+                values.put(name, value);
+            }
+        }
+        in.endObject();
+        return values;
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER || token == JsonToken.BOOLEAN) {
+            return token == JsonToken.BOOLEAN ? String.valueOf(in.nextBoolean()) : in.nextString();
+        }
+        in.skipValue();
+        return null;
+    }
+
+    private static Boolean readBoolean(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.BOOLEAN) {
+            return in.nextBoolean();
+        }
+        in.skipValue();
+        return null;
+    }
+
+    private PooledReader acquire(InputStream body) {
+        PooledReader reader = readers.poll();
+        return (reader != null ? reader : new PooledReader()).reset(body);
+    }
+
+    /**
+     * UTF-8 reader over a body stream with a reusable byte buffer and decoder
+     */
+    private static final class PooledReader extends Reader {
+        private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private InputStream in;
+        private boolean endOfInput;
+        private boolean flushed;
+
+        /**
+         * Whether no characters were decoded from the body yet
+         */
+        boolean empty;
+
+        /**
+         * Error thrown by the body stream itself, as opposed to malformed JSON
+         */
+        IOException failure;
+
+        PooledReader reset(InputStream in) {
+            this.in = in;
+            bytes.clear().flip();
+            decoder.reset();
+            endOfInput = false;
+            flushed = false;
+            empty = true;
+            failure = null;
+            return this;
+        }
+
+        @Override
+        public int read(char[] target, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            CharBuffer out = CharBuffer.wrap(target, offset, length);
+            while (true) {
+                decoder.decode(bytes, out, endOfInput);
+                if (out.position() > offset) {
+                    empty = false;
+                    return out.position() - offset;
+                }
+                if (endOfInput) {
+                    if (!flushed) {
+                        flushed = true;
+                        decoder.flush(out);
+                        if (out.position() > offset) {
+                            empty = false;
+                            return out.position() - offset;
+                        }
+                    }
+                    return -1;
+                }
+                fill();
+            }
+        }
+
+        /**
+         * Read what is left of the body, leaving the buffer ready for the next response
+         */
+        void drain() {
+            try {
+                while (!endOfInput) {
+                    endOfInput = in.read(bytes.array()) < 0;
+                }
+            } catch (IOException ignored) {
+                // The connection is discarded by the client
+            }
+            in = null;
+        }
+
+        private void fill() throws IOException {
+            bytes.compact();
+            int read;
+            try {
+                read = in.read(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            } catch (IOException e) {
+                failure = e;
+                bytes.flip();
+                throw e;
+            }
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                bytes.position(bytes.position() + read);
+            }
+            bytes.flip();
+        }
+
+        @Override
+        public void close() {
+            // The body stream belongs to the caller
+        }
+    }
+}
@@ -1,6 +1,16 @@
 package com.mcranksync.commands;
 
 import com.mcranksync.MCRankSync;
+import com.mcranksync.api.AdaptiveTimeout;
+import com.mcranksync.api.ApiClient;
+import com.mcranksync.api.ApiExecutor;
+import com.mcranksync.api.CircuitBreaker;
+import com.mcranksync.api.Lane;
+import com.mcranksync.sync.DriftAuditor;
+import com.mcranksync.sync.LinkCache;
+import com.mcranksync.sync.ResyncManager;
+import com.mcranksync.sync.RetryQueue;
+import com.mcranksync.sync.SyncStateCache;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -10,6 +20,8 @@ import org.bukkit.entity.Player;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 /**
@@ -18,7 +30,8 @@ import java.util.stream.Collectors;
 public class MCRankSyncCommand implements CommandExecutor, TabCompleter {
 
     private final MCRankSync plugin;
-    private static final List<String> SUB_COMMANDS = Arrays.asList("reload", "link", "unlink", "status");
+    private static final List<String> SUB_COMMANDS = Arrays.asList("reload", "link", "unlink", "status", "metrics", "resync", "audit");
+    private static final List<String> RESYNC_OPTIONS = Arrays.asList("all", "online", "resume", "cancel", "status");
 
     public MCRankSyncCommand(MCRankSync plugin) {
         this.plugin = plugin;
@@ -38,6 +51,9 @@ public class MCRankSyncCommand implements CommandExecutor, TabCompleter {
             case "link" -> handleLink(sender, args);
             case "unlink" -> handleUnlink(sender);
             case "status" -> handleStatus(sender);
+            case "metrics" -> handleMetrics(sender);
+            case "resync" -> handleResync(sender, args);
+            case "audit" -> handleAudit(sender, args);
             default -> sendHelp(sender);
         }
 
@@ -50,7 +66,9 @@ public class MCRankSyncCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        plugin.reloadConfig();
+        plugin.reloadSettings();
+        // Also the way to force join syncs after a mapping change on a bot that doesn't report revisions
+        plugin.getSyncStateCache().invalidateAll();
         sender.sendMessage(plugin.formatMessage("reload-success"));
         plugin.getLogger().info("Configuration reloaded by " + sender.getName());
     }
@@ -77,13 +95,17 @@ public class MCRankSyncCommand implements CommandExecutor, TabCompleter {
                 player.getUniqueId().toString(),
                 player.getName(),
                 linkCode
-        ).thenAccept(response -> {
+        ).thenAcceptAsync(response -> {
             if (response.isSuccess()) {
+                // Make sure the next join pushes the player's ranks to the newly linked account
+                plugin.getSyncStateCache().invalidate(player.getUniqueId());
+                plugin.getGroupChangeDetector().forget(player.getUniqueId());
+                plugin.getLinkCache().put(player.getUniqueId(), true);
                 player.sendMessage(plugin.formatMessage("link-success"));
             } else {
                 player.sendMessage(plugin.formatMessage("link-fail"));
             }
-        });
+        }, plugin.getMainThread());
     }
 
     private void handleUnlink(CommandSender sender) {
@@ -98,13 +120,16 @@ public class MCRankSyncCommand implements CommandExecutor, TabCompleter {
         }
 
         plugin.getApiClient().unlinkAccount(player.getUniqueId().toString())
-                .thenAccept(response -> {
+                .thenAcceptAsync(response -> {
                     if (response.isSuccess()) {
+                        plugin.getSyncStateCache().invalidate(player.getUniqueId());
+                        plugin.getGroupChangeDetector().forget(player.getUniqueId());
+                        plugin.getLinkCache().put(player.getUniqueId(), false);
                         player.sendMessage(plugin.formatMessage("unlink-success"));
                     } else {
                         player.sendMessage(plugin.formatMessage("unlink-fail"));
                     }
-                });
+                }, plugin.getMainThread());
     }
 
     private void handleStatus(CommandSender sender) {
@@ -113,14 +138,152 @@ public class MCRankSyncCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
+        LinkCache.Status cached = plugin.getLinkCache().get(player.getUniqueId());
+        if (cached != LinkCache.Status.UNKNOWN) {
+            sendStatus(player, cached == LinkCache.Status.LINKED);
+            return;
+        }
+
         plugin.getApiClient().checkLinked(player.getUniqueId().toString())
-                .thenAccept(response -> {
-                    if (response.isSuccess() && response.getMessage().contains("\"linked\":true")) {
-                        player.sendMessage(plugin.formatMessage("status-linked"));
-                    } else {
-                        player.sendMessage(plugin.formatMessage("status-not-linked"));
+                .thenAcceptAsync(response -> {
+                    Boolean linked = response.getLinked();
+                    if (response.isSuccess() && linked != null) {
+                        plugin.getLinkCache().put(player.getUniqueId(), linked);
                     }
-                });
+                    sendStatus(player, response.isSuccess() && Boolean.TRUE.equals(linked));
+                }, plugin.getMainThread());
+    }
+
+    private void handleResync(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("mcranksync.admin")) {
+            sender.sendMessage(plugin.formatMessage("no-permission"));
+            return;
+        }
+
+        if (args.length < 2) {
+            sender.sendMessage(MCRankSync.colorize("&cUsage: /mcranksync resync <all|online|player|resume|cancel|status>"));
+            return;
+        }
+
+        ResyncManager resyncManager = plugin.getResyncManager();
+        String option = args[1];
+        boolean started;
+
+        switch (option.toLowerCase()) {
+            case "status" -> {
+                String progress = resyncManager.describe();
+                if (progress == null) {
+                    sender.sendMessage(MCRankSync.colorize(resyncManager.hasCheckpoint()
+                            ? "&7No resync running. An interrupted resync can be resumed with /mcranksync resync resume"
+                            : "&7No resync has run since the server started."));
+                } else {
+                    sender.sendMessage(MCRankSync.colorize("&7Resync " + (resyncManager.isRunning() ? "running" : "finished")
+                            + ": &f" + progress));
+                }
+                return;
+            }
+            case "cancel" -> {
+                sender.sendMessage(MCRankSync.colorize(resyncManager.cancel()
+                        ? "&aCancelling the running resync..."
+                        : "&cNo resync is running."));
+                return;
+            }
+            case "resume" -> {
+                if (!resyncManager.isRunning() && !resyncManager.hasCheckpoint()) {
+                    sender.sendMessage(MCRankSync.colorize("&cThere is no interrupted resync to resume."));
+                    return;
+                }
+                started = resyncManager.resume(sender);
+            }
+            case "all" -> {
+                // Before the sweep starts acknowledging; players it doesn't reach are synced on their next join
+                plugin.getSyncStateCache().invalidateAll();
+                started = resyncManager.startAll(sender);
+            }
+            case "online" -> started = resyncManager.startOnline(sender, plugin.getServer().getOnlinePlayers().stream()
+                    .map(Player::getUniqueId)
+                    .collect(Collectors.toList()));
+            default -> started = resyncManager.startPlayer(sender, option);
+        }
+
+        if (started) {
+            sender.sendMessage(MCRankSync.colorize("&aResync started. Use /mcranksync resync status to check progress."));
+        } else {
+            sender.sendMessage(MCRankSync.colorize("&cA resync is already running. Use /mcranksync resync cancel to stop it."));
+        }
+    }
+
+    private void handleAudit(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("mcranksync.admin")) {
+            sender.sendMessage(plugin.formatMessage("no-permission"));
+            return;
+        }
+
+        DriftAuditor driftAuditor = plugin.getDriftAuditor();
+        if (args.length >= 2 && args[1].equalsIgnoreCase("run")) {
+            if (!driftAuditor.isEnabled()) {
+                sender.sendMessage(MCRankSync.colorize("&cThe drift audit is disabled in the config."));
+            } else if (driftAuditor.requestPass()) {
+                sender.sendMessage(MCRankSync.colorize("&aA drift audit pass will start shortly. Use /mcranksync audit to check progress."));
+            } else {
+                sender.sendMessage(MCRankSync.colorize("&cA drift audit pass is already running."));
+            }
+            return;
+        }
+
+        sender.sendMessage(MCRankSync.colorize("&8&m----------&r &b&lMCRankSync Drift Audit &8&m----------"));
+        for (String line : driftAuditor.describe()) {
+            sender.sendMessage(MCRankSync.colorize("&7" + line));
+        }
+        sender.sendMessage(MCRankSync.colorize("&8&m--------------------------------"));
+    }
+
+    private void handleMetrics(CommandSender sender) {
+        if (!sender.hasPermission("mcranksync.admin")) {
+            sender.sendMessage(plugin.formatMessage("no-permission"));
+            return;
+        }
+
+        ApiClient apiClient = plugin.getApiClient();
+        ApiExecutor executor = apiClient.getExecutor();
+        CircuitBreaker circuitBreaker = apiClient.getCircuitBreaker();
+        RetryQueue retryQueue = plugin.getRetryQueue();
+        SyncStateCache syncStateCache = plugin.getSyncStateCache();
+        LinkCache linkCache = plugin.getLinkCache();
+
+        sender.sendMessage(MCRankSync.colorize("&8&m----------&r &b&lMCRankSync Metrics &8&m----------"));
+        sender.sendMessage(MCRankSync.colorize("&7API executor: &f" + executor.getActiveCount() + " active, "
+                + executor.getQueueDepth() + " queued, " + executor.getRejectedCount() + " rejected"));
+        for (Lane lane : Lane.values()) {
+            sender.sendMessage(MCRankSync.colorize("&7  " + lane.getKey() + ": &f" + executor.getActiveCount(lane) + " active, "
+                    + executor.getQueueDepth(lane) + " queued, p99 wait " + executor.getQueueDelayP99Millis(lane) + " ms"));
+        }
+        if (circuitBreaker != null) {
+            sender.sendMessage(MCRankSync.colorize("&7Circuit breaker: &f" + circuitBreaker.getState()));
+        }
+        for (Map.Entry<String, AdaptiveTimeout> entry : new TreeMap<>(apiClient.getAdaptiveTimeouts()).entrySet()) {
+            AdaptiveTimeout adaptiveTimeout = entry.getValue();
+            sender.sendMessage(MCRankSync.colorize("&7Latency " + entry.getKey() + ": &fp50 " + adaptiveTimeout.getP50Millis()
+                    + " ms, p99 " + adaptiveTimeout.getP99Millis() + " ms, timeout " + adaptiveTimeout.getTimeoutMillis() + " ms"));
+        }
+        sender.sendMessage(MCRankSync.colorize("&7Outbox: &f" + plugin.getRankUpdateOutbox().getPendingCount() + " pending, "
+                + plugin.getRankUpdateOutbox().getCoalescedCount() + " coalesced"));
+        sender.sendMessage(MCRankSync.colorize("&7Batch buffer: &f" + plugin.getSyncDispatcher().getBufferedCount()));
+        sender.sendMessage(MCRankSync.colorize("&7Retry queue: &f" + retryQueue.getDepth() + " queued, oldest "
+                + retryQueue.getOldestAgeMillis() / 1000 + " s"));
+        sender.sendMessage(MCRankSync.colorize("&7Join sync cache: &f" + syncStateCache.getHitCount() + " skipped, "
+                + syncStateCache.getMissCount() + " sent, " + syncStateCache.getSize() + " players"));
+        sender.sendMessage(MCRankSync.colorize("&7Link cache: &f" + linkCache.getHitCount() + " hits, "
+                + linkCache.getMissCount() + " misses, " + linkCache.getSize() + " players"));
+        sender.sendMessage(MCRankSync.colorize("&8&m--------------------------------"));
+    }
+
+    private void sendStatus(Player player, boolean linked) {
+        if (linked) {
+            player.sendMessage(plugin.formatMessage("status-linked"));
+        } else {
+            player.sendMessage(plugin.formatMessage("status-not-linked"));
+        }
     }
 
     private void sendHelp(CommandSender sender) {
@@ -130,6 +293,9 @@ public class MCRankSyncCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(MCRankSync.colorize("&7/mcranksync status &8- &fCheck your link status"));
         if (sender.hasPermission("mcranksync.admin")) {
             sender.sendMessage(MCRankSync.colorize("&7/mcranksync reload &8- &fReload configuration"));
+            sender.sendMessage(MCRankSync.colorize("&7/mcranksync metrics &8- &fShow sync metrics"));
+            sender.sendMessage(MCRankSync.colorize("&7/mcranksync resync <all|online|player> &8- &fResync Discord roles"));
+            sender.sendMessage(MCRankSync.colorize("&7/mcranksync audit [run] &8- &fShow or start the drift audit"));
         }
         sender.sendMessage(MCRankSync.colorize("&8&m--------------------------------"));
     }
@@ -140,13 +306,24 @@ public class MCRankSyncCommand implements CommandExecutor, TabCompleter {
             return SUB_COMMANDS.stream()
                     .filter(s -> s.startsWith(args[0].toLowerCase()))
                     .filter(s -> {
-                        if (s.equals("reload")) {
+                        if (s.equals("reload") || s.equals("metrics") || s.equals("resync")
+                                || s.equals("audit")) {
                             return sender.hasPermission("mcranksync.admin");
                         }
                         return true;
                     })
                     .collect(Collectors.toList());
         }
+        if (args.length == 2 && args[0].equalsIgnoreCase("resync") && sender.hasPermission("mcranksync.admin")) {
+            List<String> options = new ArrayList<>(RESYNC_OPTIONS);
+            plugin.getServer().getOnlinePlayers().forEach(player -> options.add(player.getName()));
+            return options.stream()
+                    .filter(s -> s.toLowerCase().startsWith(args[1].toLowerCase()))
+                    .collect(Collectors.toList());
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("audit") && sender.hasPermission("mcranksync.admin")) {
+            return "run".startsWith(args[1].toLowerCase()) ? List.of("run") : new ArrayList<>();
+        }
         return new ArrayList<>();
     }
 }
@@ -0,0 +1,170 @@
+package com.mcranksync.config;
+
+import com.mcranksync.MCRankSync;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the settings that are read per request or per event.
+ * Built once on enable and replaced as a whole on reload, so hot paths read plain
+ * fields instead of looking up paths in the Bukkit configuration tree.
+ */
+public final class Settings {
+
+    public enum WireFormat {
+        JSON,
+        BINARY
+    }
+
+    private static final String DEFAULT_PREFIX = "&8[&bMCRankSync&8] &r";
+
+    // API
+    private final String apiEndpoint;
+    private final String apiToken;
+    private final int apiTimeoutMillis;
+    private final int apiMaxConnections;
+    private final boolean apiHttp2;
+    private final WireFormat wireFormat;
+    private final int gzipThreshold;
+
+    // Sync
+    private final boolean syncOnJoin;
+    private final boolean syncOnRankChange;
+    private final boolean skipUnchangedJoins;
+    private final boolean includeInheritedGroups;
+    private final boolean respectContexts;
+    private final boolean requireLinked;
+
+    // Network
+    private final boolean originOnly;
+
+    // Logging
+    private final boolean debug;
+    private final boolean logApiCalls;
+
+    // Messages, already prefixed and colorized
+    private final String emptyMessage;
+    private final Map<String, String> messages;
+
+    private Settings(ConfigurationSection config) {
+        this.apiEndpoint = config.getString("api.endpoint", "http://localhost:3000");
+        this.apiToken = config.getString("api.token", "");
+        this.apiTimeoutMillis = config.getInt("api.timeout", 5000);
+        this.apiMaxConnections = config.getInt("api.max-connections", 8);
+        this.apiHttp2 = config.getBoolean("api.http2", false);
+        this.wireFormat = "binary".equalsIgnoreCase(config.getString("api.wire-format", "json"))
+                ? WireFormat.BINARY
+                : WireFormat.JSON;
+        this.gzipThreshold = config.getInt("api.gzip-threshold", 16384);
+
+        this.syncOnJoin = config.getBoolean("sync.on-join", true);
+        this.syncOnRankChange = config.getBoolean("sync.on-rank-change", true);
+        this.skipUnchangedJoins = config.getBoolean("sync.skip-unchanged-joins", true);
+        this.includeInheritedGroups = config.getBoolean("sync.include-inherited-groups", false);
+        this.respectContexts = config.getBoolean("sync.respect-contexts", false);
+        this.requireLinked = config.getBoolean("sync.require-linked", true);
+
+        this.originOnly = config.getBoolean("network.origin-only", false);
+
+        this.debug = config.getBoolean("logging.debug", false);
+        this.logApiCalls = config.getBoolean("logging.log-api-calls", false);
+
+        String prefix = config.getString("messages.prefix", DEFAULT_PREFIX);
+        this.emptyMessage = MCRankSync.colorize(prefix);
+        Map<String, String> formatted = new HashMap<>();
+        ConfigurationSection section = config.getConfigurationSection("messages");
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                formatted.put(key, MCRankSync.colorize(prefix + section.getString(key, "")));
+            }
+        }
+        this.messages = Collections.unmodifiableMap(formatted);
+    }
+
+    /**
+     * Read a snapshot of the given configuration
+     */
+    public static Settings load(ConfigurationSection config) {
+        return new Settings(config);
+    }
+
+    public String getApiEndpoint() {
+        return apiEndpoint;
+    }
+
+    public String getApiToken() {
+        return apiToken;
+    }
+
+    public int getApiTimeoutMillis() {
+        return apiTimeoutMillis;
+    }
+
+    public int getApiMaxConnections() {
+        return apiMaxConnections;
+    }
+
+    public boolean isApiHttp2() {
+        return apiHttp2;
+    }
+
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+
+    /**
+     * Minimum request body size in bytes that is gzipped, 0 to never compress
+     */
+    public int getGzipThreshold() {
+        return gzipThreshold;
+    }
+
+    public boolean isSyncOnJoin() {
+        return syncOnJoin;
+    }
+
+    public boolean isSyncOnRankChange() {
+        return syncOnRankChange;
+    }
+
+    public boolean isSkipUnchangedJoins() {
+        return skipUnchangedJoins;
+    }
+
+    public boolean isIncludeInheritedGroups() {
+        return includeInheritedGroups;
+    }
+
+    public boolean isRespectContexts() {
+        return respectContexts;
+    }
+
+    public boolean isRequireLinked() {
+        return requireLinked;
+    }
+
+    /**
+     * Whether rank changes made on another server of the network are left to that server to sync
+     */
+    public boolean isOriginOnly() {
+        return originOnly;
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+
+    public boolean isLogApiCalls() {
+        return logApiCalls;
+    }
+
+    /**
+     * Prefixed, colorized message for the given key under messages
+     */
+    public String getMessage(String key) {
+        return messages.getOrDefault(key, emptyMessage);
+    }
+}
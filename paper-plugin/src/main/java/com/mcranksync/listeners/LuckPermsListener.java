@@ -1,104 +1,126 @@
 package com.mcranksync.listeners;
 
 import com.mcranksync.MCRankSync;
-import com.mcranksync.models.RankUpdatePayload;
+import com.mcranksync.sync.GroupChangeDetector;
 import net.luckperms.api.event.EventBus;
-import net.luckperms.api.event.node.NodeAddEvent;
-import net.luckperms.api.event.node.NodeRemoveEvent;
+import net.luckperms.api.event.node.NodeMutateEvent;
+import net.luckperms.api.event.sync.PreNetworkSyncEvent;
+import net.luckperms.api.event.sync.SyncType;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import net.luckperms.api.model.group.Group;
 import net.luckperms.api.model.user.User;
+import net.luckperms.api.node.Node;
 import net.luckperms.api.node.types.InheritanceNode;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Listens for LuckPerms group/permission changes and sends updates to the Discord bot
+ * Listens for LuckPerms data changes and hands the affected users to the {@link GroupChangeDetector},
+ * which works out whether their groups actually changed
  */
 public class LuckPermsListener {
 
+    /**
+     * How long after a network sync for a player their recalculation is attributed to another server
+     */
+    private static final long REMOTE_CHANGE_WINDOW_MILLIS = 5000;
+
     private final MCRankSync plugin;
+    private final GroupChangeDetector detector;
+
+    // Players being reloaded because another server changed them, with the end of their window
+    private final Map<UUID, Long> remoteChanges = new ConcurrentHashMap<>();
 
     public LuckPermsListener(MCRankSync plugin) {
         this.plugin = plugin;
+        this.detector = plugin.getGroupChangeDetector();
     }
 
     public void register() {
         EventBus eventBus = plugin.getLuckPerms().getEventBus();
 
-        // Listen for group additions
-        eventBus.subscribe(plugin, NodeAddEvent.class, this::onNodeAdd);
+        // Node changes made on this server, for online and offline users and for groups
+        eventBus.subscribe(plugin, NodeMutateEvent.class, this::onNodeMutate);
 
-        // Listen for group removals
-        eventBus.subscribe(plugin, NodeRemoveEvent.class, this::onNodeRemove);
+        // Recalculations of online users: expiring temporary nodes, parent group edits, network syncs
+        eventBus.subscribe(plugin, UserDataRecalculateEvent.class, this::onUserRecalculate);
+
+        // Track changes arriving from other servers via LuckPerms messaging
+        eventBus.subscribe(plugin, PreNetworkSyncEvent.class, this::onNetworkSync);
 
         plugin.getLogger().info("LuckPerms event listeners registered.");
     }
 
-    private void onNodeAdd(NodeAddEvent event) {
-        if (!plugin.getConfig().getBoolean("sync.on-rank-change", true)) {
+    private void onNodeMutate(NodeMutateEvent event) {
+        if (!plugin.getSettings().isSyncOnRankChange()) {
             return;
         }
 
-        if (!(event.getTarget() instanceof User user)) {
-            return;
-        }
-
-        // Only process inheritance (group) nodes
-        if (!(event.getNode() instanceof InheritanceNode inheritanceNode)) {
-            return;
+        if (event.getTarget() instanceof User user) {
+            // Node mutations only fire on the server the change was made on, so they are always local
+            detector.markDirty(user.getUniqueId(), false);
+        } else if (event.getTarget() instanceof Group group
+                && plugin.getSettings().isIncludeInheritedGroups()
+                && !parents(event.getDataBefore()).equals(parents(event.getDataAfter()))) {
+            // Members of this group and of every group inheriting from it may have new inherited groups
+            detector.onParentsChanged(group);
         }
-
-        String groupName = inheritanceNode.getGroupName();
-        plugin.logDebug("Group added for " + user.getUsername() + ": " + groupName);
-
-        sendRankUpdate(user, "GROUP_ADD");
     }
 
-    private void onNodeRemove(NodeRemoveEvent event) {
-        if (!plugin.getConfig().getBoolean("sync.on-rank-change", true)) {
+    private void onUserRecalculate(UserDataRecalculateEvent event) {
+        if (!plugin.getSettings().isSyncOnRankChange()) {
             return;
         }
 
-        if (!(event.getTarget() instanceof User user)) {
+        // Offline users are recalculated whenever they are loaded, including by the detector itself;
+        // changes to them arrive as node mutations instead
+        UUID uuid = event.getUser().getUniqueId();
+        if (plugin.getServer().getPlayer(uuid) == null) {
             return;
         }
+        detector.markDirty(uuid, isSkippedRemoteChange(uuid));
+    }
 
-        // Only process inheritance (group) nodes
-        if (!(event.getNode() instanceof InheritanceNode inheritanceNode)) {
+    /**
+     * Remember players reloaded for a change made on another server. A full sync (including LuckPerms'
+     * periodic sync-minutes sync) names no player, so recalculations it causes are treated as local.
+     */
+    private void onNetworkSync(PreNetworkSyncEvent event) {
+        if (event.getType() != SyncType.SPECIFIC_USER || event.getSpecificUserUniqueId() == null) {
             return;
         }
+        long now = System.currentTimeMillis();
+        remoteChanges.values().removeIf(expiry -> expiry < now);
+        remoteChanges.put(event.getSpecificUserUniqueId(), now + REMOTE_CHANGE_WINDOW_MILLIS);
+    }
 
-        String groupName = inheritanceNode.getGroupName();
-        plugin.logDebug("Group removed for " + user.getUsername() + ": " + groupName);
+    /**
+     * Whether the user's data is being reloaded because another server changed this user
+     */
+    private boolean isRemoteChange(UUID uuid) {
+        long now = System.currentTimeMillis();
+        Long until = remoteChanges.get(uuid);
+        return until != null && now < until;
+    }
 
-        sendRankUpdate(user, "GROUP_REMOVE");
+    /**
+     * Whether a change should only be recorded because network.origin-only leaves it to the server it was made on
+     */
+    private boolean isSkippedRemoteChange(UUID uuid) {
+        return plugin.getSettings().isOriginOnly() && isRemoteChange(uuid);
     }
 
-    private void sendRankUpdate(User user, String eventType) {
-        // Get all groups for the user
-        List<String> groups = user.getNodes().stream()
-                .filter(node -> node instanceof InheritanceNode)
-                .map(node -> ((InheritanceNode) node).getGroupName())
-                .collect(Collectors.toList());
-
-        String primaryGroup = user.getPrimaryGroup();
-        String playerName = user.getUsername() != null ? user.getUsername() : "Unknown";
-
-        RankUpdatePayload payload = RankUpdatePayload.builder()
-                .uuid(user.getUniqueId().toString())
-                .playerName(playerName)
-                .primaryGroup(primaryGroup)
-                .groups(groups)
-                .eventType(eventType)
-                .build();
-
-        plugin.getApiClient().sendRankUpdate(payload)
-                .thenAccept(response -> {
-                    if (response.isSuccess()) {
-                        plugin.logDebug("Rank update sent successfully for " + playerName);
-                    } else {
-                        plugin.getLogger().warning("Failed to send rank update for " + playerName + ": " + response.getMessage());
-                    }
-                });
+    private static Set<String> parents(Set<Node> nodes) {
+        Set<String> parents = new HashSet<>();
+        for (Node node : nodes) {
+            if (node instanceof InheritanceNode inheritanceNode && node.getValue()) {
+                parents.add(inheritanceNode.getGroupName());
+            }
+        }
+        return parents;
     }
 }
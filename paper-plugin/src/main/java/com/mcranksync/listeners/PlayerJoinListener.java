@@ -1,74 +1,133 @@
 package com.mcranksync.listeners;
 
 import com.mcranksync.MCRankSync;
+import com.mcranksync.api.Lane;
+import com.mcranksync.config.Settings;
+import com.mcranksync.metrics.Counter;
+import com.mcranksync.models.GroupSet;
 import com.mcranksync.models.RankUpdatePayload;
+import com.mcranksync.sync.GroupResolver;
+import com.mcranksync.sync.LinkCache;
+import com.mcranksync.sync.UpdateVersioner;
 import net.luckperms.api.model.user.User;
-import net.luckperms.api.node.types.InheritanceNode;
+import net.luckperms.api.model.user.UserManager;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
 /**
- * Listens for player join events and sends rank data to the Discord bot
+ * Listens for player join events and sends rank data to the Discord bot,
+ * and forgets per-player sync state once players quit
  */
 public class PlayerJoinListener implements Listener {
 
     private final MCRankSync plugin;
+    private final Counter joins;
 
     public PlayerJoinListener(MCRankSync plugin) {
         this.plugin = plugin;
+        this.joins = plugin.getMetrics().counter("mcranksync_player_joins_total",
+                "Player joins handled for syncing");
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerJoin(PlayerJoinEvent event) {
-        if (!plugin.getConfig().getBoolean("sync.on-join", true)) {
+        if (!plugin.getSettings().isSyncOnJoin()) {
             return;
         }
 
+        joins.increment();
+        // Read everything needed from the player here; the rest may run on a LuckPerms or API thread
         Player player = event.getPlayer();
+        UUID uuid = player.getUniqueId();
+        String playerName = player.getName();
+        UserManager userManager = plugin.getLuckPerms().getUserManager();
 
-        // Use async to get LuckPerms data
-        plugin.getLuckPerms().getUserManager().loadUser(player.getUniqueId())
+        // LuckPerms loads online users during login, so this is normally a cache hit
+        User cachedUser = userManager.getUser(uuid);
+        if (cachedUser != null) {
+            sendJoinUpdate(uuid, playerName, cachedUser);
+            return;
+        }
+
+        // Fall back to loading the user from storage asynchronously
+        userManager.loadUser(uuid)
                 .thenAccept(user -> {
                     if (user == null) {
-                        plugin.logDebug("Could not load LuckPerms user for " + player.getName());
+                        plugin.logDebug(() -> "Could not load LuckPerms user for " + playerName);
                         return;
                     }
 
-                    sendJoinUpdate(player, user);
+                    sendJoinUpdate(uuid, playerName, user);
                 });
     }
 
-    private void sendJoinUpdate(Player player, User user) {
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        // Later changes for offline players are compared with the state the bot acknowledged
+        plugin.getGroupChangeDetector().forget(event.getPlayer().getUniqueId());
+    }
+
+    private void sendJoinUpdate(UUID uuid, String playerName, User user) {
         // Get all groups for the user
-        List<String> groups = user.getNodes().stream()
-                .filter(node -> node instanceof InheritanceNode)
-                .map(node -> ((InheritanceNode) node).getGroupName())
-                .collect(Collectors.toList());
+        Settings settings = plugin.getSettings();
+        List<String> groups = GroupResolver.resolveGroups(user,
+                settings.isIncludeInheritedGroups(), settings.isRespectContexts());
 
-        String primaryGroup = user.getPrimaryGroup();
+        GroupSet groupSet = plugin.getGroupSets().intern(user.getPrimaryGroup(), groups);
+
+        if (settings.isSkipUnchangedJoins()) {
+            if (!plugin.getSyncStateCache().needsSync(uuid, groupSet.getFingerprint())) {
+                plugin.logDebug(() -> "Skipping join sync for " + playerName + ", groups unchanged since last sync");
+                refreshLinkStatus(uuid);
+                return;
+            }
+        }
 
+        UpdateVersioner versioner = plugin.getUpdateVersioner();
         RankUpdatePayload payload = RankUpdatePayload.builder()
-                .uuid(player.getUniqueId().toString())
-                .playerName(player.getName())
-                .primaryGroup(primaryGroup)
-                .groups(groups)
+                .uuid(uuid.toString())
+                .playerName(playerName)
+                .groupSet(groupSet)
                 .eventType("PLAYER_JOIN")
+                .serverId(versioner.getServerId())
+                .version(versioner.nextVersion())
                 .build();
 
-        plugin.logDebug("Sending player join event for " + player.getName() + " with groups: " + groups);
+        plugin.logDebug(() -> "Sending player join event for " + playerName + " with groups: " + groups);
 
-        plugin.getApiClient().sendPlayerJoin(payload)
+        plugin.getSyncDispatcher().submit(payload)
                 .thenAccept(response -> {
                     if (response.isSuccess()) {
-                        plugin.logDebug("Player join event sent successfully for " + player.getName());
+                        plugin.logDebug(() -> "Player join event sent successfully for " + playerName);
                     } else {
-                        plugin.getLogger().warning("Failed to send player join event for " + player.getName() + ": " + response.getMessage());
+                        plugin.getLogger().warning("Failed to send player join event for " + playerName + ": " + response.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Populate the link cache for a player whose join sync was skipped
+     */
+    private void refreshLinkStatus(UUID uuid) {
+        LinkCache linkCache = plugin.getLinkCache();
+        if (linkCache.get(uuid) != LinkCache.Status.UNKNOWN) {
+            return;
+        }
+
+        plugin.getApiClient().checkLinked(uuid.toString(), Lane.JOIN)
+                .thenAccept(response -> {
+                    Boolean linked = response.getLinked();
+                    if (response.isSuccess() && linked != null) {
+                        linkCache.put(uuid, linked);
+                        // A skipped join still learns about rank mapping changes on the bot
+                        plugin.getSyncStateCache().observeMappingRevision(response.getMappingRevision());
                     }
                 });
     }
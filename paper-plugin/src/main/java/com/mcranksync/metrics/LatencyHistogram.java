@@ -0,0 +1,76 @@
+package com.mcranksync.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram in milliseconds.
+ * Recording only increments pre-allocated LongAdders, so it never allocates.
+ */
+public final class LatencyHistogram {
+
+    static final long[] BUCKETS_MILLIS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    // One extra slot for values above the largest bucket (+Inf)
+    private final LongAdder[] counts = new LongAdder[BUCKETS_MILLIS.length + 1];
+    private final LongAdder sum = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long millis) {
+        int index = 0;
+        while (index < BUCKETS_MILLIS.length && millis > BUCKETS_MILLIS[index]) {
+            index++;
+        }
+        counts[index].increment();
+        sum.add(millis);
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (LongAdder count : counts) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    public long getSumMillis() {
+        return sum.sum();
+    }
+
+    /**
+     * Upper bound of the bucket containing the given quantile (0..1), or 0 if empty.
+     * Values above the largest bucket are reported as that bucket's bound.
+     */
+    public long getPercentile(double quantile) {
+        long[] snapshot = snapshot();
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(total * quantile);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS_MILLIS.length; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= target) {
+                return BUCKETS_MILLIS[i];
+            }
+        }
+        return BUCKETS_MILLIS[BUCKETS_MILLIS.length - 1];
+    }
+
+    long[] snapshot() {
+        long[] snapshot = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            snapshot[i] = counts[i].sum();
+        }
+        return snapshot;
+    }
+}
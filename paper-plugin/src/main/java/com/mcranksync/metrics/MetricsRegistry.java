@@ -0,0 +1,194 @@
+package com.mcranksync.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the plugin's counters, gauges and latency histograms.
+ * Components register their metrics once and keep the returned objects, so
+ * recording on the hot path is a plain LongAdder update.
+ */
+public class MetricsRegistry {
+
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+    private final List<Metric> ordered = new ArrayList<>();
+
+    /**
+     * Register (or look up) a counter
+     *
+     * @param labels alternating label names and values, e.g. "endpoint", "/api/link"
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return register(name, help, labels, Type.COUNTER, null).counter;
+    }
+
+    /**
+     * Register a counter kept by its component, e.g. in a LongAdder, whose value is read when
+     * metrics are rendered. The value must never decrease.
+     */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        register(name, help, labels, Type.COUNTER, value);
+    }
+
+    /**
+     * Register (or look up) a latency histogram in milliseconds
+     */
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return register(name, help, labels, Type.HISTOGRAM, null).histogram;
+    }
+
+    /**
+     * Register a gauge whose value is read when metrics are rendered
+     */
+    public void gauge(String name, String help, LongSupplier value, String... labels) {
+        register(name, help, labels, Type.GAUGE, value);
+    }
+
+    /**
+     * Current value of a counter or gauge, or 0 if it is not registered
+     */
+    public long getValue(String name, String... labels) {
+        Metric metric = metrics.get(key(name, renderLabels(labels)));
+        if (metric == null) {
+            return 0;
+        }
+        return switch (metric.type) {
+            case COUNTER, GAUGE -> metric.value();
+            case HISTOGRAM -> metric.histogram.getCount();
+        };
+    }
+
+    /**
+     * Render every metric in the Prometheus text exposition format
+     */
+    public String renderPrometheus() {
+        List<Metric> snapshot;
+        synchronized (ordered) {
+            snapshot = new ArrayList<>(ordered);
+        }
+
+        StringBuilder out = new StringBuilder();
+        String lastName = null;
+        for (Metric metric : snapshot) {
+            if (!metric.name.equals(lastName)) {
+                out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+                out.append("# TYPE ").append(metric.name).append(' ').append(metric.type.name().toLowerCase(Locale.ROOT)).append('\n');
+                lastName = metric.name;
+            }
+
+            switch (metric.type) {
+                case COUNTER, GAUGE -> appendSample(out, metric.name, metric.labels, metric.value());
+                case HISTOGRAM -> appendHistogram(out, metric);
+            }
+        }
+        return out.toString();
+    }
+
+    private void appendHistogram(StringBuilder out, Metric metric) {
+        long[] counts = metric.histogram.snapshot();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            String le = i < LatencyHistogram.BUCKETS_MILLIS.length
+                    ? String.valueOf(LatencyHistogram.BUCKETS_MILLIS[i])
+                    : "+Inf";
+            String labels = metric.labels.isEmpty() ? "le=\"" + le + "\"" : metric.labels + ",le=\"" + le + "\"";
+            appendSample(out, metric.name + "_bucket", labels, cumulative);
+        }
+        appendSample(out, metric.name + "_sum", metric.labels, metric.histogram.getSumMillis());
+        appendSample(out, metric.name + "_count", metric.labels, cumulative);
+    }
+
+    private static void appendSample(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private Metric register(String name, String help, String[] labels, Type type, LongSupplier supplier) {
+        String renderedLabels = renderLabels(labels);
+        String key = key(name, renderedLabels);
+
+        Metric existing = metrics.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        synchronized (ordered) {
+            existing = metrics.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            Metric metric = new Metric(name, help, renderedLabels, type, supplier);
+            metrics.put(key, metric);
+
+            // Keep samples of the same metric name together for the text format
+            int insertAt = ordered.size();
+            for (int i = ordered.size() - 1; i >= 0; i--) {
+                if (ordered.get(i).name.equals(name)) {
+                    insertAt = i + 1;
+                    break;
+                }
+            }
+            ordered.add(insertAt, metric);
+            return metric;
+        }
+    }
+
+    private static String key(String name, String renderedLabels) {
+        return name + '{' + renderedLabels + '}';
+    }
+
+    private static String renderLabels(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (out.length() > 0) {
+                out.append(',');
+            }
+            out.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\""))
+                    .append('"');
+        }
+        return out.toString();
+    }
+
+    private enum Type {
+        COUNTER,
+        GAUGE,
+        HISTOGRAM
+    }
+
+    private static class Metric {
+        final String name;
+        final String help;
+        final String labels;
+        final Type type;
+        final Counter counter;
+        final LatencyHistogram histogram;
+        // Source of a gauge's value, or of a counter kept by its component
+        final LongSupplier supplier;
+
+        Metric(String name, String help, String labels, Type type, LongSupplier supplier) {
+            this.name = name;
+            this.help = help;
+            this.labels = labels;
+            this.type = type;
+            this.counter = type == Type.COUNTER && supplier == null ? new Counter() : null;
+            this.histogram = type == Type.HISTOGRAM ? new LatencyHistogram() : null;
+            this.supplier = supplier;
+        }
+
+        long value() {
+            return counter != null ? counter.get() : supplier.getAsLong();
+        }
+    }
+}
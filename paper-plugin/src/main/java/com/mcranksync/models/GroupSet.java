@@ -0,0 +1,126 @@
+package com.mcranksync.models;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Canonical, immutable primary group and group list shared by every player with the same groups.
+ * The JSON for both fields is encoded once, so payloads built from a set only splice it in.
+ * Instances come from the group set registry; see {@code com.mcranksync.sync.GroupSetRegistry}.
+ */
+public final class GroupSet {
+
+    private final String primaryGroup;
+    private final List<String> groups;
+    private final int hash;
+    private final long fingerprint;
+    private final byte[] json;
+
+    /**
+     * @param fingerprint the sync state fingerprint of these groups, kept so it is only computed once
+     */
+    public GroupSet(String primaryGroup, Collection<String> groups, long fingerprint) {
+        this.primaryGroup = primaryGroup;
+        this.groups = normalize(groups);
+        this.hash = hash(primaryGroup, this.groups);
+        this.fingerprint = fingerprint;
+        this.json = RankUpdateJson.groupsFragment(primaryGroup, this.groups);
+    }
+
+    public String getPrimaryGroup() {
+        return primaryGroup;
+    }
+
+    /**
+     * Group names, sorted and without duplicates
+     */
+    public List<String> getGroups() {
+        return groups;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public boolean contains(String group) {
+        return Collections.binarySearch(groups, group) >= 0;
+    }
+
+    /**
+     * Whether this set holds exactly the given primary group and groups, in any order
+     */
+    public boolean matches(String primaryGroup, Collection<String> groups) {
+        if (!Objects.equals(this.primaryGroup, primaryGroup)) {
+            return false;
+        }
+        int size = groups == null ? 0 : groups.size();
+        if (size != this.groups.size()) {
+            return false;
+        }
+        if (groups != null) {
+            for (String group : groups) {
+                if (!contains(group)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encoded {@code "primaryGroup":...,"groups":[...]} fragment, without surrounding commas
+     */
+    byte[] getJson() {
+        return json;
+    }
+
+    /**
+     * Group names sorted and without duplicates, the form every group set holds.
+     * Groups granted in several contexts are resolved once per context, so raw lists can repeat a name.
+     */
+    public static List<String> normalize(Collection<String> groups) {
+        return groups == null || groups.isEmpty()
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(groups)));
+    }
+
+    /**
+     * Hash of a primary group and groups that does not depend on the order of the groups
+     */
+    public static int hash(String primaryGroup, Collection<String> groups) {
+        int sum = 0;
+        if (groups != null) {
+            for (String group : groups) {
+                sum += mix(group.hashCode());
+            }
+        }
+        return (primaryGroup == null ? 0 : primaryGroup.hashCode()) * 31 + sum;
+    }
+
+    private static int mix(int value) {
+        value ^= value >>> 16;
+        value *= 0x85EBCA6B;
+        value ^= value >>> 13;
+        value *= 0xC2B2AE35;
+        return value ^ (value >>> 16);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof GroupSet set && hash == set.hash && set.matches(primaryGroup, groups);
+    }
+
+    @Override
+    public String toString() {
+        return primaryGroup + " " + groups;
+    }
+}
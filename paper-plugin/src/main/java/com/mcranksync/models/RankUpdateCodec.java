@@ -0,0 +1,272 @@
+package com.mcranksync.models;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of a batch of {@link RankUpdatePayload}s, an alternative to JSON
+ * for large batches. Layout (all integers are unsigned LEB128 varints unless noted):
+ * <pre>
+ * magic "MRSB" (4 bytes), version (1 byte)
+ * string count, then each string as byte length + UTF-8 bytes
+ * base timestamp, update count, then per update:
+ *   UUID as two big-endian longs (16 bytes)
+ *   player name as byte length + UTF-8 bytes
+ *   event type string index
+ *   primary group string index + 1 (0 = none)
+ *   group count, then a string index per group
+ *   timestamp - base timestamp
+ *   server ID string index + 1 (0 = none), version
+ * </pre>
+ * Group, event type and server ID strings are written once per batch in the string table and referenced by index.
+ */
+public final class RankUpdateCodec {
+
+    public static final String CONTENT_TYPE = "application/x-mcranksync-batch";
+
+    private static final int MAGIC = 0x4D525342; // "MRSB"
+    private static final int VERSION = 2;
+
+    private RankUpdateCodec() {
+    }
+
+    public static byte[] encode(List<RankUpdatePayload> payloads) {
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        long baseTimestamp = Long.MAX_VALUE;
+        for (RankUpdatePayload payload : payloads) {
+            intern(indexes, strings, payload.getEventType() == null ? "" : payload.getEventType());
+            if (payload.getPrimaryGroup() != null) {
+                intern(indexes, strings, payload.getPrimaryGroup());
+            }
+            if (payload.getGroups() != null) {
+                for (String group : payload.getGroups()) {
+                    intern(indexes, strings, group);
+                }
+            }
+            if (payload.getServerId() != null) {
+                intern(indexes, strings, payload.getServerId());
+            }
+            baseTimestamp = Math.min(baseTimestamp, payload.getTimestamp());
+        }
+        if (payloads.isEmpty()) {
+            baseTimestamp = 0;
+        }
+
+        Writer out = new Writer(64 + payloads.size() * 48);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeVarLong(strings.size());
+        for (String string : strings) {
+            out.writeString(string);
+        }
+
+        out.writeVarLong(baseTimestamp);
+        out.writeVarLong(payloads.size());
+        for (RankUpdatePayload payload : payloads) {
+            UUID uuid = UUID.fromString(payload.getUuid());
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+            out.writeString(payload.getPlayerName() == null ? "" : payload.getPlayerName());
+            out.writeVarLong(indexes.get(payload.getEventType() == null ? "" : payload.getEventType()));
+            out.writeVarLong(payload.getPrimaryGroup() == null ? 0 : indexes.get(payload.getPrimaryGroup()) + 1);
+
+            List<String> groups = payload.getGroups();
+            int groupCount = groups == null ? 0 : groups.size();
+            out.writeVarLong(groupCount);
+            for (int i = 0; i < groupCount; i++) {
+                out.writeVarLong(indexes.get(groups.get(i)));
+            }
+            out.writeVarLong(payload.getTimestamp() - baseTimestamp);
+            out.writeVarLong(payload.getServerId() == null ? 0 : indexes.get(payload.getServerId()) + 1);
+            out.writeVarLong(payload.getVersion());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the data is not a valid encoded batch
+     */
+    public static List<RankUpdatePayload> decode(byte[] data) {
+        Reader in = new Reader(data);
+        if (in.readInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a rank update batch");
+        }
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported batch version " + version);
+        }
+
+        String[] strings = new String[in.readCount()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readString();
+        }
+
+        long baseTimestamp = in.readVarLong();
+        int count = in.readCount();
+        List<RankUpdatePayload> payloads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            RankUpdatePayload payload = new RankUpdatePayload();
+            payload.setUuid(new UUID(in.readLong(), in.readLong()).toString());
+            payload.setPlayerName(in.readString());
+            payload.setEventType(lookup(strings, in.readVarLong()));
+            long primaryGroup = in.readVarLong();
+            payload.setPrimaryGroup(primaryGroup == 0 ? null : lookup(strings, primaryGroup - 1));
+
+            int groupCount = in.readCount();
+            List<String> groups = new ArrayList<>(groupCount);
+            for (int g = 0; g < groupCount; g++) {
+                groups.add(lookup(strings, in.readVarLong()));
+            }
+            payload.setGroups(groups);
+            payload.setTimestamp(baseTimestamp + in.readVarLong());
+            long serverId = in.readVarLong();
+            payload.setServerId(serverId == 0 ? null : lookup(strings, serverId - 1));
+            payload.setVersion(in.readVarLong());
+            payloads.add(payload);
+        }
+        return payloads;
+    }
+
+    private static void intern(Map<String, Integer> indexes, List<String> strings, String value) {
+        if (!indexes.containsKey(value)) {
+            indexes.put(value, strings.size());
+            strings.add(value);
+        }
+    }
+
+    private static String lookup(String[] strings, long index) {
+        if (index < 0 || index >= strings.length) {
+            throw new IllegalArgumentException("String index " + index + " out of range");
+        }
+        return strings[(int) index];
+    }
+
+    private static final class Writer {
+        private byte[] buffer;
+        private int size;
+
+        Writer(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        int readByte() {
+            require(1);
+            return data[position++] & 0xFF;
+        }
+
+        int readInt() {
+            require(4);
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (data[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        long readLong() {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (data[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        /**
+         * A length or element count, checked against the remaining bytes so corrupt input can't allocate huge arrays
+         */
+        int readCount() {
+            long count = readVarLong();
+            if (count < 0 || count > data.length - position) {
+                throw new IllegalArgumentException("Invalid length " + count);
+            }
+            return (int) count;
+        }
+
+        String readString() {
+            int length = readCount();
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private void require(int bytes) {
+            if (position + bytes > data.length) {
+                throw new IllegalArgumentException("Unexpected end of batch");
+            }
+        }
+    }
+}
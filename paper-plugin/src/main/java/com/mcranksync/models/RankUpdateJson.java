@@ -0,0 +1,204 @@
+package com.mcranksync.models;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JSON encoding of rank update payloads, producing the same fields as Gson.
+ * Payloads built from a {@link GroupSet} reuse its pre-encoded groups, so encoding one is
+ * mostly copying the UUID, name and event type around a cached fragment.
+ */
+public final class RankUpdateJson {
+
+    public static final String CONTENT_TYPE = "application/json";
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private RankUpdateJson() {
+    }
+
+    public static byte[] encode(RankUpdatePayload payload) {
+        Buffer out = new Buffer(256);
+        write(out, payload);
+        return out.toByteArray();
+    }
+
+    /**
+     * Body of a batch request: {"updates":[...]}
+     */
+    public static byte[] encodeBatch(List<RankUpdatePayload> payloads) {
+        Buffer out = new Buffer(32 + payloads.size() * 256);
+        out.ascii("{\"updates\":[");
+        for (int i = 0; i < payloads.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            write(out, payloads.get(i));
+        }
+        out.ascii("]}");
+        return out.toByteArray();
+    }
+
+    /**
+     * The primary group and groups fields, as cached by {@link GroupSet}
+     */
+    static byte[] groupsFragment(String primaryGroup, Collection<String> groups) {
+        Buffer out = new Buffer(64);
+        writeGroups(out, primaryGroup, groups);
+        return out.toByteArray();
+    }
+
+    private static void write(Buffer out, RankUpdatePayload payload) {
+        out.write('{');
+        boolean first = true;
+        first = field(out, first, "uuid", payload.getUuid());
+        first = field(out, first, "playerName", payload.getPlayerName());
+
+        GroupSet groupSet = payload.getGroupSet();
+        byte[] groups = groupSet != null
+                ? groupSet.getJson()
+                : groupsFragment(payload.getPrimaryGroup(), payload.getGroups());
+        if (groups.length > 0) {
+            if (!first) {
+                out.write(',');
+            }
+            out.write(groups);
+            first = false;
+        }
+
+        first = field(out, first, "eventType", payload.getEventType());
+        if (!first) {
+            out.write(',');
+        }
+        out.ascii("\"timestamp\":").ascii(Long.toString(payload.getTimestamp()));
+        field(out, false, "serverId", payload.getServerId());
+        out.ascii(",\"version\":").ascii(Long.toString(payload.getVersion()));
+        out.write('}');
+    }
+
+    private static void writeGroups(Buffer out, String primaryGroup, Collection<String> groups) {
+        boolean first = field(out, true, "primaryGroup", primaryGroup);
+        if (groups == null) {
+            return;
+        }
+        if (!first) {
+            out.write(',');
+        }
+        out.ascii("\"groups\":[");
+        boolean firstGroup = true;
+        for (String group : groups) {
+            if (!firstGroup) {
+                out.write(',');
+            }
+            string(out, group);
+            firstGroup = false;
+        }
+        out.write(']');
+    }
+
+    /**
+     * Write a string field unless the value is null, like Gson does by default
+     *
+     * @return whether nothing has been written to the object yet
+     */
+    private static boolean field(Buffer out, boolean first, String name, String value) {
+        if (value == null) {
+            return first;
+        }
+        if (!first) {
+            out.write(',');
+        }
+        out.write('"');
+        out.ascii(name);
+        out.ascii("\":");
+        string(out, value);
+        return false;
+    }
+
+    private static void string(Buffer out, String value) {
+        if (value == null) {
+            out.ascii("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.ascii("\\u00");
+                out.write(HEX[c >> 4]);
+                out.write(HEX[c & 0xF]);
+            } else if (c < 0x80) {
+                out.write(c);
+            } else {
+                // Rare outside player names: encode the remainder as UTF-8 in one go
+                escapeRemainder(out, value.substring(i));
+                break;
+            }
+        }
+        out.write('"');
+    }
+
+    private static void escapeRemainder(Buffer out, String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        out.write(escaped.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Growable byte array, like ByteArrayOutputStream without the synchronization
+     */
+    private static final class Buffer {
+        private byte[] bytes;
+        private int size;
+
+        Buffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void write(int value) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void write(byte[] value) {
+            ensureCapacity(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        /**
+         * Append a string known to be ASCII without escaping
+         */
+        Buffer ascii(String value) {
+            ensureCapacity(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                bytes[size++] = (byte) value.charAt(i);
+            }
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
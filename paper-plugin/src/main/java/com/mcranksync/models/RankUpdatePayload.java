@@ -13,6 +13,9 @@ public class RankUpdatePayload {
     private List<String> groups;
     private String eventType;
     private long timestamp;
+    private String serverId;
+    private long version;
+    private transient GroupSet groupSet;
 
     public RankUpdatePayload() {
         this.timestamp = System.currentTimeMillis();
@@ -40,6 +43,7 @@ public class RankUpdatePayload {
 
     public void setPrimaryGroup(String primaryGroup) {
         this.primaryGroup = primaryGroup;
+        this.groupSet = null;
     }
 
     public List<String> getGroups() {
@@ -48,6 +52,7 @@ public class RankUpdatePayload {
 
     public void setGroups(List<String> groups) {
         this.groups = groups;
+        this.groupSet = null;
     }
 
     public String getEventType() {
@@ -66,6 +71,43 @@ public class RankUpdatePayload {
         this.timestamp = timestamp;
     }
 
+    /**
+     * ID of the server that built this payload
+     */
+    public String getServerId() {
+        return serverId;
+    }
+
+    public void setServerId(String serverId) {
+        this.serverId = serverId;
+    }
+
+    /**
+     * Version of the player's rank state, increasing with every payload built on this server.
+     * The bot ignores payloads older than the last one it applied if they carry the same groups.
+     * 0 if not versioned.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Interned group set this payload's primary group and groups came from, or null if they were set directly
+     */
+    public GroupSet getGroupSet() {
+        return groupSet;
+    }
+
+    public void setGroupSet(GroupSet groupSet) {
+        this.primaryGroup = groupSet.getPrimaryGroup();
+        this.groups = groupSet.getGroups();
+        this.groupSet = groupSet;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -93,11 +135,26 @@ public class RankUpdatePayload {
             return this;
         }
 
+        public Builder groupSet(GroupSet groupSet) {
+            payload.setGroupSet(groupSet);
+            return this;
+        }
+
         public Builder eventType(String eventType) {
             payload.setEventType(eventType);
             return this;
         }
 
+        public Builder serverId(String serverId) {
+            payload.setServerId(serverId);
+            return this;
+        }
+
+        public Builder version(long version) {
+            payload.setVersion(version);
+            return this;
+        }
+
         public RankUpdatePayload build() {
             return payload;
         }
@@ -0,0 +1,547 @@
+package com.mcranksync.sync;
+
+import com.mcranksync.MCRankSync;
+import com.mcranksync.api.ApiResponse;
+import com.mcranksync.config.Settings;
+import com.mcranksync.models.GroupSet;
+import com.mcranksync.models.RankUpdatePayload;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds players whose roles on Discord no longer match their LuckPerms groups, and resyncs them.
+ * <p>
+ * The bot hashes the groups it last applied for each linked player and XORs the hashes per UUID
+ * range. A pass fetches those range hashes in one request and compares each range against the
+ * same hash computed from LuckPerms; only ranges that differ are fetched player by player.
+ * Each range's players are remembered from the last time it was fetched, so an unchanged range
+ * costs no request at all. Passes run in small slices on a low priority thread, limited to
+ * players-per-slice users per slice and requests-per-minute requests to the bot.
+ * <p>
+ * Drifted players are queued and resynced at most resyncs-per-slice per slice, each resync taking
+ * a request from the same budget; the rest wait for later slices, and no new pass starts until the
+ * queue is empty.
+ */
+public class DriftAuditor {
+
+    /**
+     * Number of UUID ranges the digest is split into
+     */
+    static final int DIGEST_RANGES = 64;
+
+    private static final long RATE_LIMIT_PAUSE_MILLIS = 60_000;
+
+    private final MCRankSync plugin;
+    private final boolean enabled;
+    private final long passIntervalMillis;
+    private final long sliceIntervalMillis;
+    private final int playersPerSlice;
+    private final boolean resync;
+    private final int resyncsPerSlice;
+    private final TokenBucket requests;
+    private final ScheduledExecutorService scheduler;
+    private final MessageDigest sha256;
+
+    /**
+     * Players of each range as of the last time it was fetched. Only used by the audit thread.
+     */
+    private final Range[] ranges = new Range[DIGEST_RANGES];
+    private long nextPassAt;
+    private boolean unsupportedWarned;
+
+    /**
+     * Drifted players waiting for the request budget, found by resyncPass
+     */
+    private final Queue<UUID> pendingResyncs = new ConcurrentLinkedQueue<>();
+    private Pass resyncPass;
+
+    private volatile Pass current;
+    private volatile Pass last;
+    private volatile boolean runRequested;
+    private volatile String problem;
+
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder playersChecked = new LongAdder();
+    private final LongAdder playersDrifted = new LongAdder();
+    private final LongAdder playersResynced = new LongAdder();
+
+    public DriftAuditor(MCRankSync plugin) {
+        this.plugin = plugin;
+        this.enabled = plugin.getConfig().getBoolean("audit.enabled", true);
+        this.passIntervalMillis = Math.max(60, plugin.getConfig().getLong("audit.pass-interval", 900)) * 1000L;
+        this.sliceIntervalMillis = Math.max(1, plugin.getConfig().getLong("audit.slice-interval", 5)) * 1000L;
+        this.playersPerSlice = Math.max(1, plugin.getConfig().getInt("audit.players-per-slice", 200));
+        this.resync = plugin.getConfig().getBoolean("audit.resync", true);
+        this.resyncsPerSlice = Math.max(1, plugin.getConfig().getInt("audit.resyncs-per-slice", 10));
+        double requestsPerMinute = Math.max(0.1, plugin.getConfig().getDouble("audit.requests-per-minute", 2));
+        this.requests = new TokenBucket(1, requestsPerMinute / 60.0);
+        this.sha256 = newSha256();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MCRankSync-Audit");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::slice, sliceIntervalMillis, sliceIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Start a pass with the next slice instead of waiting for the pass interval
+     *
+     * @return false if auditing is disabled or a pass is already running
+     */
+    public boolean requestPass() {
+        if (!enabled || current != null) {
+            return false;
+        }
+        runRequested = true;
+        return true;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Human readable state of the running and last pass, one entry per line
+     */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        if (!enabled) {
+            lines.add("Drift audit is disabled (audit.enabled).");
+            return lines;
+        }
+
+        Pass pass = current;
+        if (pass != null) {
+            lines.add("Pass in progress: " + pass.cursor + "/" + DIGEST_RANGES + " ranges, " + describe(pass)
+                    + ", " + elapsedSeconds(pass.startedAt) + "s elapsed");
+        }
+        Pass previous = last;
+        if (previous != null) {
+            lines.add("Last pass: " + describe(previous) + ", took "
+                    + (previous.finishedAt - previous.startedAt) / 1000 + "s, finished "
+                    + elapsedSeconds(previous.finishedAt) / 60 + "m ago");
+        } else if (pass == null) {
+            lines.add("No pass has completed yet.");
+        }
+        int waiting = pendingResyncs.size();
+        if (waiting > 0) {
+            lines.add(waiting + " drifted player(s) waiting to be resynced");
+        }
+        lines.add("Since startup: " + getPassCount() + " passes, " + getPlayersCheckedCount() + " checked, "
+                + getPlayersDriftedCount() + " drifted, " + getPlayersResyncedCount() + " resynced");
+        String lastProblem = problem;
+        if (lastProblem != null) {
+            lines.add("Last problem: " + lastProblem);
+        }
+        return lines;
+    }
+
+    /**
+     * Players found out of sync by the last completed pass, -1 before the first pass
+     */
+    public int getLastPassDriftedCount() {
+        Pass previous = last;
+        return previous != null ? previous.drifted : -1;
+    }
+
+    public long getPassCount() {
+        return passes.sum();
+    }
+
+    public long getPlayersCheckedCount() {
+        return playersChecked.sum();
+    }
+
+    public long getPlayersDriftedCount() {
+        return playersDrifted.sum();
+    }
+
+    public long getPlayersResyncedCount() {
+        return playersResynced.sum();
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void slice() {
+        try {
+            // A full resync repairs everything anyway and needs the request budget more
+            if (plugin.getResyncManager().isRunning()) {
+                return;
+            }
+            // Repairs come before finding more drift; the rest of the queue waits for the next slice
+            if (!pendingResyncs.isEmpty() && !resyncPending()) {
+                return;
+            }
+            Pass pass = current;
+            if (pass == null) {
+                if (!runRequested && System.currentTimeMillis() < nextPassAt) {
+                    return;
+                }
+                pass = startPass();
+                if (pass == null) {
+                    return;
+                }
+            }
+            auditSlice(pass);
+        } catch (RuntimeException e) {
+            plugin.logError("Drift audit failed", e);
+        }
+    }
+
+    private Pass startPass() {
+        if (!plugin.getApiClient().isAvailable() || requests.tryAcquire() > 0) {
+            return null;
+        }
+        ApiResponse response = plugin.getApiClient().getSyncDigest(DIGEST_RANGES).join();
+        if (!accepted(response)) {
+            return null;
+        }
+        plugin.getSyncStateCache().observeMappingRevision(response.getMappingRevision());
+        List<String> digest = response.getDigest();
+        if (digest == null || digest.size() != DIGEST_RANGES) {
+            failed("Discord bot sent a digest with " + (digest == null ? 0 : digest.size()) + " ranges");
+            return null;
+        }
+
+        runRequested = false;
+        Pass pass = new Pass(digest, System.currentTimeMillis());
+        current = pass;
+        plugin.logDebug("Starting drift audit pass");
+        return pass;
+    }
+
+    private void auditSlice(Pass pass) {
+        int budget = playersPerSlice;
+        while (pass.cursor < DIGEST_RANGES && budget > 0) {
+            int index = pass.cursor;
+            String botHash = pass.digest.get(index);
+
+            if (!pass.fetchPending) {
+                Range cached = ranges[index];
+                if (cached != null && cached.botHash.equals(botHash)) {
+                    // Leave a large range for the next slice rather than overrunning this one
+                    if (cached.members.size() > budget && budget < playersPerSlice) {
+                        break;
+                    }
+                    Map<UUID, Local> local = resolve(cached.members);
+                    budget -= cached.members.size();
+                    pass.checked += local.size();
+                    playersChecked.add(local.size());
+                    if (botHash.isEmpty() || combine(local) == Long.parseUnsignedLong(botHash, 16)) {
+                        pass.cursor++;
+                        continue;
+                    }
+                } else if (botHash.isEmpty()) {
+                    ranges[index] = new Range(botHash, Collections.emptyList());
+                    pass.cursor++;
+                    continue;
+                }
+                // The range changed on the bot since it was fetched, or differs from LuckPerms
+                pass.fetchPending = true;
+            }
+
+            int fetched = fetchRange(pass, index);
+            if (fetched < 0) {
+                break;
+            }
+            budget -= fetched;
+            pass.fetchPending = false;
+            pass.cursor++;
+        }
+
+        if (pass.cursor == DIGEST_RANGES) {
+            finishPass(pass);
+        }
+    }
+
+    /**
+     * Compare a range player by player and resync everyone who drifted
+     *
+     * @return the number of players compared, or -1 if the range could not be fetched yet
+     */
+    private int fetchRange(Pass pass, int index) {
+        if (requests.tryAcquire() > 0) {
+            return -1;
+        }
+        ApiResponse response = plugin.getApiClient().getSyncDigestRange(index, DIGEST_RANGES).join();
+        if (!accepted(response)) {
+            return -1;
+        }
+
+        Map<String, String> entries = response.getEntries() != null ? response.getEntries() : Collections.emptyMap();
+        List<UUID> members = new ArrayList<>(entries.size());
+        for (String uuid : entries.keySet()) {
+            try {
+                members.add(UUID.fromString(uuid));
+            } catch (IllegalArgumentException e) {
+                plugin.logDebug(() -> "Ignoring invalid UUID in sync state digest: " + uuid);
+            }
+        }
+        Collections.sort(members);
+
+        Map<UUID, Local> local = resolve(members);
+        List<Local> drifted = new ArrayList<>();
+        for (UUID uuid : members) {
+            Local player = local.get(uuid);
+            String expected = entries.get(uuid.toString());
+            if (player != null && (expected == null || !expected.equals(toHex(player.hash)))) {
+                drifted.add(player);
+            }
+        }
+
+        ranges[index] = new Range(pass.digest.get(index), members);
+        pass.fetched++;
+        pass.checked += local.size();
+        playersChecked.add(local.size());
+        if (!drifted.isEmpty()) {
+            pass.driftedRanges++;
+            pass.drifted += drifted.size();
+            playersDrifted.add(drifted.size());
+            plugin.logDebug(() -> drifted.size() + " player(s) out of sync in digest range " + index);
+            if (resync) {
+                resyncPass = pass;
+                drifted.forEach(player -> pendingResyncs.add(player.uuid));
+            }
+        }
+        return members.size();
+    }
+
+    private void finishPass(Pass pass) {
+        pass.finishedAt = System.currentTimeMillis();
+        passes.increment();
+        last = pass;
+        current = null;
+        problem = null;
+        nextPassAt = pass.finishedAt + passIntervalMillis;
+        if (pass.drifted > 0) {
+            plugin.getLogger().info("Drift audit found " + pass.drifted + " player(s) out of sync with Discord"
+                    + (resync ? ", resyncing them." : "."));
+        }
+        plugin.logDebug(() -> "Drift audit pass complete: " + describe(pass));
+    }
+
+    /**
+     * Whether a digest request succeeded; otherwise note why and back off
+     */
+    private boolean accepted(ApiResponse response) {
+        if (response.isSuccess()) {
+            return true;
+        }
+        if (response.getStatusCode() == 404) {
+            // Bot predates the digest endpoints - try again after the pass interval in case it was updated
+            if (!unsupportedWarned) {
+                unsupportedWarned = true;
+                plugin.getLogger().warning("Discord bot does not support sync state digests, skipping the drift audit.");
+            }
+            current = null;
+            runRequested = false;
+            nextPassAt = System.currentTimeMillis() + passIntervalMillis;
+            problem = "Discord bot does not support sync state digests";
+            return false;
+        }
+        if (response.getStatusCode() == 429) {
+            requests.pause(RATE_LIMIT_PAUSE_MILLIS);
+        }
+        failed(response.getMessage());
+        return false;
+    }
+
+    private void failed(String message) {
+        problem = message;
+        plugin.logDebug(() -> "Drift audit request failed: " + message);
+    }
+
+    /**
+     * Resync queued players, at most resyncs-per-slice and one request each
+     *
+     * @return whether the queue is now empty
+     */
+    private boolean resyncPending() {
+        List<UUID> batch = new ArrayList<>();
+        while (batch.size() < resyncsPerSlice && !pendingResyncs.isEmpty() && requests.tryAcquire() == 0) {
+            batch.add(pendingResyncs.poll());
+        }
+        // Resolve the groups again, they may have changed while the players were queued
+        Map<UUID, Local> local = resolve(batch);
+        for (UUID uuid : batch) {
+            Local player = local.get(uuid);
+            if (player != null) {
+                resync(resyncPass, player);
+            }
+        }
+        return pendingResyncs.isEmpty();
+    }
+
+    private void resync(Pass pass, Local player) {
+        UpdateVersioner versioner = plugin.getUpdateVersioner();
+        RankUpdatePayload payload = RankUpdatePayload.builder()
+                .uuid(player.uuid.toString())
+                .playerName(player.name)
+                .groupSet(player.groupSet)
+                .eventType("RESYNC")
+                .serverId(versioner.getServerId())
+                .version(versioner.nextVersion())
+                .build();
+        plugin.getSyncDispatcher().submit(payload).thenAccept(response -> {
+            if (response.isSuccess()) {
+                pass.resynced.incrementAndGet();
+                playersResynced.increment();
+            }
+        });
+    }
+
+    /**
+     * Current groups and entry hash of each player, loading offline players from LuckPerms storage
+     */
+    private Map<UUID, Local> resolve(List<UUID> uuids) {
+        UserManager userManager = plugin.getLuckPerms().getUserManager();
+        Settings settings = plugin.getSettings();
+        boolean includeInherited = settings.isIncludeInheritedGroups();
+        boolean respectContexts = settings.isRespectContexts();
+        GroupSetRegistry groupSets = plugin.getGroupSets();
+
+        // Start loading every offline user before waiting on any of them
+        List<CompletableFuture<User>> users = new ArrayList<>(uuids.size());
+        List<Boolean> loadedHere = new ArrayList<>(uuids.size());
+        for (UUID uuid : uuids) {
+            User loaded = userManager.getUser(uuid);
+            users.add(loaded != null ? CompletableFuture.completedFuture(loaded) : userManager.loadUser(uuid));
+            loadedHere.add(loaded == null);
+        }
+
+        Map<UUID, Local> local = new HashMap<>();
+        for (int i = 0; i < uuids.size(); i++) {
+            User user = users.get(i).join();
+            if (user == null) {
+                continue;
+            }
+            UUID uuid = uuids.get(i);
+            GroupSet groupSet = groupSets.intern(user.getPrimaryGroup(),
+                    GroupResolver.resolveGroups(user, includeInherited, respectContexts));
+            String name = user.getUsername() != null ? user.getUsername() : "Unknown";
+            local.put(uuid, new Local(uuid, name, groupSet, entryHash(uuid, groupSet)));
+
+            // Let LuckPerms unload users we loaded from storage (it keeps them if they are online)
+            if (loadedHere.get(i)) {
+                userManager.cleanupUser(user);
+            }
+        }
+        return local;
+    }
+
+    /**
+     * First 64 bits of sha256("uuid:groups"), with the groups sorted and joined by newlines
+     * like the bot's groups fingerprint
+     */
+    private long entryHash(UUID uuid, GroupSet groupSet) {
+        String input = uuid + ":" + String.join("\n", groupSet.getGroups());
+        byte[] hash = sha256.digest(input.getBytes(StandardCharsets.UTF_8));
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | (hash[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static long combine(Map<UUID, Local> local) {
+        long hash = 0;
+        for (Local player : local.values()) {
+            hash ^= player.hash;
+        }
+        return hash;
+    }
+
+    private static String toHex(long hash) {
+        String hex = Long.toHexString(hash);
+        return "0".repeat(16 - hex.length()) + hex;
+    }
+
+    private static long elapsedSeconds(long since) {
+        return Math.max(0, (System.currentTimeMillis() - since) / 1000);
+    }
+
+    private String describe(Pass pass) {
+        return pass.checked + " players checked, " + pass.drifted + " drifted in " + pass.driftedRanges
+                + " ranges, " + pass.resynced.get() + " resynced, " + pass.fetched + " ranges fetched";
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A range as last fetched from the bot: its hash at the time and the players in it
+     */
+    private static final class Range {
+        final String botHash;
+        final List<UUID> members;
+
+        Range(String botHash, List<UUID> members) {
+            this.botHash = botHash;
+            this.members = members;
+        }
+    }
+
+    private static final class Local {
+        final UUID uuid;
+        final String name;
+        final GroupSet groupSet;
+        final long hash;
+
+        Local(UUID uuid, String name, GroupSet groupSet, long hash) {
+            this.uuid = uuid;
+            this.name = name;
+            this.groupSet = groupSet;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * State of one pass. Counters other than resynced are only written by the audit thread.
+     */
+    private static final class Pass {
+        final List<String> digest;
+        final long startedAt;
+        final AtomicInteger resynced = new AtomicInteger();
+        long finishedAt;
+        int cursor;
+        boolean fetchPending;
+        int fetched;
+        int checked;
+        int drifted;
+        int driftedRanges;
+
+        Pass(List<String> digest, long startedAt) {
+            this.digest = digest;
+            this.startedAt = startedAt;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.mcranksync.sync;
+
+import com.mcranksync.MCRankSync;
+import com.mcranksync.config.Settings;
+import com.mcranksync.metrics.Counter;
+import com.mcranksync.models.GroupSet;
+import com.mcranksync.models.RankUpdatePayload;
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.node.matcher.NodeMatcher;
+import net.luckperms.api.node.types.InheritanceNode;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns LuckPerms data recalculations into rank updates.
+ * <p>
+ * Users whose data was recalculated (node changes, temporary nodes expiring, parent group edits)
+ * are queued as dirty. A background task drains the queue in bounded steps, resolves each user's
+ * effective groups and compares them with the groups last sent for that user, so only real
+ * changes reach the bot. When a group's parents change, every user holding that group or a group
+ * inheriting from it is queued as well, including offline users, which are loaded from storage
+ * a step at a time.
+ */
+public class GroupChangeDetector {
+
+    private final MCRankSync plugin;
+    private final int maxPerCycle;
+    private final ScheduledExecutorService scheduler;
+
+    // Dirty users in arrival order, mapped to whether any of their changes was made on this server
+    private final ConcurrentLinkedQueue<UUID> queue = new ConcurrentLinkedQueue<>();
+    private final Map<UUID, Boolean> dirty = new ConcurrentHashMap<>();
+    // Groups last sent for online players; offline players are compared with the acknowledged state
+    private final Map<UUID, GroupSet> lastSent = new ConcurrentHashMap<>();
+
+    private final Counter groupAdds;
+    private final Counter groupRemoves;
+    private final Counter unchanged;
+    private final Counter skippedRemote;
+    private final Counter bulkScans;
+
+    public GroupChangeDetector(MCRankSync plugin) {
+        this.plugin = plugin;
+        this.maxPerCycle = Math.max(1, plugin.getConfig().getInt("sync.change-detector.max-per-cycle", 200));
+        long intervalMillis = Math.max(10, plugin.getConfig().getLong("sync.change-detector.interval", 250));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MCRankSync-ChangeDetector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::drain, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+
+        this.groupAdds = plugin.getMetrics().counter("mcranksync_group_changes_total",
+                "LuckPerms group changes picked up for syncing", "change", "add");
+        this.groupRemoves = plugin.getMetrics().counter("mcranksync_group_changes_total",
+                "LuckPerms group changes picked up for syncing", "change", "remove");
+        this.unchanged = plugin.getMetrics().counter("mcranksync_recalculations_unchanged_total",
+                "Recalculated users whose effective groups had not changed");
+        this.skippedRemote = plugin.getMetrics().counter("mcranksync_group_changes_skipped_remote_total",
+                "Group changes not synced because they were made on another server (network.origin-only)");
+        this.bulkScans = plugin.getMetrics().counter("mcranksync_group_bulk_scans_total",
+                "Parent group changes that queued every member of the affected groups");
+    }
+
+    /**
+     * Queue a user whose LuckPerms data was recalculated
+     *
+     * @param remote whether the change was made on another server and should only be recorded
+     */
+    public void markDirty(UUID uuid, boolean remote) {
+        boolean[] firstMark = {false};
+        dirty.compute(uuid, (key, local) -> {
+            if (local == null) {
+                firstMark[0] = true;
+                return !remote;
+            }
+            return local || !remote;
+        });
+        if (firstMark[0]) {
+            queue.add(uuid);
+        }
+    }
+
+    /**
+     * Queue every user holding the group, or a group inheriting from it, after its parents changed
+     */
+    public void onParentsChanged(Group changed) {
+        Set<String> affected = new HashSet<>();
+        affected.add(changed.getName());
+        for (Group group : plugin.getLuckPerms().getGroupManager().getLoadedGroups()) {
+            for (Group parent : group.getInheritedGroups(QueryOptions.nonContextual())) {
+                if (parent.getName().equals(changed.getName())) {
+                    affected.add(group.getName());
+                    break;
+                }
+            }
+        }
+
+        bulkScans.increment();
+        UserManager userManager = plugin.getLuckPerms().getUserManager();
+        List<CompletableFuture<Map<UUID, Collection<InheritanceNode>>>> searches = new ArrayList<>(affected.size());
+        for (String group : affected) {
+            searches.add(userManager.searchAll(NodeMatcher.key(InheritanceNode.builder(group).build())));
+        }
+        CompletableFuture.allOf(searches.toArray(new CompletableFuture[0])).whenComplete((ignored, error) -> {
+            if (error != null) {
+                plugin.logError("Failed to look up the members of group " + changed.getName(), error);
+                return;
+            }
+            Set<UUID> members = new HashSet<>();
+            for (CompletableFuture<Map<UUID, Collection<InheritanceNode>>> search : searches) {
+                members.addAll(search.join().keySet());
+            }
+            plugin.logDebug(() -> "Parents of " + changed.getName() + " changed, checking " + members.size()
+                    + " member(s) of " + affected.size() + " group(s)");
+            for (UUID uuid : members) {
+                markDirty(uuid, false);
+            }
+        });
+    }
+
+    /**
+     * Remember the groups sent for a player by any other path (joins, resyncs), so they are not
+     * reported again as a change
+     */
+    public void recordSent(RankUpdatePayload payload) {
+        try {
+            UUID uuid = UUID.fromString(payload.getUuid());
+            GroupSet sent = payload.getGroupSet();
+            remember(uuid, sent != null
+                    ? sent
+                    : plugin.getGroupSets().intern(payload.getPrimaryGroup(), payload.getGroups()));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            // Not a player payload we can track
+        }
+    }
+
+    /**
+     * Forget the groups sent for a player so their next recalculation is compared with the
+     * state the bot acknowledged instead
+     */
+    public void forget(UUID uuid) {
+        lastSent.remove(uuid);
+    }
+
+    /**
+     * Forget the groups in a payload that did not reach the bot, unless newer groups were sent since
+     */
+    public void forget(RankUpdatePayload payload) {
+        try {
+            UUID uuid = UUID.fromString(payload.getUuid());
+            GroupSet sent = payload.getGroupSet();
+            if (sent != null) {
+                lastSent.remove(uuid, sent);
+            } else {
+                lastSent.remove(uuid);
+            }
+        } catch (IllegalArgumentException | NullPointerException e) {
+            // Not a player payload we can track
+        }
+    }
+
+    public int getDirtyCount() {
+        return dirty.size();
+    }
+
+    /**
+     * Stop the drain task. Users still queued are picked up by the next join or resync.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void drain() {
+        try {
+            List<UUID> batch = new ArrayList<>();
+            List<Boolean> local = new ArrayList<>();
+            while (batch.size() < maxPerCycle) {
+                UUID uuid = queue.poll();
+                if (uuid == null) {
+                    break;
+                }
+                Boolean isLocal = dirty.remove(uuid);
+                if (isLocal != null) {
+                    batch.add(uuid);
+                    local.add(isLocal);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            // Start loading every offline user in the step before waiting on any of them
+            UserManager userManager = plugin.getLuckPerms().getUserManager();
+            List<CompletableFuture<User>> users = new ArrayList<>(batch.size());
+            List<Boolean> loadedHere = new ArrayList<>(batch.size());
+            for (UUID uuid : batch) {
+                User loaded = userManager.getUser(uuid);
+                users.add(loaded != null ? CompletableFuture.completedFuture(loaded) : userManager.loadUser(uuid));
+                loadedHere.add(loaded == null);
+            }
+
+            Settings settings = plugin.getSettings();
+            for (int i = 0; i < batch.size(); i++) {
+                User user = users.get(i).join();
+                if (user == null) {
+                    continue;
+                }
+                check(user, local.get(i), settings);
+                if (loadedHere.get(i)) {
+                    userManager.cleanupUser(user);
+                }
+            }
+        } catch (RuntimeException e) {
+            plugin.logError("Failed to process recalculated LuckPerms users", e);
+        }
+    }
+
+    private void check(User user, boolean local, Settings settings) {
+        UUID uuid = user.getUniqueId();
+        List<String> groups = GroupResolver.resolveGroups(user,
+                settings.isIncludeInheritedGroups(), settings.isRespectContexts());
+        GroupSet current = plugin.getGroupSets().intern(user.getPrimaryGroup(), groups);
+
+        GroupSet previous = lastSent.get(uuid);
+        boolean changed = previous != null
+                ? previous.getFingerprint() != current.getFingerprint()
+                : !plugin.getSyncStateCache().isAcknowledged(uuid, current.getFingerprint());
+        if (!changed) {
+            unchanged.increment();
+            return;
+        }
+        remember(uuid, current);
+
+        if (!local) {
+            // The server the change was made on syncs it
+            skippedRemote.increment();
+            plugin.logDebug(() -> "Not syncing " + user.getUsername() + ", the change was made on another server");
+            return;
+        }
+
+        String eventType = eventType(previous, current);
+        plugin.logDebug(() -> "Groups changed for " + user.getUsername() + ": " + groups);
+
+        UpdateVersioner versioner = plugin.getUpdateVersioner();
+        RankUpdatePayload payload = RankUpdatePayload.builder()
+                .uuid(uuid.toString())
+                .playerName(user.getUsername() != null ? user.getUsername() : "Unknown")
+                .groupSet(current)
+                .eventType(eventType)
+                .serverId(versioner.getServerId())
+                .version(versioner.nextVersion())
+                .build();
+
+        plugin.getRankUpdateOutbox().submit(payload);
+    }
+
+    /**
+     * Only online players are remembered, so the map stays the size of the player list;
+     * their entries are dropped again when they quit
+     */
+    private void remember(UUID uuid, GroupSet sent) {
+        if (plugin.getServer().getPlayer(uuid) != null) {
+            lastSent.put(uuid, sent);
+        }
+    }
+
+    /**
+     * GROUP_ADD or GROUP_REMOVE when groups were only added or only removed, GROUP_CHANGE otherwise
+     */
+    private String eventType(GroupSet previous, GroupSet current) {
+        if (previous == null) {
+            groupAdds.increment();
+            return "GROUP_CHANGE";
+        }
+
+        int added = 0;
+        for (String group : current.getGroups()) {
+            if (!previous.contains(group)) {
+                added++;
+            }
+        }
+        int removed = 0;
+        for (String group : previous.getGroups()) {
+            if (!current.contains(group)) {
+                removed++;
+            }
+        }
+        groupAdds.add(added);
+        groupRemoves.add(removed);
+
+        if (removed == 0 && added > 0) {
+            return "GROUP_ADD";
+        }
+        if (added == 0 && removed > 0) {
+            return "GROUP_REMOVE";
+        }
+        return "GROUP_CHANGE";
+    }
+}
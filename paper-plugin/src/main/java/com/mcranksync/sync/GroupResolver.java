@@ -0,0 +1,54 @@
+package com.mcranksync.sync;
+
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.node.NodeType;
+import net.luckperms.api.node.types.InheritanceNode;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Extracts the group names that are sent to the Discord bot from a LuckPerms user
+ */
+public final class GroupResolver {
+
+    private GroupResolver() {
+    }
+
+    /**
+     * Resolve the groups of a user.
+     *
+     * @param includeInherited also include groups inherited through parent groups
+     * @param respectContexts  only include groups that apply in the user's current contexts
+     *                         (server, world, ...) instead of every group regardless of context
+     */
+    public static List<String> resolveGroups(User user, boolean includeInherited, boolean respectContexts) {
+        if (includeInherited) {
+            QueryOptions queryOptions = respectContexts ? user.getQueryOptions() : QueryOptions.nonContextual();
+            Collection<Group> inherited = user.getInheritedGroups(queryOptions);
+            List<String> groups = new ArrayList<>(inherited.size());
+            for (Group group : inherited) {
+                groups.add(group.getName());
+            }
+            return groups;
+        }
+
+        // Only look up the query options when they are actually needed for filtering
+        QueryOptions queryOptions = respectContexts ? user.getQueryOptions() : null;
+        Collection<InheritanceNode> nodes = user.getNodes(NodeType.INHERITANCE);
+        List<String> groups = new ArrayList<>(nodes.size());
+        for (InheritanceNode node : nodes) {
+            if (!node.getValue()) {
+                continue;
+            }
+            if (queryOptions != null && !queryOptions.satisfies(node.getContexts())) {
+                continue;
+            }
+            groups.add(node.getGroupName());
+        }
+        return groups;
+    }
+}
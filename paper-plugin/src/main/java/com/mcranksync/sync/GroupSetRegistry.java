@@ -0,0 +1,79 @@
+package com.mcranksync.sync;
+
+import com.mcranksync.models.GroupSet;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded registry of canonical {@link GroupSet}s. Most players share one of a handful of
+ * group combinations, so interning them means the fingerprint and JSON of each combination
+ * are computed once rather than for every join and rank change.
+ * The least recently used set is evicted when full; payloads still holding it are unaffected.
+ */
+public class GroupSetRegistry {
+
+    private final Map<Integer, GroupSet> sets;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public GroupSetRegistry(int maxSize) {
+        int capacity = Math.max(1, maxSize);
+        this.sets = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, GroupSet> eldest) {
+                if (size() > capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Canonical set for a primary group and groups, created if not registered yet.
+     * The groups are normalized first, so repeated or reordered names find the same set.
+     * Two combinations with the same hash replace each other rather than sharing a slot.
+     */
+    public GroupSet intern(String primaryGroup, Collection<String> groups) {
+        List<String> normalized = GroupSet.normalize(groups);
+        int hash = GroupSet.hash(primaryGroup, normalized);
+        synchronized (this) {
+            GroupSet set = sets.get(hash);
+            if (set != null && set.matches(primaryGroup, normalized)) {
+                hits.increment();
+                return set;
+            }
+            misses.increment();
+            set = new GroupSet(primaryGroup, normalized, SyncStateCache.fingerprint(primaryGroup, normalized));
+            sets.put(hash, set);
+            return set;
+        }
+    }
+
+    public synchronized int getSize() {
+        return sets.size();
+    }
+
+    public synchronized void clear() {
+        sets.clear();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+}
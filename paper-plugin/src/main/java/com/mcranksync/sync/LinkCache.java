@@ -0,0 +1,84 @@
+package com.mcranksync.sync;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, time-limited cache of whether players have linked their Discord account.
+ * Entries expire after the TTL and the least recently used entry is evicted when full.
+ */
+public class LinkCache {
+
+    public enum Status {
+        LINKED,
+        NOT_LINKED,
+        UNKNOWN
+    }
+
+    private final long ttlMillis;
+    private final Map<UUID, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public LinkCache(int maxSize, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        int capacity = Math.max(1, maxSize);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Cached link status of a player, or UNKNOWN if not cached or expired
+     */
+    public synchronized Status get(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            misses.increment();
+            return Status.UNKNOWN;
+        }
+        if (System.currentTimeMillis() - entry.cachedAt >= ttlMillis) {
+            entries.remove(uuid);
+            misses.increment();
+            return Status.UNKNOWN;
+        }
+        hits.increment();
+        return entry.linked ? Status.LINKED : Status.NOT_LINKED;
+    }
+
+    public synchronized void put(UUID uuid, boolean linked) {
+        entries.put(uuid, new Entry(linked, System.currentTimeMillis()));
+    }
+
+    public synchronized void invalidate(UUID uuid) {
+        entries.remove(uuid);
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private static class Entry {
+        final boolean linked;
+        final long cachedAt;
+
+        Entry(boolean linked, long cachedAt) {
+            this.linked = linked;
+            this.cachedAt = cachedAt;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.mcranksync.sync;
+
+import com.mcranksync.MCRankSync;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs work that touches Bukkit (players, command senders) on the server thread.
+ * Tasks submitted from other threads are queued and drained once per tick, at most
+ * max-tasks-per-tick of them and for at most max-time-per-tick; whatever is left waits for
+ * the next tick, so a burst of bot responses is spread over several ticks instead of one long one.
+ * Use it as the executor of {@code thenAcceptAsync} for continuations of API calls.
+ */
+public class MainThreadExecutor implements Executor {
+
+    private final MCRankSync plugin;
+    private final int maxTasksPerTick;
+    private final long maxNanosPerTick;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final BukkitTask drainTask;
+    private volatile boolean shutdown;
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder drains = new LongAdder();
+    private final LongAdder deferredTicks = new LongAdder();
+    private final LongAdder drainNanos = new LongAdder();
+    private volatile long maxDrainNanos;
+    private volatile int peakQueued;
+
+    public MainThreadExecutor(MCRankSync plugin) {
+        this.plugin = plugin;
+        this.maxTasksPerTick = Math.max(1, plugin.getConfig().getInt("main-thread.max-tasks-per-tick", 50));
+        this.maxNanosPerTick = Math.max(1, plugin.getConfig().getLong("main-thread.max-time-per-tick", 1000)) * 1000L;
+        this.drainTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+    }
+
+    /**
+     * Run the task on the server thread: right away if called from it, otherwise on a coming tick
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (plugin.getServer().isPrimaryThread()) {
+            run(task);
+            return;
+        }
+        if (shutdown) {
+            return;
+        }
+        tasks.add(task);
+        int size = queued.incrementAndGet();
+        if (size > peakQueued) {
+            peakQueued = size;
+        }
+    }
+
+    /**
+     * Stop draining. Tasks still queued are dropped; they only reply to players.
+     */
+    public void shutdown() {
+        shutdown = true;
+        drainTask.cancel();
+        int dropped = queued.getAndSet(0);
+        tasks.clear();
+        if (dropped > 0) {
+            plugin.logDebug(() -> "Dropped " + dropped + " queued main thread task(s) on shutdown.");
+        }
+    }
+
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    public int getPeakQueuedCount() {
+        return peakQueued;
+    }
+
+    public long getExecutedCount() {
+        return executed.sum();
+    }
+
+    /**
+     * Ticks on which queued tasks were run
+     */
+    public long getDrainCount() {
+        return drains.sum();
+    }
+
+    /**
+     * Ticks that left tasks for the next tick because the per-tick limit was reached
+     */
+    public long getDeferredTickCount() {
+        return deferredTicks.sum();
+    }
+
+    public long getDrainNanos() {
+        return drainNanos.sum();
+    }
+
+    public long getMaxDrainNanos() {
+        return maxDrainNanos;
+    }
+
+    private void drain() {
+        if (queued.get() == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + maxNanosPerTick;
+        int ran = 0;
+        Runnable task;
+        while (ran < maxTasksPerTick && (task = tasks.poll()) != null) {
+            queued.decrementAndGet();
+            run(task);
+            ran++;
+            if (System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        drains.increment();
+        drainNanos.add(elapsed);
+        if (elapsed > maxDrainNanos) {
+            maxDrainNanos = elapsed;
+        }
+        if (queued.get() > 0) {
+            deferredTicks.increment();
+        }
+    }
+
+    private void run(Runnable task) {
+        try {
+            task.run();
+            executed.increment();
+        } catch (RuntimeException e) {
+            plugin.logError("A main thread task failed", e);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.mcranksync.sync;
+
+import com.mcranksync.MCRankSync;
+import com.mcranksync.models.RankUpdatePayload;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Debounces rank updates per player.
+ * Every payload carries the player's full group list, so when several node events fire
+ * for the same player within the coalesce window only the last payload is sent.
+ */
+public class RankUpdateOutbox {
+
+    private final MCRankSync plugin;
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+
+    public RankUpdateOutbox(MCRankSync plugin) {
+        this.plugin = plugin;
+        this.windowMillis = Math.max(0, plugin.getConfig().getLong("sync.coalesce-window", 250));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MCRankSync-Outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue a rank update, replacing any update for the same player that has not been sent yet
+     */
+    public void submit(RankUpdatePayload payload) {
+        submitted.increment();
+
+        if (windowMillis == 0) {
+            send(payload, 1);
+            return;
+        }
+
+        String uuid = payload.getUuid();
+        boolean[] firstInWindow = {false};
+        pending.compute(uuid, (key, existing) -> {
+            if (existing == null) {
+                firstInWindow[0] = true;
+                return new Pending(payload);
+            }
+            existing.payload = payload;
+            existing.events++;
+            return existing;
+        });
+
+        if (firstInWindow[0]) {
+            scheduler.schedule(() -> flush(uuid), windowMillis, TimeUnit.MILLISECONDS);
+        } else {
+            coalesced.increment();
+        }
+    }
+
+    /**
+     * Send all pending updates immediately and stop the flush scheduler
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (String uuid : new ArrayList<>(pending.keySet())) {
+            flush(uuid);
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getFlushedCount() {
+        return flushed.sum();
+    }
+
+    private void flush(String uuid) {
+        Pending entry = pending.remove(uuid);
+        if (entry == null) {
+            return;
+        }
+        send(entry.payload, entry.events);
+    }
+
+    private void send(RankUpdatePayload payload, int events) {
+        flushed.increment();
+        String playerName = payload.getPlayerName();
+
+        if (events > 1) {
+            plugin.logDebug(() -> "Coalesced " + events + " rank events for " + playerName + " into one update");
+        }
+
+        plugin.getSyncDispatcher().submit(payload)
+                .thenAccept(response -> {
+                    if (response.isSuccess()) {
+                        plugin.logDebug(() -> "Rank update sent successfully for " + playerName);
+                    } else {
+                        plugin.getLogger().warning("Failed to send rank update for " + playerName + ": " + response.getMessage());
+                    }
+                });
+    }
+
+    private static class Pending {
+        RankUpdatePayload payload;
+        int events = 1;
+
+        Pending(RankUpdatePayload payload) {
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,547 @@
+package com.mcranksync.sync;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.mcranksync.MCRankSync;
+import com.mcranksync.api.ApiResponse;
+import com.mcranksync.config.Settings;
+import com.mcranksync.models.RankUpdatePayload;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.node.NodeType;
+import net.luckperms.api.node.matcher.NodeMatcher;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Pushes the current groups of many players to the bot, to repair roles that went stale
+ * while the bot was down or after rank mappings changed on the Discord side.
+ * Players are sent in batches paced by a token bucket so the sweep stays under the bot's
+ * rate limit. Progress of a full sweep is checkpointed so it can be resumed after a restart.
+ */
+public class ResyncManager {
+
+    public enum Scope {
+        ALL,
+        ONLINE,
+        PLAYER
+    }
+
+    private static final String CHECKPOINT_FILE = "resync-checkpoint.json";
+    private static final int MAX_BATCH_ATTEMPTS = 5;
+
+    private final MCRankSync plugin;
+    private final Gson gson = new GsonBuilder().create();
+    private final Path checkpointFile;
+    private final ExecutorService worker;
+
+    private final int batchSize;
+    private final double requestsPerMinute;
+    private final long rateLimitPauseMillis;
+    private final long progressIntervalMillis;
+
+    private volatile Run current;
+
+    public ResyncManager(MCRankSync plugin) {
+        this.plugin = plugin;
+        this.checkpointFile = new File(plugin.getDataFolder(), CHECKPOINT_FILE).toPath();
+        this.batchSize = Math.max(1, Math.min(500, plugin.getConfig().getInt("resync.batch-size", 100)));
+        this.requestsPerMinute = Math.max(0.1, plugin.getConfig().getDouble("resync.requests-per-minute", 4));
+        this.rateLimitPauseMillis = Math.max(1, plugin.getConfig().getLong("resync.rate-limit-pause", 60)) * 1000L;
+        this.progressIntervalMillis = Math.max(1, plugin.getConfig().getLong("resync.progress-interval", 10)) * 1000L;
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MCRankSync-Resync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Resync every player known to LuckPerms, including offline players
+     */
+    public boolean startAll(CommandSender sender) {
+        return start(new Run(Scope.ALL, sender, System.currentTimeMillis()), this::findAllUsers);
+    }
+
+    /**
+     * Resync the given online players
+     */
+    public boolean startOnline(CommandSender sender, Collection<UUID> online) {
+        List<UUID> targets = new ArrayList<>(online);
+        return start(new Run(Scope.ONLINE, sender, System.currentTimeMillis()), () -> targets);
+    }
+
+    /**
+     * Resync a single player by name, whether or not they are online
+     */
+    public boolean startPlayer(CommandSender sender, String playerName) {
+        return start(new Run(Scope.PLAYER, sender, System.currentTimeMillis()), () -> {
+            UUID uuid = plugin.getLuckPerms().getUserManager().lookupUniqueId(playerName).join();
+            return uuid != null ? Collections.singletonList(uuid) : Collections.emptyList();
+        });
+    }
+
+    /**
+     * Continue a full resync from its checkpoint
+     *
+     * @return false if a resync is already running or there is nothing to resume
+     */
+    public boolean resume(CommandSender sender) {
+        Checkpoint checkpoint = readCheckpoint();
+        if (checkpoint == null) {
+            return false;
+        }
+
+        Run run = new Run(Scope.ALL, sender, checkpoint.startedAt);
+        run.cursor = UUID.fromString(checkpoint.cursor);
+        run.processed = checkpoint.processed;
+        run.sent = checkpoint.sent;
+        run.skipped = checkpoint.skipped;
+        run.failed = checkpoint.failed;
+        return start(run, this::findAllUsers);
+    }
+
+    /**
+     * Stop the running resync and discard its checkpoint
+     */
+    public boolean cancel() {
+        Run run = current;
+        if (run == null || run.finished) {
+            return false;
+        }
+        run.cancelled = true;
+        return true;
+    }
+
+    public boolean isRunning() {
+        Run run = current;
+        return run != null && !run.finished;
+    }
+
+    public boolean hasCheckpoint() {
+        return Files.exists(checkpointFile);
+    }
+
+    /**
+     * Human readable progress of the running or last resync, or null if none ran since startup
+     */
+    public String describe() {
+        Run run = current;
+        return run != null ? describe(run) : null;
+    }
+
+    /**
+     * Interrupt a running resync. A full resync keeps its checkpoint and can be resumed after restart.
+     */
+    public void shutdown() {
+        Run run = current;
+        if (run != null) {
+            run.stopping = true;
+        }
+        worker.shutdownNow();
+        try {
+            worker.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized boolean start(Run run, Supplier<Collection<UUID>> targets) {
+        if (isRunning()) {
+            return false;
+        }
+        current = run;
+        worker.execute(() -> execute(run, targets));
+        return true;
+    }
+
+    private void execute(Run run, Supplier<Collection<UUID>> targetSource) {
+        try {
+            List<UUID> targets = new ArrayList<>(targetSource.get());
+            // A stable order lets a checkpointed sweep skip everything up to the last completed batch
+            Collections.sort(targets);
+            if (run.cursor != null) {
+                UUID cursor = run.cursor;
+                targets.removeIf(uuid -> uuid.compareTo(cursor) <= 0);
+            }
+            run.total = run.processed + targets.size();
+            report(run, "Resyncing " + targets.size() + " player(s) in batches of " + batchSize + "...");
+
+            TokenBucket bucket = new TokenBucket(1, requestsPerMinute / 60.0);
+            long nextReport = System.currentTimeMillis() + progressIntervalMillis;
+
+            for (int from = 0; from < targets.size(); from += batchSize) {
+                if (run.cancelled || run.stopping) {
+                    break;
+                }
+
+                List<UUID> chunk = targets.subList(from, Math.min(targets.size(), from + batchSize));
+                Batch batch = buildBatch(chunk);
+                Delivery delivery = batch.payloads.isEmpty() ? Delivery.DELIVERED : deliver(run, bucket, batch.payloads);
+                if (run.stopping) {
+                    // Keep the checkpoint of the last batch that was fully delivered
+                    return;
+                }
+                if (delivery.outcome == Outcome.CANCELLED) {
+                    // The batch was not fully sent, so it is not counted and the cursor stays before it
+                    break;
+                }
+                if (delivery.outcome == Outcome.PAUSED) {
+                    if (run.scope == Scope.ALL) {
+                        writeCheckpoint(run);
+                    }
+                    report(run, "Resync paused: " + delivery.failure + ". " + describe(run)
+                            + (run.scope == Scope.ALL ? " Use /mcranksync resync resume to continue." : ""));
+                    return;
+                }
+
+                // Players without a payload are only counted once the rest of their batch is done
+                run.skipped += batch.skipped;
+                run.processed += chunk.size();
+                run.cursor = chunk.get(chunk.size() - 1);
+                if (run.scope == Scope.ALL) {
+                    writeCheckpoint(run);
+                }
+
+                if (System.currentTimeMillis() >= nextReport) {
+                    nextReport = System.currentTimeMillis() + progressIntervalMillis;
+                    report(run, "Resync progress: " + describe(run));
+                }
+            }
+
+            if (run.stopping) {
+                return;
+            }
+            if (run.scope == Scope.ALL || run.cancelled) {
+                deleteCheckpoint();
+            }
+            if (run.cancelled) {
+                report(run, "Resync cancelled: " + describe(run));
+            } else if (run.scope == Scope.PLAYER && run.total == 0) {
+                report(run, "Resync failed: player not found in LuckPerms.");
+            } else {
+                report(run, "Resync complete: " + describe(run));
+            }
+        } catch (InterruptedException e) {
+            // Plugin is shutting down, the checkpoint of the last completed batch is kept
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            plugin.logError("Resync failed", e);
+            report(run, "Resync failed: " + e.getMessage());
+        } finally {
+            run.finished = true;
+        }
+    }
+
+    private Batch buildBatch(List<UUID> chunk) {
+        UserManager userManager = plugin.getLuckPerms().getUserManager();
+        Settings settings = plugin.getSettings();
+        boolean includeInherited = settings.isIncludeInheritedGroups();
+        boolean respectContexts = settings.isRespectContexts();
+        boolean requireLinked = settings.isRequireLinked();
+        UpdateVersioner versioner = plugin.getUpdateVersioner();
+        GroupSetRegistry groupSets = plugin.getGroupSets();
+
+        // Start loading every offline user in the batch before waiting on any of them
+        List<CompletableFuture<User>> users = new ArrayList<>(chunk.size());
+        List<Boolean> loadedHere = new ArrayList<>(chunk.size());
+        for (UUID uuid : chunk) {
+            if (requireLinked && plugin.getLinkCache().get(uuid) == LinkCache.Status.NOT_LINKED) {
+                users.add(CompletableFuture.completedFuture(null));
+                loadedHere.add(false);
+                continue;
+            }
+            User loaded = userManager.getUser(uuid);
+            users.add(loaded != null ? CompletableFuture.completedFuture(loaded) : userManager.loadUser(uuid));
+            loadedHere.add(loaded == null);
+        }
+
+        Batch batch = new Batch(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            User user = users.get(i).join();
+            if (user == null) {
+                batch.skipped++;
+                continue;
+            }
+
+            String playerName = user.getUsername() != null ? user.getUsername() : "Unknown";
+            batch.payloads.add(RankUpdatePayload.builder()
+                    .uuid(user.getUniqueId().toString())
+                    .playerName(playerName)
+                    .groupSet(groupSets.intern(user.getPrimaryGroup(),
+                            GroupResolver.resolveGroups(user, includeInherited, respectContexts)))
+                    .eventType("RESYNC")
+                    .serverId(versioner.getServerId())
+                    .version(versioner.nextVersion())
+                    .build());
+
+            // Let LuckPerms unload users we loaded from storage (it keeps them if they are online)
+            if (loadedHere.get(i)) {
+                userManager.cleanupUser(user);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Send one batch, retrying transient failures
+     */
+    private Delivery deliver(Run run, TokenBucket bucket, List<RankUpdatePayload> payloads) throws InterruptedException {
+        String failure = "Discord bot unavailable";
+        for (int attempt = 1; attempt <= MAX_BATCH_ATTEMPTS; attempt++) {
+            if (run.cancelled || run.stopping) {
+                return Delivery.CANCELLED;
+            }
+            if (plugin.getApiClient().isAvailable()) {
+                bucket.acquire();
+                ApiResponse response = plugin.getSyncDispatcher()
+                        .sendAll(uuids(payloads), () -> plugin.getApiClient().sendRankUpdateBatch(payloads))
+                        .join();
+
+                if (response.getStatusCode() == 404) {
+                    return deliverIndividually(run, bucket, payloads);
+                }
+                if (response.isSuccess()) {
+                    List<ApiResponse> results = SyncDispatcher.parseBatchResults(response, payloads.size());
+                    for (int i = 0; i < payloads.size(); i++) {
+                        record(run, payloads.get(i), results.get(i));
+                    }
+                    return Delivery.DELIVERED;
+                }
+                if (response.getStatusCode() == 429) {
+                    plugin.getLogger().warning("Discord bot rate limit reached, pausing resync for "
+                            + rateLimitPauseMillis / 1000 + " seconds.");
+                    bucket.pause(rateLimitPauseMillis);
+                    failure = "Discord bot rate limit reached";
+                    continue;
+                }
+                if (!RetryQueue.isRetryable(response)) {
+                    return Delivery.paused("Discord bot rejected the batch (" + response.getStatusCode() + ")");
+                }
+                failure = response.getMessage();
+            }
+            TimeUnit.MILLISECONDS.sleep(Math.min(60000L, 1000L << attempt));
+        }
+        return Delivery.paused(failure);
+    }
+
+    /**
+     * Fallback for bots without the batch endpoint
+     */
+    private Delivery deliverIndividually(Run run, TokenBucket bucket, List<RankUpdatePayload> payloads) throws InterruptedException {
+        for (RankUpdatePayload payload : payloads) {
+            if (run.cancelled || run.stopping) {
+                return Delivery.CANCELLED;
+            }
+            bucket.acquire();
+            UUID uuid = UUID.fromString(payload.getUuid());
+            ApiResponse response = plugin.getSyncDispatcher()
+                    .sendAll(Collections.singletonList(uuid), () -> plugin.getApiClient().sendRankUpdate(payload))
+                    .join();
+            if (response.getStatusCode() == 429) {
+                bucket.pause(rateLimitPauseMillis);
+            }
+            record(run, payload, response);
+        }
+        return Delivery.DELIVERED;
+    }
+
+    private static List<UUID> uuids(List<RankUpdatePayload> payloads) {
+        List<UUID> uuids = new ArrayList<>(payloads.size());
+        for (RankUpdatePayload payload : payloads) {
+            uuids.add(UUID.fromString(payload.getUuid()));
+        }
+        return uuids;
+    }
+
+    private void record(Run run, RankUpdatePayload payload, ApiResponse response) {
+        if (!response.isSuccess()) {
+            run.failed++;
+            // Hand transient failures to the retry queue rather than holding up the sweep
+            if (RetryQueue.isRetryable(response)) {
+                plugin.getRetryQueue().enqueue(payload);
+            }
+            return;
+        }
+
+        run.sent++;
+        Boolean linked = response.getLinked();
+        if (linked != null) {
+            plugin.getLinkCache().put(UUID.fromString(payload.getUuid()), linked);
+        }
+        plugin.getRetryQueue().acknowledge(payload);
+        if (Boolean.TRUE.equals(response.getApplied())) {
+            plugin.getSyncStateCache().acknowledge(payload, response);
+            plugin.getGroupChangeDetector().recordSent(payload);
+        }
+    }
+
+    private Collection<UUID> findAllUsers() {
+        UserManager userManager = plugin.getLuckPerms().getUserManager();
+        Set<UUID> uuids = new HashSet<>(userManager.getUniqueUsers().join());
+        // getUniqueUsers leaves out players only in the default group, so also include
+        // everyone with an explicit group node
+        uuids.addAll(userManager.searchAll(NodeMatcher.type(NodeType.INHERITANCE)).join().keySet());
+        for (User user : userManager.getLoadedUsers()) {
+            uuids.add(user.getUniqueId());
+        }
+        return uuids;
+    }
+
+    private String describe(Run run) {
+        long elapsedSeconds = Math.max(1, (System.currentTimeMillis() - run.startedAt) / 1000);
+        int percent = run.total > 0 ? (int) (run.processed * 100L / run.total) : 100;
+        StringBuilder description = new StringBuilder()
+                .append(run.processed).append('/').append(run.total).append(" players (").append(percent).append("%), ")
+                .append(run.sent).append(" synced, ").append(run.skipped).append(" skipped, ")
+                .append(run.failed).append(" failed, ").append(elapsedSeconds).append("s elapsed");
+
+        if (!run.finished && run.processed > 0 && run.processed < run.total) {
+            long remainingSeconds = (run.total - run.processed) * elapsedSeconds / run.processed;
+            description.append(", ~").append(remainingSeconds / 60).append("m remaining");
+        }
+        return description.toString();
+    }
+
+    private void report(Run run, String message) {
+        plugin.getLogger().info(message);
+        if (run.sender instanceof Player) {
+            plugin.getMainThread().execute(() -> run.sender.sendMessage(MCRankSync.colorize("&7" + message)));
+        }
+    }
+
+    private Checkpoint readCheckpoint() {
+        if (!Files.exists(checkpointFile)) {
+            return null;
+        }
+        try {
+            Checkpoint checkpoint = gson.fromJson(Files.readString(checkpointFile, StandardCharsets.UTF_8), Checkpoint.class);
+            return checkpoint != null && checkpoint.cursor != null ? checkpoint : null;
+        } catch (IOException | JsonParseException e) {
+            plugin.logError("Failed to read the resync checkpoint", e);
+            return null;
+        }
+    }
+
+    private void writeCheckpoint(Run run) {
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.cursor = run.cursor != null ? run.cursor.toString() : null;
+        checkpoint.processed = run.processed;
+        checkpoint.sent = run.sent;
+        checkpoint.skipped = run.skipped;
+        checkpoint.failed = run.failed;
+        checkpoint.startedAt = run.startedAt;
+
+        try {
+            Files.createDirectories(checkpointFile.getParent());
+            Path temp = checkpointFile.resolveSibling(CHECKPOINT_FILE + ".tmp");
+            Files.writeString(temp, gson.toJson(checkpoint), StandardCharsets.UTF_8);
+            Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.logError("Failed to write the resync checkpoint", e);
+        }
+    }
+
+    private void deleteCheckpoint() {
+        try {
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException e) {
+            plugin.logError("Failed to delete the resync checkpoint", e);
+        }
+    }
+
+    /**
+     * State of one resync. Counters are only written by the resync thread.
+     */
+    private static class Run {
+        final Scope scope;
+        final CommandSender sender;
+        final long startedAt;
+
+        volatile UUID cursor;
+        volatile int total;
+        volatile int processed;
+        volatile int sent;
+        volatile int skipped;
+        volatile int failed;
+        volatile boolean cancelled;
+        volatile boolean stopping;
+        volatile boolean finished;
+
+        Run(Scope scope, CommandSender sender, long startedAt) {
+            this.scope = scope;
+            this.sender = sender;
+            this.startedAt = startedAt;
+        }
+    }
+
+    /**
+     * Payloads of one batch and the players left out of it (unknown to LuckPerms or not linked)
+     */
+    private static class Batch {
+        final List<RankUpdatePayload> payloads;
+        int skipped;
+
+        Batch(int size) {
+            this.payloads = new ArrayList<>(size);
+        }
+    }
+
+    private enum Outcome {
+        DELIVERED,
+        CANCELLED,
+        PAUSED
+    }
+
+    /**
+     * Result of delivering a batch, with why the resync has to pause if it was not delivered
+     */
+    private static final class Delivery {
+        static final Delivery DELIVERED = new Delivery(Outcome.DELIVERED, null);
+        static final Delivery CANCELLED = new Delivery(Outcome.CANCELLED, null);
+
+        final Outcome outcome;
+        final String failure;
+
+        private Delivery(Outcome outcome, String failure) {
+            this.outcome = outcome;
+            this.failure = failure;
+        }
+
+        static Delivery paused(String failure) {
+            return new Delivery(Outcome.PAUSED, failure);
+        }
+    }
+
+    /**
+     * Persisted progress of a full resync, the last player of the last completed batch
+     */
+    private static class Checkpoint {
+        String cursor;
+        int processed;
+        int sent;
+        int skipped;
+        int failed;
+        long startedAt;
+    }
+}
@@ -0,0 +1,437 @@
+package com.mcranksync.sync;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.mcranksync.MCRankSync;
+import com.mcranksync.api.ApiResponse;
+import com.mcranksync.models.RankUpdatePayload;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Durable queue of sync events that could not be delivered to the bot.
+ * Events are kept per player (only the latest state matters) and persisted to
+ * append-only segment files in the plugin data folder, so they survive restarts.
+ * All disk I/O and state changes happen on a single background thread.
+ */
+public class RetryQueue {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int MIN_COMPACTION_RECORDS = 1000;
+
+    private final MCRankSync plugin;
+    private final Gson gson = new GsonBuilder().create();
+    private final Path directory;
+    private final ScheduledExecutorService io;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final int maxAttempts;
+    private final int maxPerCycle;
+
+    // Only touched on the I/O thread
+    private BufferedWriter writer;
+    private long segmentSequence;
+    private int segmentRecords;
+
+    public RetryQueue(MCRankSync plugin) {
+        this.plugin = plugin;
+        this.directory = new File(plugin.getDataFolder(), "retry-queue").toPath();
+        this.baseDelayMillis = Math.max(100, plugin.getConfig().getLong("retry.base-delay", 1000));
+        this.maxDelayMillis = Math.max(baseDelayMillis, plugin.getConfig().getLong("retry.max-delay", 300000));
+        this.maxAttempts = plugin.getConfig().getInt("retry.max-attempts", 0);
+        this.maxPerCycle = Math.max(1, plugin.getConfig().getInt("retry.max-per-cycle", 100));
+        this.io = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MCRankSync-RetryQueue");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Load persisted events and start the retry loop
+     */
+    public void start() {
+        io.execute(this::load);
+        io.scheduleWithFixedDelay(this::retryDue, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop retrying and close the current segment. Events still queued are retried on next start.
+     */
+    public void shutdown() {
+        io.execute(this::closeWriter);
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(5, TimeUnit.SECONDS)) {
+                io.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            io.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue a payload whose delivery failed, replacing any older queued state for the player
+     */
+    public void enqueue(RankUpdatePayload payload) {
+        runOnIoThread(() -> {
+            Entry existing = entries.get(payload.getUuid());
+            if (existing != null && compare(existing.payload, payload) > 0) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            Entry entry = new Entry(payload);
+            entry.attempts = existing != null ? existing.attempts : 0;
+            entry.firstFailedAt = existing != null ? existing.firstFailedAt : now;
+            entry.nextAttemptAt = now + backoff(entry.attempts);
+            entries.put(payload.getUuid(), entry);
+            append(Record.put(entry));
+        });
+    }
+
+    /**
+     * Drop the queued state for a player once a payload at least as new has been delivered
+     */
+    public void acknowledge(RankUpdatePayload delivered) {
+        if (!entries.containsKey(delivered.getUuid())) {
+            return;
+        }
+        runOnIoThread(() -> {
+            Entry entry = entries.get(delivered.getUuid());
+            if (entry != null && compare(entry.payload, delivered) <= 0) {
+                remove(entry);
+            }
+        });
+    }
+
+    public int getDepth() {
+        return entries.size();
+    }
+
+    /**
+     * Age in milliseconds of the oldest queued event, or 0 if the queue is empty
+     */
+    public long getOldestAgeMillis() {
+        long oldest = Long.MAX_VALUE;
+        for (Entry entry : entries.values()) {
+            oldest = Math.min(oldest, entry.firstFailedAt);
+        }
+        return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+    }
+
+    private void retryDue() {
+        if (!plugin.getApiClient().isAvailable()) {
+            // Bot is known to be down - leave everything queued until the circuit breaker half-opens
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<Entry> due = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (!entry.inFlight && entry.nextAttemptAt <= now) {
+                due.add(entry);
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        due.sort((a, b) -> Long.compare(a.nextAttemptAt, b.nextAttemptAt));
+        for (Entry entry : due.subList(0, Math.min(due.size(), maxPerCycle))) {
+            entry.inFlight = true;
+            plugin.getSyncDispatcher().send(entry.payload)
+                    .whenComplete((response, error) -> runOnIoThread(() -> onRetryResult(entry, error != null
+                            // A send that threw is retried like a transport error
+                            ? new ApiResponse(false, "Error: " + error.getMessage())
+                            : response)));
+        }
+        plugin.logDebug(() -> "Retrying " + Math.min(due.size(), maxPerCycle) + " queued sync event(s)");
+    }
+
+    private void onRetryResult(Entry entry, ApiResponse response) {
+        entry.inFlight = false;
+        if (entries.get(entry.payload.getUuid()) != entry) {
+            // Replaced by a newer failed event while this attempt was in flight
+            return;
+        }
+
+        if (response.isSuccess()) {
+            remove(entry);
+            plugin.getSyncDispatcher().onDelivered(entry.payload, response);
+            return;
+        }
+
+        entry.attempts++;
+        if (!isRetryable(response) || (maxAttempts > 0 && entry.attempts >= maxAttempts)) {
+            plugin.getLogger().warning("Giving up on sync event for " + entry.payload.getPlayerName()
+                    + " after " + entry.attempts + " attempt(s): " + response.getMessage());
+            plugin.getGroupChangeDetector().forget(entry.payload);
+            remove(entry);
+            return;
+        }
+
+        entry.nextAttemptAt = System.currentTimeMillis() + backoff(entry.attempts);
+        append(Record.put(entry));
+    }
+
+    /**
+     * Order two payloads for the same player: by version when both are versioned, with ties broken
+     * by server ID like on the bot, otherwise by their millisecond timestamps
+     */
+    static int compare(RankUpdatePayload a, RankUpdatePayload b) {
+        if (a.getVersion() > 0 && b.getVersion() > 0) {
+            int byVersion = Long.compare(a.getVersion(), b.getVersion());
+            if (byVersion != 0) {
+                return byVersion;
+            }
+            return Objects.requireNonNullElse(a.getServerId(), "").compareTo(Objects.requireNonNullElse(b.getServerId(), ""));
+        }
+        return Long.compare(a.getTimestamp(), b.getTimestamp());
+    }
+
+    /**
+     * Whether a failed response is worth retrying: transport errors, rate limiting and server errors
+     */
+    public static boolean isRetryable(ApiResponse response) {
+        int status = response.getStatusCode();
+        return status == 0 || status == 429 || status >= 500;
+    }
+
+    /**
+     * Exponential backoff with jitter: a random delay between half and all of base * 2^attempts
+     */
+    private long backoff(int attempts) {
+        long delay = baseDelayMillis << Math.min(attempts, 20);
+        delay = Math.min(delay, maxDelayMillis);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.payload.getUuid(), entry);
+        append(Record.remove(entry.payload.getUuid()));
+    }
+
+    private void runOnIoThread(Runnable task) {
+        try {
+            io.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Shutting down - the last persisted state is retried on next start
+        }
+    }
+
+    // ==================== Persistence ====================
+
+    private void load() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = listSegments();
+            Map<String, Entry> loaded = new HashMap<>();
+
+            for (Path segment : segments) {
+                segmentSequence = Math.max(segmentSequence, parseSequence(segment));
+                for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+                    replay(line, loaded);
+                }
+            }
+
+            // Keep anything queued while loading if it is newer than the persisted state
+            for (Entry entry : loaded.values()) {
+                entries.merge(entry.payload.getUuid(), entry,
+                        (current, persisted) -> compare(current.payload, persisted.payload) >= 0 ? current : persisted);
+            }
+
+            compact(segments);
+
+            if (!entries.isEmpty()) {
+                plugin.getLogger().info("Loaded " + entries.size() + " pending sync event(s) from the retry queue.");
+            }
+        } catch (IOException e) {
+            plugin.logError("Failed to load the retry queue", e);
+        }
+    }
+
+    private void replay(String line, Map<String, Entry> loaded) {
+        if (line.isBlank()) {
+            return;
+        }
+        try {
+            Record record = gson.fromJson(line, Record.class);
+            if (record == null) {
+                return;
+            }
+            if (Record.PUT.equals(record.op) && record.payload != null && record.payload.getUuid() != null) {
+                Entry entry = new Entry(record.payload);
+                entry.attempts = record.attempts;
+                entry.firstFailedAt = record.firstFailedAt;
+                entry.nextAttemptAt = record.nextAttemptAt;
+                loaded.put(record.payload.getUuid(), entry);
+            } else if (Record.REMOVE.equals(record.op) && record.uuid != null) {
+                loaded.remove(record.uuid);
+            }
+        } catch (JsonParseException e) {
+            // A torn write at the end of a segment - skip it
+        }
+    }
+
+    private void append(Record record) {
+        try {
+            if (writer == null) {
+                openNewSegment();
+            }
+            writer.write(gson.toJson(record));
+            writer.newLine();
+            writer.flush();
+            segmentRecords++;
+
+            if (segmentRecords > Math.max(MIN_COMPACTION_RECORDS, entries.size() * 4)) {
+                compact(listSegments());
+            }
+        } catch (IOException e) {
+            plugin.logError("Failed to write to the retry queue", e);
+        }
+    }
+
+    /**
+     * Rewrite the live entries into a fresh segment and delete the given older segments
+     */
+    private void compact(List<Path> oldSegments) throws IOException {
+        closeWriter();
+
+        segmentSequence++;
+        Path target = segmentPath(segmentSequence);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Entry entry : entries.values()) {
+                out.write(gson.toJson(Record.put(entry)));
+                out.newLine();
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path segment : oldSegments) {
+            if (!segment.equals(target)) {
+                Files.deleteIfExists(segment);
+            }
+        }
+
+        writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        segmentRecords = entries.size();
+    }
+
+    private void openNewSegment() throws IOException {
+        Files.createDirectories(directory);
+        segmentSequence++;
+        writer = Files.newBufferedWriter(segmentPath(segmentSequence), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        segmentRecords = 0;
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            plugin.logError("Failed to close the retry queue segment", e);
+        }
+        writer = null;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>(files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .toList());
+            segments.sort((a, b) -> Long.compare(parseSequence(a), parseSequence(b)));
+            return segments;
+        }
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    private static long parseSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static class Entry {
+        final RankUpdatePayload payload;
+        int attempts;
+        long firstFailedAt;
+        long nextAttemptAt;
+        boolean inFlight;
+
+        Entry(RankUpdatePayload payload) {
+            this.payload = payload;
+        }
+    }
+
+    // One line in a segment file
+    private static class Record {
+        static final String PUT = "put";
+        static final String REMOVE = "remove";
+
+        String op;
+        String uuid;
+        RankUpdatePayload payload;
+        int attempts;
+        long firstFailedAt;
+        long nextAttemptAt;
+
+        static Record put(Entry entry) {
+            Record record = new Record();
+            record.op = PUT;
+            record.payload = entry.payload;
+            record.attempts = entry.attempts;
+            record.firstFailedAt = entry.firstFailedAt;
+            record.nextAttemptAt = entry.nextAttemptAt;
+            return record;
+        }
+
+        static Record remove(String uuid) {
+            Record record = new Record();
+            record.op = REMOVE;
+            record.uuid = uuid;
+            return record;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.mcranksync.sync;
+
+import com.mcranksync.MCRankSync;
+import com.mcranksync.api.ApiResponse;
+import com.mcranksync.api.EventStream;
+import com.mcranksync.metrics.Counter;
+import com.mcranksync.models.RankUpdatePayload;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Entry point for outbound rank update and player join payloads.
+ * When batching is enabled, payloads are accumulated and flushed to the bot's
+ * batch endpoint once the batch is full or the flush interval has elapsed.
+ */
+public class SyncDispatcher {
+
+    private static final int SEQUENCER_STRIPES = 64;
+
+    private final MCRankSync plugin;
+    private final boolean batchingEnabled;
+    private final int maxBatchSize;
+    private final long flushIntervalMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Counter skippedUnlinked;
+    private final UpdateSequencer sequencer;
+
+    private final Object lock = new Object();
+    private List<QueuedUpdate> buffer = new ArrayList<>();
+    private boolean flushScheduled;
+    private volatile boolean batchEndpointMissing;
+
+    public SyncDispatcher(MCRankSync plugin) {
+        this.plugin = plugin;
+        this.batchingEnabled = plugin.getConfig().getBoolean("batch.enabled", true);
+        this.maxBatchSize = Math.max(1, plugin.getConfig().getInt("batch.max-size", 50));
+        this.flushIntervalMillis = Math.max(1, plugin.getConfig().getLong("batch.flush-interval", 200));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MCRankSync-Batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.skippedUnlinked = plugin.getMetrics().counter("mcranksync_sync_skipped_unlinked_total",
+                "Updates not sent because the player has no linked Discord account");
+        this.sequencer = plugin.getConfig().getBoolean("sync.ordered-delivery", true)
+                ? new UpdateSequencer(SEQUENCER_STRIPES)
+                : null;
+    }
+
+    /**
+     * Send a rank update or player join payload to the bot.
+     * Payloads for players known to be unlinked are skipped when sync.require-linked is set,
+     * and payloads that fail with a retryable error are handed to the retry queue.
+     * The returned future completes with the bot's result for this payload.
+     */
+    public CompletableFuture<ApiResponse> submit(RankUpdatePayload payload) {
+        UUID uuid = UUID.fromString(payload.getUuid());
+        plugin.getGroupChangeDetector().recordSent(payload);
+        if (plugin.getSettings().isRequireLinked()
+                && plugin.getLinkCache().get(uuid) == LinkCache.Status.NOT_LINKED) {
+            skippedUnlinked.increment();
+            // Not sent, so a later recalculation with the same groups must not count as unchanged
+            plugin.getGroupChangeDetector().forget(payload);
+            plugin.logDebug(() -> "Not syncing " + payload.getPlayerName() + ", Discord account is not linked");
+            return CompletableFuture.completedFuture(new ApiResponse(true, "Skipped: player is not linked"));
+        }
+
+        return sequenced(uuid, () -> transmit(payload).thenApply(response -> {
+            if (response.isSuccess()) {
+                onDelivered(payload, response);
+            } else if (RetryQueue.isRetryable(response)) {
+                plugin.getRetryQueue().enqueue(payload);
+            } else {
+                plugin.getGroupChangeDetector().forget(payload);
+            }
+            return response;
+        }));
+    }
+
+    /**
+     * Record a payload the bot accepted, whether sent directly or by the retry queue
+     */
+    void onDelivered(RankUpdatePayload payload, ApiResponse response) {
+        Boolean linked = response.getLinked();
+        if (linked != null) {
+            plugin.getLinkCache().put(UUID.fromString(payload.getUuid()), linked);
+        }
+        plugin.getRetryQueue().acknowledge(payload);
+        plugin.getSyncStateCache().observeMappingRevision(response.getMappingRevision());
+        // Only skip later joins once the roles were really synced, not e.g. for a member missing from the guild
+        if (Boolean.TRUE.equals(response.getApplied())) {
+            plugin.getSyncStateCache().acknowledge(payload, response);
+        } else {
+            plugin.getGroupChangeDetector().forget(payload);
+        }
+    }
+
+    /**
+     * Send a payload without retry handling, still after earlier updates for the same player
+     */
+    public CompletableFuture<ApiResponse> send(RankUpdatePayload payload) {
+        return sequenced(UUID.fromString(payload.getUuid()), () -> transmit(payload));
+    }
+
+    /**
+     * Run a send covering several players (resync batches) in order with their other updates:
+     * after earlier updates for any of them, and before later ones
+     */
+    public CompletableFuture<ApiResponse> sendAll(Collection<UUID> uuids, Supplier<CompletableFuture<ApiResponse>> send) {
+        return sequencer != null ? sequencer.submitAll(uuids, send) : send.get();
+    }
+
+    /**
+     * Updates for players waiting on an earlier update or in flight, 0 if delivery is not ordered
+     */
+    public int getSequencedCount() {
+        return sequencer != null ? sequencer.getActiveCount() : 0;
+    }
+
+    /**
+     * Updates that waited for an earlier update for the same player to be answered
+     */
+    public long getSequencerWaitCount() {
+        return sequencer != null ? sequencer.getWaitedCount() : 0;
+    }
+
+    private CompletableFuture<ApiResponse> sequenced(UUID uuid, Supplier<CompletableFuture<ApiResponse>> send) {
+        return sequencer != null ? sequencer.submit(uuid, send) : send.get();
+    }
+
+    private CompletableFuture<ApiResponse> transmit(RankUpdatePayload payload) {
+        EventStream stream = plugin.getApiClient().getEventStream();
+        if (stream != null && stream.isConnected()) {
+            // Events are pipelined over the stream, so batching would only add delay
+            return stream.send(payload);
+        }
+
+        if (!batchingEnabled || batchEndpointMissing) {
+            return sendSingle(payload);
+        }
+
+        QueuedUpdate update = new QueuedUpdate(payload);
+        List<QueuedUpdate> fullBatch = null;
+        boolean scheduleFlush = false;
+
+        synchronized (lock) {
+            buffer.add(update);
+            if (buffer.size() >= maxBatchSize) {
+                fullBatch = buffer;
+                buffer = new ArrayList<>();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                scheduleFlush = true;
+            }
+        }
+
+        if (fullBatch != null) {
+            sendBatch(fullBatch);
+        }
+        if (scheduleFlush) {
+            scheduler.schedule(this::flush, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        return update.future;
+    }
+
+    /**
+     * Send everything that is still buffered and stop the flush scheduler
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        flush();
+    }
+
+    public int getBufferedCount() {
+        synchronized (lock) {
+            return buffer.size();
+        }
+    }
+
+    private void flush() {
+        List<QueuedUpdate> batch;
+        synchronized (lock) {
+            flushScheduled = false;
+            if (buffer.isEmpty()) {
+                return;
+            }
+            batch = buffer;
+            buffer = new ArrayList<>();
+        }
+        sendBatch(batch);
+    }
+
+    private void sendBatch(List<QueuedUpdate> batch) {
+        List<RankUpdatePayload> payloads = new ArrayList<>(batch.size());
+        for (QueuedUpdate update : batch) {
+            payloads.add(update.payload);
+        }
+
+        plugin.logDebug(() -> "Sending batch of " + payloads.size() + " update(s)");
+
+        plugin.getApiClient().sendRankUpdateBatch(payloads)
+                .thenAccept(response -> completeBatch(batch, response))
+                .exceptionally(e -> {
+                    ApiResponse failure = new ApiResponse(false, "Error: " + e.getMessage());
+                    batch.forEach(update -> update.future.complete(failure));
+                    return null;
+                });
+    }
+
+    private void completeBatch(List<QueuedUpdate> batch, ApiResponse response) {
+        if (response.getStatusCode() == 404) {
+            // Bot predates the batch endpoint - fall back to one request per payload
+            if (!batchEndpointMissing) {
+                batchEndpointMissing = true;
+                plugin.getLogger().warning("Discord bot does not support batched updates, sending updates individually.");
+            }
+            for (QueuedUpdate update : batch) {
+                sendSingle(update.payload).thenAccept(update.future::complete);
+            }
+            return;
+        }
+
+        if (!response.isSuccess()) {
+            batch.forEach(update -> update.future.complete(response));
+            return;
+        }
+
+        List<ApiResponse> results = parseBatchResults(response, batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future.complete(results.get(i));
+        }
+    }
+
+    /**
+     * Split a successful batch response into one response per submitted update, in submission order
+     */
+    static List<ApiResponse> parseBatchResults(ApiResponse response, int size) {
+        List<ApiResponse> results = response.getResults();
+        List<ApiResponse> responses = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ApiResponse result = i < results.size() ? results.get(i) : null;
+            responses.add(result != null
+                    ? result
+                    : new ApiResponse(false, "Error: Missing result in batch response", response.getStatusCode()));
+        }
+        return responses;
+    }
+
+    private CompletableFuture<ApiResponse> sendSingle(RankUpdatePayload payload) {
+        if ("PLAYER_JOIN".equals(payload.getEventType())) {
+            return plugin.getApiClient().sendPlayerJoin(payload);
+        }
+        return plugin.getApiClient().sendRankUpdate(payload);
+    }
+
+    private static class QueuedUpdate {
+        final RankUpdatePayload payload;
+        final CompletableFuture<ApiResponse> future = new CompletableFuture<>();
+
+        QueuedUpdate(RankUpdatePayload payload) {
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.mcranksync.sync;
+
+import com.mcranksync.MCRankSync;
+import com.mcranksync.api.ApiResponse;
+import com.mcranksync.models.GroupSet;
+import com.mcranksync.models.RankUpdatePayload;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers a fingerprint of the rank state the bot last acknowledged for each player,
+ * so join syncs can be skipped when nothing has changed since.
+ * The bot reports a revision of its rank mappings, which is mixed into every fingerprint,
+ * so a /maprank or /unmaprank makes the next join of every player sync again.
+ * The cache is persisted to a compact binary file (32 bytes per player).
+ */
+public class SyncStateCache {
+
+    private static final int FILE_MAGIC = 0x4D525353; // "MRSS"
+    private static final int FILE_VERSION = 2;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final MCRankSync plugin;
+    private final Path file;
+    private final long maxAgeMillis;
+    private final Map<UUID, State> states = new ConcurrentHashMap<>();
+    private final ExecutorService io;
+    private volatile boolean dirty;
+    // Hash of the bot's last reported mapping revision, 0 until one is known
+    private volatile long mappingRevision;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public SyncStateCache(MCRankSync plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "sync-state.dat").toPath();
+        this.maxAgeMillis = TimeUnit.MINUTES.toMillis(
+                Math.max(0, plugin.getConfig().getLong("sync.unchanged-join-max-age", 1440)));
+        this.io = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MCRankSync-SyncState");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Load the persisted cache in the background
+     */
+    public void load() {
+        io.execute(() -> {
+            try {
+                int loaded = read();
+                plugin.logDebug(() -> "Loaded " + loaded + " sync state fingerprint(s).");
+            } catch (IOException e) {
+                plugin.logError("Failed to load the sync state cache", e);
+            }
+        });
+    }
+
+    /**
+     * Write the cache to disk in the background if it changed since the last save
+     */
+    public void saveAsync() {
+        if (dirty) {
+            io.execute(this::saveNow);
+        }
+    }
+
+    /**
+     * Stop the background thread and write the cache to disk
+     */
+    public void shutdown() {
+        io.shutdown();
+        try {
+            io.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dirty) {
+            saveNow();
+        }
+    }
+
+    /**
+     * Whether a join sync with the given fingerprint needs to be sent.
+     * Counts a hit when the bot already has this exact state and it is not too old.
+     */
+    public boolean needsSync(UUID uuid, long fingerprint) {
+        State state = states.get(uuid);
+        if (state != null && state.fingerprint == withRevision(fingerprint, mappingRevision)
+                && (maxAgeMillis == 0 || System.currentTimeMillis() - state.syncedAt < maxAgeMillis)) {
+            hits.increment();
+            return false;
+        }
+        misses.increment();
+        return true;
+    }
+
+    /**
+     * Whether the bot acknowledged exactly this state for the player, however long ago
+     */
+    public boolean isAcknowledged(UUID uuid, long fingerprint) {
+        State state = states.get(uuid);
+        return state != null && state.fingerprint == withRevision(fingerprint, mappingRevision);
+    }
+
+    /**
+     * Record that the bot acknowledged the state in the given payload
+     *
+     * @param response the bot's result for the payload, carrying the mapping revision it was applied with
+     */
+    public void acknowledge(RankUpdatePayload payload, ApiResponse response) {
+        observeMappingRevision(response.getMappingRevision());
+        UUID uuid = parseUuid(payload.getUuid());
+        if (uuid != null) {
+            GroupSet groupSet = payload.getGroupSet();
+            long fingerprint = groupSet != null
+                    ? groupSet.getFingerprint()
+                    : fingerprint(payload.getPrimaryGroup(), payload.getGroups());
+            String revision = response.getMappingRevision();
+            long applied = revision != null ? revisionHash(revision) : mappingRevision;
+            states.put(uuid, new State(withRevision(fingerprint, applied), System.currentTimeMillis()));
+            dirty = true;
+        }
+    }
+
+    /**
+     * Note the mapping revision reported by the bot. States acknowledged under another revision
+     * stop matching, so those players are synced again on their next join.
+     */
+    public void observeMappingRevision(String revision) {
+        if (revision == null) {
+            return;
+        }
+        long hash = revisionHash(revision);
+        if (hash != mappingRevision) {
+            mappingRevision = hash;
+            dirty = true;
+            plugin.logDebug(() -> "Discord bot rank mappings are at revision " + revision
+                    + ", players synced under another revision will be synced on join.");
+        }
+    }
+
+    /**
+     * Forget the acknowledged state so the next join is always synced
+     */
+    public void invalidate(UUID uuid) {
+        if (states.remove(uuid) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Forget every acknowledged state so every player's next join is synced
+     */
+    public void invalidateAll() {
+        states.clear();
+        dirty = true;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public int getSize() {
+        return states.size();
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the primary group and the sorted group list
+     */
+    public static long fingerprint(String primaryGroup, Collection<String> groups) {
+        List<String> sorted = groups == null ? Collections.emptyList() : new ArrayList<>(groups);
+        Collections.sort(sorted);
+
+        long hash = hash(FNV_OFFSET, primaryGroup == null ? "" : primaryGroup);
+        for (String group : sorted) {
+            hash = hash(hash ^ 0xFF, group);
+        }
+        return hash;
+    }
+
+    /**
+     * Mix a mapping revision into a groups fingerprint. Revision 0 (unknown) leaves it unchanged.
+     */
+    private static long withRevision(long fingerprint, long revision) {
+        return revision == 0 ? fingerprint : (fingerprint ^ revision) * FNV_PRIME;
+    }
+
+    private static long revisionHash(String revision) {
+        return hash(FNV_OFFSET, revision);
+    }
+
+    private static long hash(long hash, String value) {
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        // Separator so ["ab"] and ["a", "b"] differ
+        hash ^= 0x1F;
+        hash *= FNV_PRIME;
+        return hash;
+    }
+
+    private int read() throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        int loaded = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int version = in.readInt() == FILE_MAGIC ? in.readInt() : -1;
+            if (version != FILE_VERSION) {
+                plugin.getLogger().warning("Ignoring unrecognised sync state file " + file.getFileName());
+                return 0;
+            }
+            long revision = in.readLong();
+            if (mappingRevision == 0) {
+                mappingRevision = revision;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                long fingerprint = in.readLong();
+                long syncedAt = in.readLong();
+                // Don't overwrite anything acknowledged while we were loading
+                states.putIfAbsent(uuid, new State(fingerprint, syncedAt));
+                loaded++;
+            }
+        } catch (EOFException e) {
+            plugin.getLogger().warning("Sync state file is truncated, loaded " + loaded + " entries.");
+        }
+        return loaded;
+    }
+
+    private synchronized void saveNow() {
+        dirty = false;
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            List<Map.Entry<UUID, State>> snapshot = new ArrayList<>(states.entrySet());
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeLong(mappingRevision);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<UUID, State> entry : snapshot) {
+                    out.writeLong(entry.getKey().getMostSignificantBits());
+                    out.writeLong(entry.getKey().getLeastSignificantBits());
+                    out.writeLong(entry.getValue().fingerprint);
+                    out.writeLong(entry.getValue().syncedAt);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            plugin.logError("Failed to save the sync state cache", e);
+        }
+    }
+
+    private static UUID parseUuid(String uuid) {
+        try {
+            return UUID.fromString(uuid);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    private static class State {
+        final long fingerprint;
+        final long syncedAt;
+
+        State(long fingerprint, long syncedAt) {
+            this.fingerprint = fingerprint;
+            this.syncedAt = syncedAt;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.mcranksync.sync;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking token bucket used to pace requests to the bot.
+ * Tokens refill continuously up to the capacity, which is the largest allowed burst.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double capacity, double tokensPerSecond) {
+        this.capacity = Math.max(1, capacity);
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        // Start with a single token so a new sweep doesn't burst on top of live traffic
+        this.tokens = 1;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Wait until a token is available and take it
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = tryAcquire()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Take a token if one is available
+     *
+     * @return 0 if a token was taken, otherwise the nanoseconds until one will be available
+     */
+    public synchronized long tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    /**
+     * Hand out no tokens for the given time, e.g. after the bot reported a rate limit
+     */
+    public synchronized void pause(long millis) {
+        refill();
+        tokens = Math.min(tokens, 0) - TimeUnit.MILLISECONDS.toNanos(millis) * tokensPerNano;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
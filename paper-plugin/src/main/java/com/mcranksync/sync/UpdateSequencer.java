@@ -0,0 +1,203 @@
+package com.mcranksync.sync;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Keeps outbound updates for the same player in order: an update is only sent once the
+ * previous update for that player has been answered, so two requests for one player are never
+ * in flight at the same time. Updates for different players are not held up by each other.
+ * Players are spread over stripes by UUID hash, each with its own map of per-player queues;
+ * queues are lock-free and removed again as soon as they run empty.
+ */
+public class UpdateSequencer {
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    // Held while a send covering several players takes its place in their queues
+    private final Object multiLock = new Object();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder waited = new LongAdder();
+
+    /**
+     * @param stripes number of stripes, rounded up to a power of two
+     */
+    public UpdateSequencer(int stripes) {
+        int count = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.mask = count - 1;
+    }
+
+    /**
+     * Run the send after every update submitted earlier for the same player has completed.
+     * The returned future completes with the send's result (or failure).
+     */
+    public <T> CompletableFuture<T> submit(UUID uuid, Supplier<CompletableFuture<T>> send) {
+        submitted.increment();
+        Task<T> task = new Task<>(send);
+        Stripe stripe = stripe(uuid);
+        while (true) {
+            PlayerQueue queue = stripe.players.computeIfAbsent(uuid, key -> new PlayerQueue(stripe, key));
+            if (queue.offer(task)) {
+                return task.result;
+            }
+            // The queue was just retired; a fresh one replaces it once it is removed
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Run a send covering several players, e.g. a batch, once every update submitted earlier for any
+     * of them has completed. Their later updates wait until this send has completed.
+     * Such sends take their places in all queues at once, so two of them can never wait on each other.
+     */
+    public <T> CompletableFuture<T> submitAll(Collection<UUID> uuids, Supplier<CompletableFuture<T>> send) {
+        Set<UUID> players = new LinkedHashSet<>(uuids);
+        if (players.isEmpty()) {
+            return send.get();
+        }
+
+        Task<T> task = new Task<>(send);
+        AtomicInteger waiting = new AtomicInteger(players.size());
+        // Each player's turn completes with the send; the last player to get its turn starts it
+        Supplier<CompletableFuture<T>> turn = () -> {
+            if (waiting.decrementAndGet() == 0) {
+                task.run();
+            }
+            return task.result;
+        };
+        synchronized (multiLock) {
+            for (UUID uuid : players) {
+                submit(uuid, turn);
+            }
+        }
+        return task.result;
+    }
+
+    /**
+     * Players with an update in flight or waiting
+     */
+    public int getActiveCount() {
+        int active = 0;
+        for (Stripe stripe : stripes) {
+            active += stripe.players.size();
+        }
+        return active;
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * Updates that had to wait for an earlier update for the same player
+     */
+    public long getWaitedCount() {
+        return waited.sum();
+    }
+
+    private Stripe stripe(UUID uuid) {
+        int hash = uuid.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    private static final class Stripe {
+        final ConcurrentHashMap<UUID, PlayerQueue> players = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Tasks for one player. {@code pending} counts tasks queued or running, and is -1 once the
+     * queue is empty and retired. Whoever moves it from 0 to 1 starts the first task; each task
+     * starts the next one when it completes.
+     */
+    private final class PlayerQueue {
+        private final Stripe stripe;
+        private final UUID uuid;
+        private final Queue<Task<?>> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+
+        PlayerQueue(Stripe stripe, UUID uuid) {
+            this.stripe = stripe;
+            this.uuid = uuid;
+        }
+
+        boolean offer(Task<?> task) {
+            while (true) {
+                int count = pending.get();
+                if (count < 0) {
+                    return false;
+                }
+                if (pending.compareAndSet(count, count + 1)) {
+                    tasks.add(task);
+                    if (count == 0) {
+                        runNext();
+                    } else {
+                        waited.increment();
+                    }
+                    return true;
+                }
+            }
+        }
+
+        private void runNext() {
+            Task<?> task;
+            // Counted before it was added, so it is at most a few instructions away
+            while ((task = tasks.poll()) == null) {
+                Thread.onSpinWait();
+            }
+            task.run().whenComplete((result, error) -> completed());
+        }
+
+        private void completed() {
+            if (pending.decrementAndGet() > 0) {
+                runNext();
+            } else if (pending.compareAndSet(0, -1)) {
+                stripe.players.remove(uuid, this);
+            }
+        }
+    }
+
+    private static final class Task<T> {
+        final Supplier<CompletableFuture<T>> send;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Task(Supplier<CompletableFuture<T>> send) {
+            this.send = send;
+        }
+
+        /**
+         * Start the send and pass its outcome on
+         *
+         * @return a future completing after the result has been passed on
+         */
+        CompletableFuture<?> run() {
+            CompletableFuture<T> sent;
+            try {
+                sent = send.get();
+            } catch (RuntimeException e) {
+                sent = CompletableFuture.failedFuture(e);
+            }
+            return sent.whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        }
+    }
+}
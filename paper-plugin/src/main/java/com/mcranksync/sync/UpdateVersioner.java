@@ -0,0 +1,30 @@
+package com.mcranksync.sync;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Source of the server ID and version carried by outgoing payloads, so that when several servers
+ * sync the same players the bot can drop updates that repeat the groups it already applied.
+ * <p>
+ * Versions are wall-clock microseconds, bumped past the last issued version if the clock stalls or
+ * goes backwards. They always increase on this server, for every player, but are not merged with
+ * versions from other servers, so across servers they are only as ordered as the clocks are.
+ */
+public class UpdateVersioner {
+
+    private final String serverId;
+    private final AtomicLong lastVersion = new AtomicLong();
+
+    public UpdateVersioner(String serverId) {
+        this.serverId = serverId;
+    }
+
+    public String getServerId() {
+        return serverId;
+    }
+
+    public long nextVersion() {
+        long now = System.currentTimeMillis() * 1000;
+        return lastVersion.updateAndGet(last -> Math.max(now, last + 1));
+    }
+}
@@ -0,0 +1,164 @@
+package com.mcranksync.sync;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stress test for {@link UpdateSequencer}: many threads submit single and multi-player sends for a
+ * small set of players, and every send checks that it started in submission order for each of its
+ * players and that no other send for them was in flight.
+ */
+class UpdateSequencerTest {
+
+    private static final int THREADS = 16;
+    private static final int PLAYERS = 64;
+    private static final int SENDS_PER_THREAD = 2_000;
+    private static final int MAX_BATCH = 4;
+
+    private final ScheduledExecutorService completer = Executors.newScheduledThreadPool(4);
+    private final ExecutorService producers = Executors.newFixedThreadPool(THREADS);
+
+    private final UUID[] uuids = new UUID[PLAYERS];
+    private final Object[] submitLocks = new Object[PLAYERS];
+    private final int[] nextSequence = new int[PLAYERS];
+    private final int[] lastStarted = new int[PLAYERS];
+    private final AtomicInteger[] inFlight = new AtomicInteger[PLAYERS];
+    private final ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+
+    UpdateSequencerTest() {
+        for (int i = 0; i < PLAYERS; i++) {
+            uuids[i] = UUID.randomUUID();
+            submitLocks[i] = new Object();
+            lastStarted[i] = -1;
+            inFlight[i] = new AtomicInteger();
+        }
+    }
+
+    @AfterEach
+    void shutdown() {
+        producers.shutdownNow();
+        completer.shutdownNow();
+    }
+
+    @Test
+    @Timeout(60)
+    void keepsEachPlayersSendsInOrderAndOneAtATime() throws Exception {
+        UpdateSequencer sequencer = new UpdateSequencer(8);
+        List<CompletableFuture<?>> results = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<?>> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            threads.add(CompletableFuture.runAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < SENDS_PER_THREAD; i++) {
+                    int size = random.nextInt(5) == 0 ? 2 + random.nextInt(MAX_BATCH - 1) : 1;
+                    results.add(submit(sequencer, randomPlayers(random, size)));
+                }
+            }, producers));
+        }
+
+        start.countDown();
+        CompletableFuture.allOf(threads.toArray(new CompletableFuture[0])).get();
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get();
+
+        assertTrue(violations.isEmpty(), () -> violations.size() + " violations, first: " + violations.peek());
+        for (int i = 0; i < PLAYERS; i++) {
+            assertEquals(nextSequence[i] - 1, lastStarted[i], "sends started for player " + i);
+        }
+        assertEquals(0, sequencer.getActiveCount());
+    }
+
+    /**
+     * Number the send for each of its players and submit it, holding the players' locks (in index
+     * order) so the sequence numbers match the order the sequencer sees the sends in
+     */
+    private CompletableFuture<Integer> submit(UpdateSequencer sequencer, int[] players) {
+        return locked(players, 0, () -> {
+            int[] sequences = new int[players.length];
+            for (int i = 0; i < players.length; i++) {
+                sequences[i] = nextSequence[players[i]]++;
+            }
+            if (players.length == 1) {
+                return sequencer.submit(uuids[players[0]], () -> send(players, sequences));
+            }
+            List<UUID> batch = new ArrayList<>(players.length);
+            for (int player : players) {
+                batch.add(uuids[player]);
+            }
+            return sequencer.submitAll(batch, () -> send(players, sequences));
+        });
+    }
+
+    private CompletableFuture<Integer> locked(int[] players, int index,
+                                              Supplier<CompletableFuture<Integer>> body) {
+        if (index == players.length) {
+            return body.get();
+        }
+        synchronized (submitLocks[players[index]]) {
+            return locked(players, index + 1, body);
+        }
+    }
+
+    /**
+     * Check the send's place for each player, then complete it now or a little later
+     */
+    private CompletableFuture<Integer> send(int[] players, int[] sequences) {
+        for (int i = 0; i < players.length; i++) {
+            int player = players[i];
+            if (inFlight[player].incrementAndGet() != 1) {
+                violations.add("player " + player + " had two sends in flight");
+            }
+            if (lastStarted[player] + 1 != sequences[i]) {
+                violations.add("player " + player + " started send " + sequences[i] + " after " + lastStarted[player]);
+            }
+            lastStarted[player] = sequences[i];
+        }
+
+        CompletableFuture<Integer> sent = new CompletableFuture<>();
+        Runnable complete = () -> {
+            for (int player : players) {
+                inFlight[player].decrementAndGet();
+            }
+            sent.complete(players.length);
+        };
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextBoolean()) {
+            complete.run();
+        } else {
+            completer.schedule(complete, random.nextInt(200), TimeUnit.MICROSECONDS);
+        }
+        return sent;
+    }
+
+    /**
+     * Distinct players in ascending order
+     */
+    private static int[] randomPlayers(ThreadLocalRandom random, int size) {
+        return random.ints(0, PLAYERS).distinct().limit(size).sorted().toArray();
+    }
+}